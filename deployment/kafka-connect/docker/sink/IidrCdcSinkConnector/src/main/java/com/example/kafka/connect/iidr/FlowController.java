@@ -0,0 +1,170 @@
+package com.example.kafka.connect.iidr;
+
+import com.example.kafka.connect.iidr.metrics.SinkTaskMetrics;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.sink.SinkTaskContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Pauses the partitions that feed slow tables, so the other tables keep flowing.
+ *
+ * After each put() the task reports, per target table, how long its records took to apply
+ * and their estimated bytes. A table is throttled when the moving average of its write time
+ * exceeds flow.control.latency.ms, or when its bytes in the open transaction exceed
+ * flow.control.max.table.bytes. The partitions that delivered its records are then paused
+ * for flow.control.pause.ms, doubling on every consecutive throttle up to
+ * flow.control.max.pause.ms, and resumed when the time is up. The first write after resuming
+ * probes the table; a fast write resets the pause time.
+ *
+ * In fan-out mode one partition feeds several tables, so pausing it also holds back the
+ * healthy tables of that partition.
+ */
+final class FlowController {
+
+    private static final Logger log = Logger.getLogger(FlowController.class.getName());
+
+    static final String THROTTLES = "flow-throttles";
+    static final String PAUSED_PARTITIONS = "flow-paused-partitions";
+    static final String TABLE_WRITE_MS = "table-write-ms.";
+
+    // Weight of the latest write in the moving average
+    private static final double LATENCY_WEIGHT = 0.3;
+
+    private final SinkTaskContext context;
+    private final SinkTaskMetrics metrics;
+    private final long latencyThresholdMs;
+    private final long maxTableBytes;
+    private final long pauseMs;
+    private final long maxPauseMs;
+    private final Map<String, TableFlow> tables = new HashMap<>();
+    private final Map<TopicPartition, Long> pausedUntil = new HashMap<>();
+
+    FlowController(SinkTaskContext context, IidrCdcSinkConfig config, SinkTaskMetrics metrics) {
+        this.context = context;
+        this.metrics = metrics;
+        this.latencyThresholdMs = config.getFlowControlLatencyMs();
+        this.maxTableBytes = config.getFlowControlMaxTableBytes();
+        this.pauseMs = config.getFlowControlPauseMs();
+        this.maxPauseMs = Math.max(pauseMs, config.getFlowControlMaxPauseMs());
+        metrics.gauge(PAUSED_PARTITIONS, () -> pausedUntil.size());
+    }
+
+    /**
+     * Resume the partitions whose pause has expired.
+     */
+    void resumeDue(long nowMs) {
+        if (pausedUntil.isEmpty()) {
+            return;
+        }
+        List<TopicPartition> due = new ArrayList<>();
+        Iterator<Map.Entry<TopicPartition, Long>> it = pausedUntil.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<TopicPartition, Long> entry = it.next();
+            if (entry.getValue() <= nowMs) {
+                due.add(entry.getKey());
+                it.remove();
+            }
+        }
+        due.retainAll(context.assignment());
+        if (!due.isEmpty()) {
+            log.info("Resuming partitions " + due);
+            context.resume(due.toArray(new TopicPartition[0]));
+        }
+    }
+
+    /**
+     * Record the write of a table's records of one put() and throttle the table if it is slow.
+     *
+     * @param partitions partitions that delivered the records
+     * @param bytes      estimated payload bytes of the records
+     * @param writeMs    time taken to apply them
+     */
+    void recordWrite(String table, Set<TopicPartition> partitions, long bytes, long writeMs, long nowMs) {
+        TableFlow flow = tables.get(table);
+        if (flow == null) {
+            flow = new TableFlow(writeMs);
+            tables.put(table, flow);
+            TableFlow f = flow;
+            metrics.gauge(TABLE_WRITE_MS + table, () -> Math.round(f.latencyMs));
+        } else {
+            flow.latencyMs += LATENCY_WEIGHT * (writeMs - flow.latencyMs);
+        }
+        flow.queuedBytes += bytes;
+
+        boolean slow = latencyThresholdMs > 0 && flow.latencyMs > latencyThresholdMs;
+        boolean flooded = maxTableBytes > 0 && flow.queuedBytes > maxTableBytes;
+        if (!slow && !flooded) {
+            flow.pauseMs = 0;
+            return;
+        }
+        flow.pauseMs = flow.pauseMs == 0 ? pauseMs : Math.min(maxPauseMs, flow.pauseMs * 2);
+        long until = nowMs + flow.pauseMs;
+
+        List<TopicPartition> pause = new ArrayList<>();
+        for (TopicPartition partition : partitions) {
+            Long previous = pausedUntil.get(partition);
+            if (previous == null || previous < until) {
+                pausedUntil.put(partition, until);
+            }
+            if (previous == null) {
+                pause.add(partition);
+            }
+        }
+        pause.retainAll(context.assignment());
+        metrics.increment(THROTTLES);
+        log.info("Throttling table " + table + " for " + flow.pauseMs + " ms (average write " +
+                Math.round(flow.latencyMs) + " ms, " + flow.queuedBytes + " uncommitted bytes), pausing " + pause);
+        if (!pause.isEmpty()) {
+            context.pause(pause.toArray(new TopicPartition[0]));
+        }
+    }
+
+    /**
+     * Whether a partition is paused for a slow table.
+     */
+    boolean isPaused(TopicPartition partition) {
+        return pausedUntil.containsKey(partition);
+    }
+
+    /**
+     * The open transaction was committed or rolled back: no table has uncommitted bytes.
+     */
+    void transactionEnded() {
+        for (TableFlow flow : tables.values()) {
+            flow.queuedBytes = 0;
+        }
+    }
+
+    /**
+     * Forget revoked partitions. Kafka Connect resumes them on reassignment.
+     */
+    void revoked(Collection<TopicPartition> partitions) {
+        pausedUntil.keySet().removeAll(partitions);
+    }
+
+    void close() {
+        metrics.removeGauge(PAUSED_PARTITIONS);
+        for (String table : tables.keySet()) {
+            metrics.removeGauge(TABLE_WRITE_MS + table);
+        }
+        tables.clear();
+    }
+
+    private static final class TableFlow {
+        private double latencyMs;
+        private long queuedBytes;
+        private long pauseMs;
+
+        TableFlow(long latencyMs) {
+            this.latencyMs = latencyMs;
+        }
+    }
+}
@@ -1,14 +1,20 @@
 package com.example.kafka.connect.iidr;
 
+import com.example.kafka.connect.iidr.routing.TableRoutes;
+import com.example.kafka.connect.iidr.writer.RowImageCache;
 import org.apache.kafka.common.config.AbstractConfig;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigDef.Type;
 import org.apache.kafka.common.config.ConfigDef.Importance;
+import org.apache.kafka.common.config.ConfigException;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Configuration for the IIDR CDC Sink Connector.
@@ -31,12 +37,33 @@ public class IidrCdcSinkConfig extends AbstractConfig {
             "Use ${topic} for topic name, ${TableName} for header value";
     public static final String TABLE_NAME_FORMAT_DEFAULT = "${TableName}";
 
+    public static final String TABLE_INCLUDE_LIST_CONFIG = "table.include.list";
+    private static final String TABLE_INCLUDE_LIST_DOC = "Comma-separated TableName header values to route " +
+            "in multi-table fan-out mode. When set (or when per-table 'tables.<TableName>.*' overrides are " +
+            "given), only these tables are processed, each with its own target, primary key and write mode";
+    public static final String TABLE_INCLUDE_LIST_DEFAULT = "";
+
     // Corrupt Events Table
     public static final String CORRUPT_EVENTS_TABLE_CONFIG = "corrupt.events.table";
     private static final String CORRUPT_EVENTS_TABLE_DOC = "Table name for corrupt/invalid events. " +
             "Leave empty to disable corrupt event logging to database.";
     public static final String CORRUPT_EVENTS_TABLE_DEFAULT = "";
 
+    // Offsets Table
+    public static final String OFFSETS_TABLE_CONFIG = "offsets.table";
+    private static final String OFFSETS_TABLE_DOC = "Table in the target database that stores the Kafka " +
+            "offsets of the applied records in the same transaction as the data written on the task's " +
+            "connection. On partition assignment the task resumes from these offsets. With write.lanes or " +
+            "write.concurrency > 1 the other connections commit first and separately, so their rows are " +
+            "applied at least once. Leave empty to rely on Kafka offset commits only";
+    public static final String OFFSETS_TABLE_DEFAULT = "";
+
+    public static final String INSERT_FAST_PATH_CONFIG = "insert.fast.path";
+    private static final String INSERT_FAST_PATH_DOC = "Apply journal inserts (A_ENTTYP PT, PX) as plain " +
+            "INSERTs instead of upserts. Requires offsets.table, which prevents replays, and a single " +
+            "connection (write.lanes=1, write.concurrency=1)";
+    public static final boolean INSERT_FAST_PATH_DEFAULT = false;
+
     // Error Tolerance (prefixed to avoid conflict with Kafka Connect's built-in errors.tolerance)
     public static final String ERRORS_TOLERANCE_CONFIG = "iidr.errors.tolerance";
     private static final String ERRORS_TOLERANCE_DOC = "Behavior when encountering corrupt events: " +
@@ -56,7 +83,9 @@ public class IidrCdcSinkConfig extends AbstractConfig {
     public static final String PK_MODE_DEFAULT = "record_key";
 
     public static final String PK_FIELDS_CONFIG = "pk.fields";
-    private static final String PK_FIELDS_DOC = "Comma-separated list of primary key field names";
+    private static final String PK_FIELDS_DOC = "Comma-separated list of primary key field names. " +
+            "Leave empty to discover the primary key of each table from the target database, " +
+            "falling back to the fields of the Kafka key";
     public static final String PK_FIELDS_DEFAULT = "";
 
     // DDL Settings
@@ -68,18 +97,222 @@ public class IidrCdcSinkConfig extends AbstractConfig {
     private static final String AUTO_EVOLVE_DOC = "Automatically add columns to existing tables";
     public static final boolean AUTO_EVOLVE_DEFAULT = false;
 
+    // Metadata Settings
+    public static final String METADATA_PRELOAD_CONFIG = "metadata.preload";
+    private static final String METADATA_PRELOAD_DOC = "Load column types and primary keys of all tables " +
+            "in metadata.preload.schema with bulk catalog queries when the task starts, instead of " +
+            "querying each table on its first write";
+    public static final boolean METADATA_PRELOAD_DEFAULT = false;
+
+    public static final String METADATA_PRELOAD_SCHEMA_CONFIG = "metadata.preload.schema";
+    private static final String METADATA_PRELOAD_SCHEMA_DOC = "Schema to preload metadata for. " +
+            "Leave empty to use the connection's current schema";
+    public static final String METADATA_PRELOAD_SCHEMA_DEFAULT = "";
+
     // Batch Settings
     public static final String BATCH_SIZE_CONFIG = "batch.size";
     private static final String BATCH_SIZE_DOC = "Maximum number of records in a single JDBC batch";
     public static final int BATCH_SIZE_DEFAULT = 3000;
 
+    public static final String LOB_STREAM_THRESHOLD_CONFIG = "lob.stream.threshold";
+    private static final String LOB_STREAM_THRESHOLD_DOC = "Minimum length in characters (text) or bytes " +
+            "(binary) at which values bound to character, binary and LOB columns are streamed instead of " +
+            "bound with setObject(). Set to 0 to disable streaming";
+    public static final int LOB_STREAM_THRESHOLD_DEFAULT = 32768;
+
+    public static final String STATEMENT_CACHE_SIZE_CONFIG = "statement.cache.size";
+    private static final String STATEMENT_CACHE_SIZE_DOC = "Maximum prepared statements each connection keeps " +
+            "open, one per operation, table and column set. The least recently used ones are closed beyond it";
+    public static final int STATEMENT_CACHE_SIZE_DEFAULT = 256;
+
+    public static final String WRITE_SORT_BY_PK_CONFIG = "write.sort.by.pk";
+    private static final String WRITE_SORT_BY_PK_DOC = "Sort each statement batch by primary key tuple " +
+            "before binding, so that tasks writing the same tables take row locks in the same order " +
+            "and do not deadlock each other. Changes of one key keep their order";
+    public static final boolean WRITE_SORT_BY_PK_DEFAULT = false;
+
+    // Transaction Settings
+    public static final String COMMIT_LINGER_MS_CONFIG = "commit.linger.ms";
+    private static final String COMMIT_LINGER_MS_DOC = "Maximum time a database transaction stays open " +
+            "across put() calls before it is committed. 0 commits at the end of every put()";
+    public static final long COMMIT_LINGER_MS_DEFAULT = 0L;
+
+    public static final String COMMIT_MAX_RECORDS_CONFIG = "commit.max.records";
+    private static final String COMMIT_MAX_RECORDS_DOC = "Number of uncommitted records at which the " +
+            "transaction is committed when commit.linger.ms > 0";
+    public static final int COMMIT_MAX_RECORDS_DEFAULT = 10000;
+
+    public static final String COMMIT_MAX_BYTES_CONFIG = "commit.max.bytes";
+    private static final String COMMIT_MAX_BYTES_DOC = "Estimated payload bytes of uncommitted records at " +
+            "which the transaction is committed when commit.linger.ms > 0";
+    public static final long COMMIT_MAX_BYTES_DEFAULT = 16L * 1024 * 1024;
+
+    // Decoding Settings
+    public static final String DECODE_PARALLELISM_CONFIG = "decode.parallelism";
+    private static final String DECODE_PARALLELISM_DOC = "Number of threads that decode the records of " +
+            "large polls (header validation, value resolution, timestamp conversion, table resolution) " +
+            "in parallel. 0 or 1 decodes every record on the task thread";
+    public static final int DECODE_PARALLELISM_DEFAULT = 0;
+
+    public static final String DECODE_PARALLEL_THRESHOLD_CONFIG = "decode.parallel.threshold";
+    private static final String DECODE_PARALLEL_THRESHOLD_DOC = "Minimum number of records in a put() " +
+            "to decode them in parallel. Smaller polls are decoded on the task thread";
+    public static final int DECODE_PARALLEL_THRESHOLD_DEFAULT = 10000;
+
+    // Write Lane Settings
+    public static final String WRITE_LANES_CONFIG = "write.lanes";
+    private static final String WRITE_LANES_DOC = "Number of connections that apply the rows of one large " +
+            "table batch concurrently, split by a hash of the primary key so each key stays in order. " +
+            "1 applies every table on the task's connection";
+    public static final int WRITE_LANES_DEFAULT = 1;
+
+    public static final String WRITE_LANES_THRESHOLD_CONFIG = "write.lanes.threshold";
+    private static final String WRITE_LANES_THRESHOLD_DOC = "Minimum number of records of one table in a " +
+            "put() to split them across the write lanes";
+    public static final int WRITE_LANES_THRESHOLD_DEFAULT = 1000;
+
+    // Concurrent Table Write Settings
+    public static final String WRITE_CONCURRENCY_CONFIG = "write.concurrency";
+    private static final String WRITE_CONCURRENCY_DOC = "Number of connections that apply the batches " +
+            "of different tables concurrently, scheduled by weight and latency class. 1 applies all " +
+            "tables on the task's connection";
+    public static final int WRITE_CONCURRENCY_DEFAULT = 1;
+
+    public static final String WRITE_SLICE_SIZE_CONFIG = "write.slice.size";
+    private static final String WRITE_SLICE_SIZE_DOC = "Maximum number of records of one table applied " +
+            "per scheduling turn when write.concurrency > 1";
+    public static final int WRITE_SLICE_SIZE_DEFAULT = 1000;
+
+    public static final String WRITE_TABLE_WEIGHTS_CONFIG = "write.table.weights";
+    private static final String WRITE_TABLE_WEIGHTS_DOC = "Comma-separated 'TABLE:weight' entries giving " +
+            "target tables a larger share of the concurrent writers (default weight 1)";
+    public static final String WRITE_TABLE_WEIGHTS_DEFAULT = "";
+
+    public static final String WRITE_INTERACTIVE_TABLES_CONFIG = "write.interactive.tables";
+    private static final String WRITE_INTERACTIVE_TABLES_DOC = "Comma-separated target tables in the " +
+            "interactive latency class. Their slices are applied before those of bulk tables";
+    public static final String WRITE_INTERACTIVE_TABLES_DEFAULT = "";
+
+    // Flow Control Settings
+    public static final String FLOW_CONTROL_LATENCY_MS_CONFIG = "flow.control.latency.ms";
+    private static final String FLOW_CONTROL_LATENCY_MS_DOC = "Moving average of the time to apply a " +
+            "table's records of one put() above which the partitions feeding the table are paused. " +
+            "0 disables latency-based throttling";
+    public static final long FLOW_CONTROL_LATENCY_MS_DEFAULT = 0L;
+
+    public static final String FLOW_CONTROL_MAX_TABLE_BYTES_CONFIG = "flow.control.max.table.bytes";
+    private static final String FLOW_CONTROL_MAX_TABLE_BYTES_DOC = "Estimated uncommitted payload bytes " +
+            "of one table above which the partitions feeding the table are paused. 0 disables " +
+            "byte-based throttling";
+    public static final long FLOW_CONTROL_MAX_TABLE_BYTES_DEFAULT = 0L;
+
+    public static final String FLOW_CONTROL_PAUSE_MS_CONFIG = "flow.control.pause.ms";
+    private static final String FLOW_CONTROL_PAUSE_MS_DOC = "Time the partitions of a throttled table are " +
+            "paused. Doubles while the table stays slow, up to flow.control.max.pause.ms";
+    public static final long FLOW_CONTROL_PAUSE_MS_DEFAULT = 1000L;
+
+    public static final String FLOW_CONTROL_MAX_PAUSE_MS_CONFIG = "flow.control.max.pause.ms";
+    private static final String FLOW_CONTROL_MAX_PAUSE_MS_DOC = "Maximum time the partitions of a " +
+            "throttled table are paused at once";
+    public static final long FLOW_CONTROL_MAX_PAUSE_MS_DEFAULT = 60000L;
+
+    // Spill Settings
+    public static final String SPILL_DIR_CONFIG = "spill.dir";
+    private static final String SPILL_DIR_DOC = "Local directory for the spill log. When the target database " +
+            "is unavailable, processed records are appended to memory-mapped segment files there and applied " +
+            "once it is back; their offsets are committed only then. Empty disables spilling";
+    public static final String SPILL_DIR_DEFAULT = "";
+
+    public static final String SPILL_MAX_BYTES_CONFIG = "spill.max.bytes";
+    private static final String SPILL_MAX_BYTES_DOC = "Maximum size of the undrained spill log per task. " +
+            "When it is full, consumption stops until the target is available again";
+    public static final long SPILL_MAX_BYTES_DEFAULT = 1024L * 1024 * 1024;
+
+    public static final String SPILL_SEGMENT_BYTES_CONFIG = "spill.segment.bytes";
+    private static final String SPILL_SEGMENT_BYTES_DOC = "Size of each spill log segment file";
+    public static final int SPILL_SEGMENT_BYTES_DEFAULT = 64 * 1024 * 1024;
+
+    // Memory Settings
+    public static final String BUFFER_MAX_BYTES_CONFIG = "buffer.max.bytes";
+    private static final String BUFFER_MAX_BYTES_DOC = "Heap budget for the records being processed by " +
+            "all tasks of this connector in a worker, based on estimated retained sizes. Larger polls are " +
+            "written in smaller chunks, and a task that exceeds the budget pauses its partitions until " +
+            "usage falls below half of it. 0 disables the budget";
+    public static final long BUFFER_MAX_BYTES_DEFAULT = 0L;
+
+    public static final String ROW_CACHE_ENTRIES_CONFIG = "row.cache.entries";
+    private static final String ROW_CACHE_ENTRIES_DOC = "Entries of the per-task row image cache, which maps " +
+            "primary keys to a hash of the last committed row image and skips rows that arrive unchanged. " +
+            "Takes 16 bytes per entry outside the heap, at most " + RowImageCache.MAX_ENTRIES + " entries. " +
+            "0 disables the cache";
+    public static final int ROW_CACHE_ENTRIES_DEFAULT = 0;
+
+    public static final String ROW_CACHE_TABLES_CONFIG = "row.cache.tables";
+    private static final String ROW_CACHE_TABLES_DOC = "Comma-separated target tables using the row image " +
+            "cache. Empty uses it for all tables";
+    public static final String ROW_CACHE_TABLES_DEFAULT = "";
+
+    public static final String ROW_CACHE_DIR_CONFIG = "row.cache.dir";
+    private static final String ROW_CACHE_DIR_DOC = "Local directory for memory-mapped row image cache files, " +
+            "reused after a clean restart. Empty keeps the cache in memory only";
+    public static final String ROW_CACHE_DIR_DEFAULT = "";
+
+    public static final String KEY_FILTER_TABLES_CONFIG = "key.filter.tables";
+    private static final String KEY_FILTER_TABLES_DOC = "Comma-separated target tables with a Bloom filter of " +
+            "the primary keys known to exist. Upserts of keys the filter has not seen are written as plain " +
+            "INSERTs, falling back to upserts on a duplicate key. Empty disables the filters";
+    public static final String KEY_FILTER_TABLES_DEFAULT = "";
+
+    public static final String KEY_FILTER_EXPECTED_KEYS_CONFIG = "key.filter.expected.keys";
+    private static final String KEY_FILTER_EXPECTED_KEYS_DOC = "Number of keys each key filter is sized for";
+    public static final int KEY_FILTER_EXPECTED_KEYS_DEFAULT = 1000000;
+
+    public static final String KEY_FILTER_FPP_CONFIG = "key.filter.fpp";
+    private static final String KEY_FILTER_FPP_DOC = "Target false positive rate of a key filter holding " +
+            "key.filter.expected.keys keys. False positives are written as upserts";
+    public static final double KEY_FILTER_FPP_DEFAULT = 0.01;
+
+    public static final String KEY_FILTER_WARM_CONFIG = "key.filter.warm";
+    private static final String KEY_FILTER_WARM_DOC = "Load the primary keys of a table into its filter in " +
+            "the background on first use, upserting until done. Without it, every existing key is first " +
+            "tried as an INSERT";
+    public static final boolean KEY_FILTER_WARM_DEFAULT = true;
+
+    // Last-Writer-Wins
+    public static final String LWW_TIMESTAMP_COLUMN_CONFIG = "lww.timestamp.column";
+    private static final String LWW_TIMESTAMP_COLUMN_DOC = "Column that stores the source change time " +
+            "(A_TIMSTAMP) of each row. When set, upserts and deletes only apply if the change is not " +
+            "older than the stored row, so replays and out-of-order changes cannot overwrite newer data. " +
+            "A deleted row keeps no change time, so an older upsert replayed after its delete recreates it. " +
+            "Empty disables it";
+    public static final String LWW_TIMESTAMP_COLUMN_DEFAULT = "";
+
+    // Change-Log Mode
+    public static final String CHANGELOG_TABLE_SUFFIX_CONFIG = "changelog.table.suffix";
+    private static final String CHANGELOG_TABLE_SUFFIX_DOC = "Suffix of the change-log table of a table " +
+            "routed with write.mode=changelog";
+    public static final String CHANGELOG_TABLE_SUFFIX_DEFAULT = "_changelog";
+
+    public static final String CHANGELOG_COMPACT_INTERVAL_MS_CONFIG = "changelog.compact.interval.ms";
+    private static final String CHANGELOG_COMPACT_INTERVAL_MS_DOC = "Interval between the rounds that merge " +
+            "the change-log tables into their tables";
+    public static final long CHANGELOG_COMPACT_INTERVAL_MS_DEFAULT = 5000L;
+
+    public static final String CHANGELOG_COMPACT_BATCH_SIZE_CONFIG = "changelog.compact.batch.size";
+    private static final String CHANGELOG_COMPACT_BATCH_SIZE_DOC = "Maximum change-log rows of one partition " +
+            "merged in one transaction";
+    public static final int CHANGELOG_COMPACT_BATCH_SIZE_DEFAULT = 50000;
+
     // Error Handling
     public static final String MAX_RETRIES_CONFIG = "max.retries";
-    private static final String MAX_RETRIES_DOC = "Maximum number of retries on transient errors";
+    private static final String MAX_RETRIES_DOC = "Maximum number of consecutive retries of a put() " +
+            "that failed with a transient database error (deadlock, lock wait timeout, serialization " +
+            "failure) before the task fails. 0 fails the task on the first error";
     public static final int MAX_RETRIES_DEFAULT = 10;
 
     public static final String RETRY_BACKOFF_MS_CONFIG = "retry.backoff.ms";
-    private static final String RETRY_BACKOFF_MS_DOC = "Backoff time in milliseconds between retries";
+    private static final String RETRY_BACKOFF_MS_DOC = "Backoff time in milliseconds before a failed " +
+            "put() is retried";
     public static final int RETRY_BACKOFF_MS_DEFAULT = 3000;
 
     public static final ConfigDef CONFIG_DEF = new ConfigDef()
@@ -93,10 +326,16 @@ public class IidrCdcSinkConfig extends AbstractConfig {
             // Table Mapping
             .define(TABLE_NAME_FORMAT_CONFIG, Type.STRING, TABLE_NAME_FORMAT_DEFAULT,
                     Importance.MEDIUM, TABLE_NAME_FORMAT_DOC)
+            .define(TABLE_INCLUDE_LIST_CONFIG, Type.LIST, TABLE_INCLUDE_LIST_DEFAULT,
+                    Importance.MEDIUM, TABLE_INCLUDE_LIST_DOC)
             .define(CORRUPT_EVENTS_TABLE_CONFIG, Type.STRING, CORRUPT_EVENTS_TABLE_DEFAULT,
                     Importance.LOW, CORRUPT_EVENTS_TABLE_DOC)
             .define(ERRORS_TOLERANCE_CONFIG, Type.STRING, ERRORS_TOLERANCE_DEFAULT,
                     Importance.MEDIUM, ERRORS_TOLERANCE_DOC)
+            .define(OFFSETS_TABLE_CONFIG, Type.STRING, OFFSETS_TABLE_DEFAULT,
+                    Importance.MEDIUM, OFFSETS_TABLE_DOC)
+            .define(INSERT_FAST_PATH_CONFIG, Type.BOOLEAN, INSERT_FAST_PATH_DEFAULT,
+                    Importance.LOW, INSERT_FAST_PATH_DOC)
             // Timezone
             .define(DEFAULT_TIMEZONE_CONFIG, Type.STRING, DEFAULT_TIMEZONE_DEFAULT,
                     Importance.MEDIUM, DEFAULT_TIMEZONE_DOC)
@@ -110,9 +349,89 @@ public class IidrCdcSinkConfig extends AbstractConfig {
                     Importance.MEDIUM, AUTO_CREATE_DOC)
             .define(AUTO_EVOLVE_CONFIG, Type.BOOLEAN, AUTO_EVOLVE_DEFAULT,
                     Importance.MEDIUM, AUTO_EVOLVE_DOC)
+            // Metadata
+            .define(METADATA_PRELOAD_CONFIG, Type.BOOLEAN, METADATA_PRELOAD_DEFAULT,
+                    Importance.LOW, METADATA_PRELOAD_DOC)
+            .define(METADATA_PRELOAD_SCHEMA_CONFIG, Type.STRING, METADATA_PRELOAD_SCHEMA_DEFAULT,
+                    Importance.LOW, METADATA_PRELOAD_SCHEMA_DOC)
             // Batch
             .define(BATCH_SIZE_CONFIG, Type.INT, BATCH_SIZE_DEFAULT,
                     Importance.LOW, BATCH_SIZE_DOC)
+            .define(LOB_STREAM_THRESHOLD_CONFIG, Type.INT, LOB_STREAM_THRESHOLD_DEFAULT,
+                    ConfigDef.Range.atLeast(0), Importance.LOW, LOB_STREAM_THRESHOLD_DOC)
+            .define(STATEMENT_CACHE_SIZE_CONFIG, Type.INT, STATEMENT_CACHE_SIZE_DEFAULT,
+                    ConfigDef.Range.atLeast(1), Importance.LOW, STATEMENT_CACHE_SIZE_DOC)
+            .define(WRITE_SORT_BY_PK_CONFIG, Type.BOOLEAN, WRITE_SORT_BY_PK_DEFAULT,
+                    Importance.LOW, WRITE_SORT_BY_PK_DOC)
+            // Transactions
+            .define(COMMIT_LINGER_MS_CONFIG, Type.LONG, COMMIT_LINGER_MS_DEFAULT,
+                    ConfigDef.Range.atLeast(0), Importance.LOW, COMMIT_LINGER_MS_DOC)
+            .define(COMMIT_MAX_RECORDS_CONFIG, Type.INT, COMMIT_MAX_RECORDS_DEFAULT,
+                    ConfigDef.Range.atLeast(1), Importance.LOW, COMMIT_MAX_RECORDS_DOC)
+            .define(COMMIT_MAX_BYTES_CONFIG, Type.LONG, COMMIT_MAX_BYTES_DEFAULT,
+                    ConfigDef.Range.atLeast(1), Importance.LOW, COMMIT_MAX_BYTES_DOC)
+            // Decoding
+            .define(DECODE_PARALLELISM_CONFIG, Type.INT, DECODE_PARALLELISM_DEFAULT,
+                    ConfigDef.Range.atLeast(0), Importance.LOW, DECODE_PARALLELISM_DOC)
+            .define(DECODE_PARALLEL_THRESHOLD_CONFIG, Type.INT, DECODE_PARALLEL_THRESHOLD_DEFAULT,
+                    ConfigDef.Range.atLeast(1), Importance.LOW, DECODE_PARALLEL_THRESHOLD_DOC)
+            // Write Lanes
+            .define(WRITE_LANES_CONFIG, Type.INT, WRITE_LANES_DEFAULT,
+                    ConfigDef.Range.atLeast(1), Importance.LOW, WRITE_LANES_DOC)
+            .define(WRITE_LANES_THRESHOLD_CONFIG, Type.INT, WRITE_LANES_THRESHOLD_DEFAULT,
+                    ConfigDef.Range.atLeast(1), Importance.LOW, WRITE_LANES_THRESHOLD_DOC)
+            // Concurrent Table Writes
+            .define(WRITE_CONCURRENCY_CONFIG, Type.INT, WRITE_CONCURRENCY_DEFAULT,
+                    ConfigDef.Range.atLeast(1), Importance.LOW, WRITE_CONCURRENCY_DOC)
+            .define(WRITE_SLICE_SIZE_CONFIG, Type.INT, WRITE_SLICE_SIZE_DEFAULT,
+                    ConfigDef.Range.atLeast(1), Importance.LOW, WRITE_SLICE_SIZE_DOC)
+            .define(WRITE_TABLE_WEIGHTS_CONFIG, Type.LIST, WRITE_TABLE_WEIGHTS_DEFAULT,
+                    Importance.LOW, WRITE_TABLE_WEIGHTS_DOC)
+            .define(WRITE_INTERACTIVE_TABLES_CONFIG, Type.LIST, WRITE_INTERACTIVE_TABLES_DEFAULT,
+                    Importance.LOW, WRITE_INTERACTIVE_TABLES_DOC)
+            // Flow Control
+            .define(FLOW_CONTROL_LATENCY_MS_CONFIG, Type.LONG, FLOW_CONTROL_LATENCY_MS_DEFAULT,
+                    ConfigDef.Range.atLeast(0), Importance.LOW, FLOW_CONTROL_LATENCY_MS_DOC)
+            .define(FLOW_CONTROL_MAX_TABLE_BYTES_CONFIG, Type.LONG, FLOW_CONTROL_MAX_TABLE_BYTES_DEFAULT,
+                    ConfigDef.Range.atLeast(0), Importance.LOW, FLOW_CONTROL_MAX_TABLE_BYTES_DOC)
+            .define(FLOW_CONTROL_PAUSE_MS_CONFIG, Type.LONG, FLOW_CONTROL_PAUSE_MS_DEFAULT,
+                    ConfigDef.Range.atLeast(1), Importance.LOW, FLOW_CONTROL_PAUSE_MS_DOC)
+            .define(FLOW_CONTROL_MAX_PAUSE_MS_CONFIG, Type.LONG, FLOW_CONTROL_MAX_PAUSE_MS_DEFAULT,
+                    ConfigDef.Range.atLeast(1), Importance.LOW, FLOW_CONTROL_MAX_PAUSE_MS_DOC)
+            // Spill
+            .define(SPILL_DIR_CONFIG, Type.STRING, SPILL_DIR_DEFAULT,
+                    Importance.MEDIUM, SPILL_DIR_DOC)
+            .define(SPILL_MAX_BYTES_CONFIG, Type.LONG, SPILL_MAX_BYTES_DEFAULT,
+                    ConfigDef.Range.atLeast(1024 * 1024), Importance.LOW, SPILL_MAX_BYTES_DOC)
+            .define(SPILL_SEGMENT_BYTES_CONFIG, Type.INT, SPILL_SEGMENT_BYTES_DEFAULT,
+                    ConfigDef.Range.atLeast(1024 * 1024), Importance.LOW, SPILL_SEGMENT_BYTES_DOC)
+            // Memory
+            .define(BUFFER_MAX_BYTES_CONFIG, Type.LONG, BUFFER_MAX_BYTES_DEFAULT,
+                    ConfigDef.Range.atLeast(0), Importance.MEDIUM, BUFFER_MAX_BYTES_DOC)
+            .define(ROW_CACHE_ENTRIES_CONFIG, Type.INT, ROW_CACHE_ENTRIES_DEFAULT,
+                    ConfigDef.Range.between(0, RowImageCache.MAX_ENTRIES), Importance.LOW, ROW_CACHE_ENTRIES_DOC)
+            .define(ROW_CACHE_TABLES_CONFIG, Type.LIST, ROW_CACHE_TABLES_DEFAULT,
+                    Importance.LOW, ROW_CACHE_TABLES_DOC)
+            .define(ROW_CACHE_DIR_CONFIG, Type.STRING, ROW_CACHE_DIR_DEFAULT,
+                    Importance.LOW, ROW_CACHE_DIR_DOC)
+            .define(KEY_FILTER_TABLES_CONFIG, Type.LIST, KEY_FILTER_TABLES_DEFAULT,
+                    Importance.LOW, KEY_FILTER_TABLES_DOC)
+            .define(KEY_FILTER_EXPECTED_KEYS_CONFIG, Type.INT, KEY_FILTER_EXPECTED_KEYS_DEFAULT,
+                    ConfigDef.Range.between(1000, 100000000), Importance.LOW, KEY_FILTER_EXPECTED_KEYS_DOC)
+            .define(KEY_FILTER_FPP_CONFIG, Type.DOUBLE, KEY_FILTER_FPP_DEFAULT,
+                    ConfigDef.Range.between(0.0001, 0.5), Importance.LOW, KEY_FILTER_FPP_DOC)
+            .define(KEY_FILTER_WARM_CONFIG, Type.BOOLEAN, KEY_FILTER_WARM_DEFAULT,
+                    Importance.LOW, KEY_FILTER_WARM_DOC)
+            // Last-Writer-Wins
+            .define(LWW_TIMESTAMP_COLUMN_CONFIG, Type.STRING, LWW_TIMESTAMP_COLUMN_DEFAULT,
+                    Importance.MEDIUM, LWW_TIMESTAMP_COLUMN_DOC)
+            // Change-Log Mode
+            .define(CHANGELOG_TABLE_SUFFIX_CONFIG, Type.STRING, CHANGELOG_TABLE_SUFFIX_DEFAULT,
+                    new ConfigDef.NonEmptyString(), Importance.LOW, CHANGELOG_TABLE_SUFFIX_DOC)
+            .define(CHANGELOG_COMPACT_INTERVAL_MS_CONFIG, Type.LONG, CHANGELOG_COMPACT_INTERVAL_MS_DEFAULT,
+                    ConfigDef.Range.atLeast(100), Importance.LOW, CHANGELOG_COMPACT_INTERVAL_MS_DOC)
+            .define(CHANGELOG_COMPACT_BATCH_SIZE_CONFIG, Type.INT, CHANGELOG_COMPACT_BATCH_SIZE_DEFAULT,
+                    ConfigDef.Range.atLeast(1), Importance.LOW, CHANGELOG_COMPACT_BATCH_SIZE_DOC)
             // Error Handling
             .define(MAX_RETRIES_CONFIG, Type.INT, MAX_RETRIES_DEFAULT,
                     Importance.MEDIUM, MAX_RETRIES_DOC)
@@ -139,6 +458,17 @@ public class IidrCdcSinkConfig extends AbstractConfig {
         return getString(TABLE_NAME_FORMAT_CONFIG);
     }
 
+    public List<String> getTableIncludeList() {
+        return getList(TABLE_INCLUDE_LIST_CONFIG);
+    }
+
+    /**
+     * Build the multi-table routes from table.include.list and the per-table overrides.
+     */
+    public TableRoutes getTableRoutes() {
+        return TableRoutes.from(getTableIncludeList(), originals());
+    }
+
     public String getCorruptEventsTable() {
         return getString(CORRUPT_EVENTS_TABLE_CONFIG);
     }
@@ -148,6 +478,19 @@ public class IidrCdcSinkConfig extends AbstractConfig {
         return table != null && !table.trim().isEmpty();
     }
 
+    public String getOffsetsTable() {
+        return getString(OFFSETS_TABLE_CONFIG);
+    }
+
+    public boolean isOffsetsTableEnabled() {
+        String table = getOffsetsTable();
+        return table != null && !table.trim().isEmpty();
+    }
+
+    public boolean isInsertFastPath() {
+        return getBoolean(INSERT_FAST_PATH_CONFIG);
+    }
+
     public String getErrorsTolerance() {
         return getString(ERRORS_TOLERANCE_CONFIG);
     }
@@ -184,10 +527,212 @@ public class IidrCdcSinkConfig extends AbstractConfig {
         return getBoolean(AUTO_EVOLVE_CONFIG);
     }
 
+    public boolean isMetadataPreload() {
+        return getBoolean(METADATA_PRELOAD_CONFIG);
+    }
+
+    public String getMetadataPreloadSchema() {
+        return getString(METADATA_PRELOAD_SCHEMA_CONFIG);
+    }
+
     public int getBatchSize() {
         return getInt(BATCH_SIZE_CONFIG);
     }
 
+    public int getLobStreamThreshold() {
+        return getInt(LOB_STREAM_THRESHOLD_CONFIG);
+    }
+
+    public int getStatementCacheSize() {
+        return getInt(STATEMENT_CACHE_SIZE_CONFIG);
+    }
+
+    public boolean isWriteSortByPk() {
+        return getBoolean(WRITE_SORT_BY_PK_CONFIG);
+    }
+
+    public long getCommitLingerMs() {
+        return getLong(COMMIT_LINGER_MS_CONFIG);
+    }
+
+    /**
+     * Whether transactions may span several put() calls.
+     */
+    public boolean isGroupCommit() {
+        return getCommitLingerMs() > 0;
+    }
+
+    public int getCommitMaxRecords() {
+        return getInt(COMMIT_MAX_RECORDS_CONFIG);
+    }
+
+    public long getCommitMaxBytes() {
+        return getLong(COMMIT_MAX_BYTES_CONFIG);
+    }
+
+    public int getDecodeParallelism() {
+        return getInt(DECODE_PARALLELISM_CONFIG);
+    }
+
+    public int getDecodeParallelThreshold() {
+        return getInt(DECODE_PARALLEL_THRESHOLD_CONFIG);
+    }
+
+    public int getWriteLanes() {
+        return getInt(WRITE_LANES_CONFIG);
+    }
+
+    public int getWriteLanesThreshold() {
+        return getInt(WRITE_LANES_THRESHOLD_CONFIG);
+    }
+
+    public int getWriteConcurrency() {
+        return getInt(WRITE_CONCURRENCY_CONFIG);
+    }
+
+    public int getWriteSliceSize() {
+        return getInt(WRITE_SLICE_SIZE_CONFIG);
+    }
+
+    /**
+     * Parse write.table.weights into target table -> weight.
+     */
+    public Map<String, Integer> getWriteTableWeights() {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String entry : getList(WRITE_TABLE_WEIGHTS_CONFIG)) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            int colon = entry.lastIndexOf(':');
+            try {
+                int weight = colon > 0 ? Integer.parseInt(entry.substring(colon + 1).trim()) : 0;
+                if (weight < 1) {
+                    throw new NumberFormatException();
+                }
+                weights.put(entry.substring(0, colon).trim(), weight);
+            } catch (NumberFormatException e) {
+                throw new ConfigException(WRITE_TABLE_WEIGHTS_CONFIG, entry,
+                        "Expected 'TABLE:weight' with a positive integer weight");
+            }
+        }
+        return weights;
+    }
+
+    public Set<String> getWriteInteractiveTables() {
+        Set<String> tables = new HashSet<>();
+        for (String table : getList(WRITE_INTERACTIVE_TABLES_CONFIG)) {
+            if (!table.trim().isEmpty()) {
+                tables.add(table.trim());
+            }
+        }
+        return tables;
+    }
+
+    public long getFlowControlLatencyMs() {
+        return getLong(FLOW_CONTROL_LATENCY_MS_CONFIG);
+    }
+
+    public long getFlowControlMaxTableBytes() {
+        return getLong(FLOW_CONTROL_MAX_TABLE_BYTES_CONFIG);
+    }
+
+    public long getFlowControlPauseMs() {
+        return getLong(FLOW_CONTROL_PAUSE_MS_CONFIG);
+    }
+
+    public long getFlowControlMaxPauseMs() {
+        return getLong(FLOW_CONTROL_MAX_PAUSE_MS_CONFIG);
+    }
+
+    public boolean isFlowControlEnabled() {
+        return getFlowControlLatencyMs() > 0 || getFlowControlMaxTableBytes() > 0;
+    }
+
+    public String getSpillDir() {
+        return getString(SPILL_DIR_CONFIG);
+    }
+
+    public boolean isSpillEnabled() {
+        String dir = getSpillDir();
+        return dir != null && !dir.trim().isEmpty();
+    }
+
+    public long getSpillMaxBytes() {
+        return getLong(SPILL_MAX_BYTES_CONFIG);
+    }
+
+    public int getSpillSegmentBytes() {
+        return getInt(SPILL_SEGMENT_BYTES_CONFIG);
+    }
+
+    public long getBufferMaxBytes() {
+        return getLong(BUFFER_MAX_BYTES_CONFIG);
+    }
+
+    public int getRowCacheEntries() {
+        return getInt(ROW_CACHE_ENTRIES_CONFIG);
+    }
+
+    public Set<String> getRowCacheTables() {
+        Set<String> tables = new HashSet<>();
+        for (String table : getList(ROW_CACHE_TABLES_CONFIG)) {
+            if (!table.trim().isEmpty()) {
+                tables.add(table.trim());
+            }
+        }
+        return tables;
+    }
+
+    public String getRowCacheDir() {
+        return getString(ROW_CACHE_DIR_CONFIG);
+    }
+
+    public Set<String> getKeyFilterTables() {
+        Set<String> tables = new HashSet<>();
+        for (String table : getList(KEY_FILTER_TABLES_CONFIG)) {
+            if (!table.trim().isEmpty()) {
+                tables.add(table.trim());
+            }
+        }
+        return tables;
+    }
+
+    public boolean isKeyFilterEnabled() {
+        return !getKeyFilterTables().isEmpty();
+    }
+
+    public int getKeyFilterExpectedKeys() {
+        return getInt(KEY_FILTER_EXPECTED_KEYS_CONFIG);
+    }
+
+    public double getKeyFilterFpp() {
+        return getDouble(KEY_FILTER_FPP_CONFIG);
+    }
+
+    public boolean isKeyFilterWarm() {
+        return getBoolean(KEY_FILTER_WARM_CONFIG);
+    }
+
+    public String getLwwTimestampColumn() {
+        return getString(LWW_TIMESTAMP_COLUMN_CONFIG).trim();
+    }
+
+    public boolean isLwwEnabled() {
+        return !getLwwTimestampColumn().isEmpty();
+    }
+
+    public String getChangeLogTableSuffix() {
+        return getString(CHANGELOG_TABLE_SUFFIX_CONFIG);
+    }
+
+    public long getChangeLogCompactIntervalMs() {
+        return getLong(CHANGELOG_COMPACT_INTERVAL_MS_CONFIG);
+    }
+
+    public int getChangeLogCompactBatchSize() {
+        return getInt(CHANGELOG_COMPACT_BATCH_SIZE_CONFIG);
+    }
+
     public int getMaxRetries() {
         return getInt(MAX_RETRIES_CONFIG);
     }
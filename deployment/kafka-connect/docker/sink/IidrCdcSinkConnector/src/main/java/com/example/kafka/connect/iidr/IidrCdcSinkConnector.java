@@ -1,5 +1,6 @@
 package com.example.kafka.connect.iidr;
 
+import com.example.kafka.connect.iidr.util.TableNameTemplate;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.connect.connector.Task;
 import org.apache.kafka.connect.sink.SinkConnector;
@@ -36,7 +37,10 @@ public class IidrCdcSinkConnector extends SinkConnector {
         this.configProps = props;
 
         // Validate configuration
-        new IidrCdcSinkConfig(props);
+        IidrCdcSinkConfig config = new IidrCdcSinkConfig(props);
+        TableNameTemplate.compile(config.getTableNameFormat());
+        config.getTableRoutes();
+        config.getWriteTableWeights();
 
         log.info("IidrCdcSinkConnector started with configuration: connection.url=" +
                 props.get(IidrCdcSinkConfig.CONNECTION_URL_CONFIG) +
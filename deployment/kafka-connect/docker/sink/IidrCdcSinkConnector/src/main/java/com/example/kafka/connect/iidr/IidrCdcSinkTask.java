@@ -1,22 +1,53 @@
 package com.example.kafka.connect.iidr;
 
+import com.example.kafka.connect.iidr.converter.LazyValue;
 import com.example.kafka.connect.iidr.dialect.Dialect;
-import com.example.kafka.connect.iidr.dialect.DialectFactory;
+import com.example.kafka.connect.iidr.metrics.SinkTaskMetrics;
 import com.example.kafka.connect.iidr.operation.CdcOperation;
-import com.example.kafka.connect.iidr.operation.EntryTypeMapper;
-import com.example.kafka.connect.iidr.util.HeaderExtractor;
+import com.example.kafka.connect.iidr.routing.TableRoutes;
+import com.example.kafka.connect.iidr.routing.TableRoutes.Route;
+import com.example.kafka.connect.iidr.routing.TableRoutes.WriteMode;
+import com.example.kafka.connect.iidr.spill.SpillCodec;
+import com.example.kafka.connect.iidr.spill.SpillLog;
+import com.example.kafka.connect.iidr.util.RecordHeaders;
+import com.example.kafka.connect.iidr.util.HeapBudget;
+import com.example.kafka.connect.iidr.util.RecordSizeEstimator;
+import com.example.kafka.connect.iidr.util.TableNameTemplate;
 import com.example.kafka.connect.iidr.util.TimestampConverter;
+import com.example.kafka.connect.iidr.writer.ChangeLogCompactor;
 import com.example.kafka.connect.iidr.writer.CorruptEventWriter;
 import com.example.kafka.connect.iidr.writer.CorruptEventWriter.CorruptRecord;
 import com.example.kafka.connect.iidr.writer.JdbcWriter;
 import com.example.kafka.connect.iidr.writer.JdbcWriter.ProcessedRecord;
+import com.example.kafka.connect.iidr.writer.KeyFilters;
+import com.example.kafka.connect.iidr.writer.MetadataRegistry;
+import com.example.kafka.connect.iidr.writer.OffsetStore;
+import com.example.kafka.connect.iidr.writer.RowImageCache;
+import com.example.kafka.connect.iidr.writer.TableMetadataCache;
+import com.example.kafka.connect.iidr.writer.TableScheduler;
+import com.example.kafka.connect.iidr.writer.WriteLanes;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.errors.RetriableException;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.apache.kafka.connect.sink.SinkTask;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,11 +62,75 @@ public class IidrCdcSinkTask extends SinkTask {
 
     private static final Logger log = Logger.getLogger(IidrCdcSinkTask.class.getName());
 
+    // Smallest chunk handed to a decode thread; chunks per thread for load balancing
+    private static final int MIN_DECODE_CHUNK = 256;
+    private static final int DECODE_CHUNKS_PER_THREAD = 4;
+
+    static final String TRANSACTION_COMMITS = "transaction-commits";
+    static final String TRANSACTION_COMMIT_MS = "transaction-commit-ms";
+    static final String UNCOMMITTED_RECORDS = "uncommitted-records";
+    static final String REPLAYED_RECORDS_SKIPPED = "replayed-records-skipped";
+    static final String PUT_RETRIES = "put-retries";
+    static final String SPILL_BYTES = "spill-bytes";
+    static final String SPILLED_RECORDS = "spilled-records";
+    static final String DRAINED_RECORDS = "drained-records";
+    static final String SPILL_FENCED_RECORDS = "spill-fenced-records";
+    static final String BUFFERED_BYTES = "buffered-bytes";
+    static final String BUFFER_PAUSES = "buffer-pauses";
+    static final String ROW_CACHE_ENTRIES = "row-cache-entries";
+
+    // Time one put() spends draining the spill log, well within max.poll.interval.ms
+    private static final long SPILL_DRAIN_BUDGET_MS = 30_000L;
+    private static final int CONNECTION_CHECK_SECONDS = 5;
+
     private IidrCdcSinkConfig config;
     private Connection connection;
     private JdbcWriter jdbcWriter;
+    private WriteLanes writeLanes;
+    private TableScheduler tableScheduler;
     private CorruptEventWriter corruptEventWriter;
     private TimestampConverter timestampConverter;
+    private TableNameTemplate tableNameTemplate;
+    private TableRoutes tableRoutes;
+    private final RecordHeaders recordHeaders = new RecordHeaders();
+    private ForkJoinPool decodePool;
+    private String metadataScope;
+    private SinkTaskMetrics metrics;
+    private Dialect dialect;
+    private TableMetadataCache metadataCache;
+    private String connectorName;
+    private FlowController flowController;
+    private int retries;
+
+    // Open transaction: offset range per partition and size of the records it holds
+    private final Map<TopicPartition, Long> pendingStart = new HashMap<>();
+    private final Map<TopicPartition, Long> pendingEnd = new HashMap<>();
+    private final Map<TopicPartition, OffsetAndMetadata> committedOffsets = new HashMap<>();
+    private long pendingRecords;
+    private long pendingBytes;
+    private long pendingSinceMs;
+
+    // Offsets stored in the target database and the next offset to apply per partition
+    private OffsetStore offsetStore;
+    private final Map<TopicPartition, Long> appliedOffsets = new HashMap<>();
+    private boolean insertFastPath;
+    private boolean lww;
+
+    // Batches spilled while the target is unavailable, drained before anything else is written
+    private SpillLog spillLog;
+    private boolean spillFenced;
+    private long nextDrainMs;
+
+    // Heap budget shared with the other tasks of the connector, and whether it paused our partitions
+    private HeapBudget heapBudget;
+    private boolean budgetPaused;
+
+    // Hashes of the committed row image per primary key, to skip unchanged rows
+    private RowImageCache rowImageCache;
+
+    // Bloom filters of existing keys, shared with the other tasks of the connector
+    private KeyFilters keyFilters;
+    private ChangeLogCompactor changeLogCompactor;
 
     @Override
     public String version() {
@@ -48,38 +143,148 @@ public class IidrCdcSinkTask extends SinkTask {
 
         this.config = new IidrCdcSinkConfig(props);
         this.timestampConverter = new TimestampConverter(config.getDefaultTimezone());
+        this.tableNameTemplate = TableNameTemplate.compile(config.getTableNameFormat());
+        this.tableRoutes = config.getTableRoutes();
+        this.metrics = new SinkTaskMetrics();
+        metrics.register(props.getOrDefault("name", "iidr-cdc-sink"), props.getOrDefault("task.id", "0"));
+        metrics.gauge(UNCOMMITTED_RECORDS, () -> pendingRecords);
+        if (config.getDecodeParallelism() > 1) {
+            this.decodePool = new ForkJoinPool(config.getDecodeParallelism());
+            log.info("Parallel decoding enabled with " + config.getDecodeParallelism() +
+                    " threads for polls of at least " + config.getDecodeParallelThreshold() + " records");
+        }
 
         // Initialize JDBC connection
         try {
-            this.connection = DriverManager.getConnection(
-                    config.getConnectionUrl(),
-                    config.getConnectionUser(),
-                    config.getConnectionPassword()
-            );
-            connection.setAutoCommit(false);
-
-            Dialect dialect = DialectFactory.create(connection);
-            this.jdbcWriter = new JdbcWriter(connection, config, dialect);
-
-            // Initialize corrupt event writer only if enabled
-            if (config.isCorruptEventsTableEnabled()) {
-                this.corruptEventWriter = new CorruptEventWriter(
-                        connection,
-                        config.getCorruptEventsTable(),
-                        false
-                );
-
-                if (config.isAutoCreate()) {
-                    try (java.sql.Statement stmt = connection.createStatement()) {
-                        String sql = String.format("CREATE TABLE IF NOT EXISTS %s (id BIGINT AUTO_INCREMENT PRIMARY KEY, topic VARCHAR(255) NOT NULL, kafka_partition INT NOT NULL, kafka_offset BIGINT NOT NULL, record_key TEXT, record_value LONGTEXT, headers TEXT, error_reason VARCHAR(1000) NOT NULL, table_name VARCHAR(255), entry_type VARCHAR(10), created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, INDEX idx_topic_partition_offset (topic, kafka_partition, kafka_offset), INDEX idx_table_name (table_name), INDEX idx_created_at (created_at))", config.getCorruptEventsTable());
-                        stmt.execute(sql);
-                        connection.commit();
-                    } catch (SQLException e) {
-                        log.warning("Failed to create corrupt events table: " + e.getMessage());
-                    }
+            this.connection = openConnection();
+
+            // Metadata and dialect are shared by all tasks of this connector in the worker
+            String scope = metadataScope(props);
+            this.metadataCache = MetadataRegistry.acquire(scope, connection);
+            this.metadataScope = scope;
+            this.dialect = metadataCache.getDialect();
+            this.connectorName = props.getOrDefault("name", "iidr-cdc-sink");
+            if (config.getRowCacheEntries() > 0) {
+                String dir = config.getRowCacheDir();
+                Path file = dir == null || dir.trim().isEmpty() ? null
+                        : Paths.get(dir, connectorName + "-" + props.getOrDefault("task.id", "0") + ".cache");
+                try {
+                    RowImageCache cache = new RowImageCache(config.getRowCacheEntries(), file);
+                    this.rowImageCache = cache;
+                    metrics.gauge(ROW_CACHE_ENTRIES, () -> cache.size());
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to open row image cache " + file, e);
+                }
+                log.info("Row image cache enabled with " + config.getRowCacheEntries() + " entries" +
+                        (file != null ? " in " + file : ""));
+            }
+            if (config.isKeyFilterEnabled()) {
+                KeyFilters filters = KeyFilters.acquire(scope, config, this::openConnection);
+                this.keyFilters = filters;
+                // Once per task, not per writer: the lanes and workers share the filters
+                for (String table : config.getKeyFilterTables()) {
+                    metrics.gauge(JdbcWriter.KEY_FILTER_FPP_PPM + table,
+                            () -> Math.round(filters.falsePositiveRate(table) * 1_000_000));
+                }
+                log.info("Key filters enabled for tables " + config.getKeyFilterTables());
+            }
+            this.lww = config.isLwwEnabled();
+            if (lww) {
+                String column = config.getLwwTimestampColumn();
+                if (dialect.buildConditionalUpsertSql("t", Arrays.asList("k", column),
+                        Collections.singletonList("k"), column) == null) {
+                    log.warning("Dialect " + dialect.getName() + " has no conditional upsert: " +
+                            "last-writer-wins only applies to deletes and to stale changes within a batch");
+                } else {
+                    log.info("Last-writer-wins enabled on column " + column);
+                }
+            }
+            openWriters();
+
+            if (writeLanes != null) {
+                log.info("Write lanes enabled: " + config.getWriteLanes() + " connections for tables with at least " +
+                        config.getWriteLanesThreshold() + " records per put");
+            }
+            if (tableScheduler != null) {
+                log.info("Concurrent table writes enabled with " + config.getWriteConcurrency() + " connections");
+            }
+
+            if (config.isMetadataPreload()) {
+                try {
+                    jdbcWriter.preloadMetadata(config.getMetadataPreloadSchema());
+                } catch (SQLException e) {
+                    log.warning("Failed to preload table metadata, falling back to lazy loading: " + e.getMessage());
                 }
             }
 
+            if (offsetStore != null && config.isAutoCreate()) {
+                try {
+                    offsetStore.createTableIfNotExists();
+                } catch (SQLException e) {
+                    log.warning("Failed to create offsets table: " + e.getMessage());
+                }
+            }
+            if (config.isInsertFastPath()) {
+                if (offsetStore != null && writeLanes == null && tableScheduler == null) {
+                    this.insertFastPath = true;
+                    log.info("Insert fast path enabled: journal inserts are applied as plain INSERTs");
+                } else {
+                    log.warning("insert.fast.path requires offsets.table and a single connection " +
+                            "(write.lanes=1, write.concurrency=1); applying inserts as upserts");
+                }
+            }
+
+            for (Route route : tableRoutes.getRoutes()) {
+                if (route.getWriteMode() != WriteMode.CHANGELOG) {
+                    continue;
+                }
+                if (changeLogCompactor == null) {
+                    this.changeLogCompactor = new ChangeLogCompactor(this::openConnection, config,
+                            metadataCache, metrics);
+                }
+                // Tables named by table.name.format are registered when their partitions are assigned
+                if (route.getTargetTable() != null) {
+                    changeLogCompactor.register(route.getTargetTable(), route);
+                }
+            }
+
+            if (config.isFlowControlEnabled()) {
+                this.flowController = new FlowController(context, config, metrics);
+                log.info("Flow control enabled: latency threshold " + config.getFlowControlLatencyMs() +
+                        " ms, table byte threshold " + config.getFlowControlMaxTableBytes());
+            }
+
+            if (config.getBufferMaxBytes() > 0) {
+                HeapBudget budget = HeapBudget.acquire(connectorName, config.getBufferMaxBytes());
+                this.heapBudget = budget;
+                metrics.gauge(BUFFERED_BYTES, budget::getUsedBytes);
+                log.info("Heap budget enabled: " + budget.getMaxBytes() + " bytes shared by the tasks of " +
+                        connectorName + " in this worker");
+            }
+
+            // Corrupt event writer is created by openWriters() only if enabled
+            if (corruptEventWriter != null && config.isAutoCreate()) {
+                try (java.sql.Statement stmt = connection.createStatement()) {
+                    String sql = String.format("CREATE TABLE IF NOT EXISTS %s (id BIGINT AUTO_INCREMENT PRIMARY KEY, topic VARCHAR(255) NOT NULL, kafka_partition INT NOT NULL, kafka_offset BIGINT NOT NULL, record_key TEXT, record_value LONGTEXT, headers TEXT, error_reason VARCHAR(1000) NOT NULL, table_name VARCHAR(255), entry_type VARCHAR(10), created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, INDEX idx_topic_partition_offset (topic, kafka_partition, kafka_offset), INDEX idx_table_name (table_name), INDEX idx_created_at (created_at))", config.getCorruptEventsTable());
+                    stmt.execute(sql);
+                    connection.commit();
+                } catch (SQLException e) {
+                    log.warning("Failed to create corrupt events table: " + e.getMessage());
+                }
+            }
+
+            if (config.isSpillEnabled()) {
+                Path spillDir = Paths.get(config.getSpillDir(), connectorName + "-" + props.getOrDefault("task.id", "0"));
+                try {
+                    SpillLog spill = new SpillLog(spillDir, config.getSpillSegmentBytes(), config.getSpillMaxBytes());
+                    this.spillLog = spill;
+                    metrics.gauge(SPILL_BYTES, spill::size);
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to open spill log in " + spillDir, e);
+                }
+                log.info("Spill log enabled in " + spillDir + " with up to " + config.getSpillMaxBytes() + " bytes");
+            }
+
             log.info("IidrCdcSinkTask configuration: iidr.errors.tolerance=" + config.getErrorsTolerance() +
                     ", corrupt.events.table=" + (config.isCorruptEventsTableEnabled() ? config.getCorruptEventsTable() : "disabled"));
 
@@ -92,94 +297,698 @@ public class IidrCdcSinkTask extends SinkTask {
 
     @Override
     public void put(Collection<SinkRecord> records) {
+        if (budgetPaused) {
+            resumeAfterBudget();
+        }
+        if (flowController != null && !budgetPaused) {
+            flowController.resumeDue(System.currentTimeMillis());
+        }
+        if (spillLog != null && !spillLog.isEmpty()) {
+            drainSpill();
+        }
         if (records.isEmpty()) {
+            // Quiet period: commit a transaction whose linger time is up
+            if (pendingRecords > 0 && isCommitDue()) {
+                try {
+                    commitTransaction();
+                } catch (SQLException e) {
+                    log.log(Level.SEVERE, "Failed to commit transaction", e);
+                    rollbackTransaction();
+                    throw new RuntimeException("Failed to commit records", e);
+                }
+            }
             return;
         }
 
         log.fine("Processing " + records.size() + " records");
 
+        SinkRecord[] batch = dropApplied(records.toArray(new SinkRecord[0]));
+        if (rowImageCache != null && rowImageCache.isResuming()) {
+            for (SinkRecord record : batch) {
+                rowImageCache.resume(new TopicPartition(record.topic(), record.kafkaPartition()),
+                        record.kafkaOffset());
+            }
+        }
+        if (heapBudget == null) {
+            putBatch(batch, true);
+            return;
+        }
+
+        // Write the poll in chunks that fit the heap left by the other tasks, but not in
+        // arbitrarily small ones: past the budget, partitions are paused instead
+        long[] sizes = new long[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            sizes[i] = RecordSizeEstimator.retainedSize(batch[i]);
+        }
+        long minChunkBytes = heapBudget.getMaxBytes() / 8;
+        int start = 0;
+        while (start < batch.length) {
+            long limit = Math.max(heapBudget.available(), minChunkBytes);
+            long bytes = sizes[start];
+            int end = start + 1;
+            while (end < batch.length && bytes + sizes[end] <= limit) {
+                bytes += sizes[end++];
+            }
+            SinkRecord[] chunk = start == 0 && end == batch.length ? batch : Arrays.copyOfRange(batch, start, end);
+            if (heapBudget.reserve(bytes) > heapBudget.getMaxBytes() && !budgetPaused) {
+                pauseForBudget();
+            }
+            try {
+                // A redelivered poll re-applies the earlier chunks unless the offsets table drops them
+                putBatch(chunk, start == 0 || offsetStore != null);
+            } finally {
+                heapBudget.free(bytes);
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Decode and write the records of a poll, or a chunk of it.
+     *
+     * @param redeliverable whether a transient failure may be retried by redelivering the poll
+     */
+    private void putBatch(SinkRecord[] batch, boolean redeliverable) {
         // Group records by table and validity
         Map<String, List<ProcessedRecord>> validRecordsByTable = new HashMap<>();
+        Map<String, Route> routesByTable = new HashMap<>();
         List<CorruptRecord> corruptRecords = new ArrayList<>();
+        Map<String, Set<TopicPartition>> partitionsByTable = flowController != null ? new HashMap<>() : null;
+        Map<String, Long> bytesByTable = flowController != null ? new HashMap<>() : null;
 
-        int skippedCount = 0;
-        for (SinkRecord record : records) {
-            try {
-                ProcessingResult result = processRecord(record);
+        ProcessingResult[] results = decode(batch);
 
-                if (result.isSkipped()) {
-                    // Record is for a different table, skip silently
-                    skippedCount++;
-                    continue;
-                } else if (result.isCorrupt()) {
-                    corruptRecords.add(new CorruptRecord(record, result.getCorruptReason()));
-                } else {
-                    ProcessedRecord processed = result.getProcessedRecord();
-                    validRecordsByTable
-                            .computeIfAbsent(processed.getTargetTable(), k -> new ArrayList<>())
-                            .add(processed);
+        // Merge in poll order, which keeps the order per partition and per key
+        int skippedCount = 0;
+        for (int i = 0; i < batch.length; i++) {
+            ProcessingResult result = results[i];
+            if (result.isSkipped()) {
+                // Record is for a different table, skip silently
+                skippedCount++;
+            } else if (result.isCorrupt()) {
+                corruptRecords.add(new CorruptRecord(batch[i], result.getCorruptReason()));
+            } else {
+                ProcessedRecord processed = result.getProcessedRecord();
+                validRecordsByTable
+                        .computeIfAbsent(processed.getTargetTable(), k -> new ArrayList<>())
+                        .add(processed);
+                if (result.getRoute() != null) {
+                    checkRoute(processed.getTargetTable(), result.getRoute(),
+                            routesByTable.putIfAbsent(processed.getTargetTable(), result.getRoute()));
+                }
+                if (flowController != null) {
+                    SinkRecord record = batch[i];
+                    partitionsByTable.computeIfAbsent(processed.getTargetTable(), k -> new HashSet<>())
+                            .add(new TopicPartition(record.topic(), record.kafkaPartition()));
+                    bytesByTable.merge(processed.getTargetTable(), RecordSizeEstimator.estimate(record), Long::sum);
                 }
-            } catch (Exception e) {
-                log.log(Level.SEVERE, "Unexpected error processing record: " + e.getMessage(), e);
-                corruptRecords.add(new CorruptRecord(record, "Processing error: " + e.getMessage()));
             }
         }
 
         if (skippedCount > 0) {
-            log.fine("Skipped " + skippedCount + " records not matching table.name.format: " + config.getTableNameFormat());
+            log.fine("Skipped " + skippedCount + " records not matching " + (tableRoutes.isEnabled()
+                    ? "table.include.list" : "table.name.format: " + config.getTableNameFormat()));
+        }
+
+        // Keep the order: while anything is spilled, new records are spilled behind it
+        if (spillLog != null && !spillLog.isEmpty()) {
+            spill(batch, results, corruptRecords);
+            return;
         }
 
         // Write valid records by table
+        TableScheduler.Run scheduled = null;
+        boolean retriable = false;
         try {
+            if (connection == null) {
+                // Lost while draining the spill log, which holds no records of earlier puts
+                retriable = true;
+                ensureConnected();
+            }
+            // DDL commits the open transaction on MySQL/MariaDB: run it before this put writes
+            // anything, after committing earlier puts together with their offsets
+            retriable |= pendingRecords == 0;
+            prepareTables(validRecordsByTable, routesByTable);
+            Map<String, List<ProcessedRecord>> scheduledTables = new LinkedHashMap<>();
+            Map<String, List<ProcessedRecord>> taskTables = new LinkedHashMap<>();
+            boolean extraConnections = false;
             for (Map.Entry<String, List<ProcessedRecord>> entry : validRecordsByTable.entrySet()) {
-                jdbcWriter.write(entry.getKey(), entry.getValue());
+                Route route = routesByTable.get(entry.getKey());
+                boolean lanes = useWriteLanes(entry.getValue(), route);
+                if (tableScheduler != null && !lanes && !isAppendOnly(route)) {
+                    scheduledTables.put(entry.getKey(), entry.getValue());
+                    extraConnections = true;
+                } else {
+                    taskTables.put(entry.getKey(), entry.getValue());
+                    extraConnections |= lanes;
+                }
+            }
+
+            // Only the task connection keeps a transaction open across puts: rows locked by it
+            // would block the other connections, so commit it before they write
+            if (extraConnections && pendingRecords > 0) {
+                commitTransaction();
+            }
+            // A failure can only be retried or spilled if it loses no records of earlier puts
+            retriable = pendingRecords == 0;
+            trackPending(batch);
+
+            if (!scheduledTables.isEmpty()) {
+                scheduled = tableScheduler.submit(scheduledTables, routesByTable);
+            }
+
+            Map<String, Long> writeNanos = new HashMap<>();
+            for (Map.Entry<String, List<ProcessedRecord>> entry : taskTables.entrySet()) {
+                Route route = routesByTable.get(entry.getKey());
+                long start = System.nanoTime();
+                trackChangeLog(entry.getKey(), route);
+                if (useWriteLanes(entry.getValue(), route)) {
+                    writeLanes.write(entry.getKey(), entry.getValue(), route);
+                } else {
+                    jdbcWriter.write(entry.getKey(), entry.getValue(), route);
+                }
+                writeNanos.put(entry.getKey(), System.nanoTime() - start);
+            }
+            if (scheduled != null) {
+                scheduled.await();
+                for (String table : scheduledTables.keySet()) {
+                    writeNanos.put(table, scheduled.getWriteNanos(table));
+                }
+            }
+            if (flowController != null) {
+                long now = System.currentTimeMillis();
+                for (Map.Entry<String, Long> entry : writeNanos.entrySet()) {
+                    String table = entry.getKey();
+                    flowController.recordWrite(table, partitionsByTable.get(table), bytesByTable.get(table),
+                            entry.getValue() / 1_000_000, now);
+                }
             }
 
             // Handle corrupt records based on errors.tolerance
             if (!corruptRecords.isEmpty()) {
-                handleCorruptRecords(corruptRecords);
+                handleCorruptRecords(corruptRecords, true);
             }
 
-            // Commit transaction
-            connection.commit();
+            // Commit transaction, unless it can stay open for more puts
+            if (!config.isGroupCommit() || extraConnections || isCommitDue()) {
+                commitTransaction();
+            }
+            retries = 0;
 
         } catch (SQLException e) {
+            if (scheduled != null) {
+                scheduled.abort();
+            }
+            if (retriable && spillLog != null && isConnectionFailure(e)) {
+                log.log(Level.WARNING, "Target database unavailable, spilling records to " +
+                        spillLog.getDirectory(), e);
+                rollbackTransaction(false);
+                spill(batch, results, corruptRecords);
+                return;
+            }
+            if (retriable && redeliverable && retries < config.getMaxRetries() && isTransient(e)) {
+                retries++;
+                log.log(Level.WARNING, "Transient failure writing records, retry " + retries + " of " +
+                        config.getMaxRetries() + " in " + config.getRetryBackoffMs() + " ms", e);
+                rollbackTransaction(false);
+                metrics.increment(PUT_RETRIES);
+                context.timeout(config.getRetryBackoffMs());
+                throw new RetriableException("Failed to write records", e);
+            }
             log.log(Level.SEVERE, "Failed to write records to database", e);
+            rollbackTransaction();
+            throw new RuntimeException("Failed to write records", e);
+        } finally {
+            if (scheduled != null) {
+                // No-op unless a write on the task thread failed with a runtime exception
+                scheduled.abort();
+            }
+        }
+    }
+
+    @Override
+    public Map<TopicPartition, OffsetAndMetadata> preCommit(Map<TopicPartition, OffsetAndMetadata> currentOffsets) {
+        if (config == null || (!config.isGroupCommit() && spillLog == null)) {
+            return super.preCommit(currentOffsets);
+        }
+        // Offset commits flush the open transaction, then report what the database holds
+        if (pendingRecords > 0) {
             try {
+                commitTransaction();
+            } catch (SQLException e) {
+                log.log(Level.SEVERE, "Failed to commit transaction before offset commit", e);
+                rollbackTransaction();
+            }
+        }
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : currentOffsets.keySet()) {
+            OffsetAndMetadata committed = committedOffsets.get(partition);
+            if (committed != null) {
+                offsets.put(partition, committed);
+            }
+        }
+        return offsets;
+    }
+
+    @Override
+    public void open(Collection<TopicPartition> partitions) {
+        if (rowImageCache != null) {
+            rowImageCache.assign(partitions);
+        }
+        if (changeLogCompactor != null) {
+            registerChangeLogs(partitions);
+            changeLogCompactor.assign(partitions);
+        }
+        if (spillLog != null && !spillFenced) {
+            fenceRecoveredSpill(partitions);
+        }
+        if (offsetStore == null) {
+            return;
+        }
+        try {
+            // Commit open work first, so reading the offsets cannot commit it without them
+            if (pendingRecords > 0) {
+                commitTransaction();
+            }
+            Map<TopicPartition, Long> stored = offsetStore.read(partitions);
+            for (Map.Entry<TopicPartition, Long> entry : stored.entrySet()) {
+                context.offset(entry.getKey(), entry.getValue());
+                appliedOffsets.put(entry.getKey(), entry.getValue());
+                if (rowImageCache != null) {
+                    rowImageCache.resume(entry.getKey(), entry.getValue());
+                }
+            }
+            log.info("Resuming " + stored.size() + " of " + partitions.size() +
+                    " assigned partitions from offsets table: " + stored);
+        } catch (SQLException e) {
+            rollbackTransaction();
+            throw new RuntimeException("Failed to read offsets table " + config.getOffsetsTable(), e);
+        }
+    }
+
+    @Override
+    public void close(Collection<TopicPartition> partitions) {
+        if (config != null && config.isGroupCommit() && pendingRecords > 0) {
+            try {
+                commitTransaction();
+            } catch (SQLException e) {
+                log.log(Level.SEVERE, "Failed to commit transaction on partition revocation", e);
+                rollbackTransaction();
+            }
+        }
+        committedOffsets.keySet().removeAll(partitions);
+        appliedOffsets.keySet().removeAll(partitions);
+        if (rowImageCache != null) {
+            rowImageCache.revoke(partitions);
+        }
+        if (changeLogCompactor != null) {
+            // Waits for a running round, so the next owner does not merge the same rows
+            changeLogCompactor.revoke(partitions);
+        }
+        if (spillLog != null) {
+            // The new owner consumes the spilled records again, from the last committed offset
+            try {
+                spillLog.fence(partitions);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to fence revoked partitions in spill log", e);
+            }
+        }
+        if (flowController != null) {
+            flowController.revoked(partitions);
+        }
+    }
+
+    /**
+     * Drop records that the offsets table shows as already applied, e.g. delivered again
+     * before the seek to the stored offset took effect.
+     */
+    private SinkRecord[] dropApplied(SinkRecord[] batch) {
+        if (appliedOffsets.isEmpty()) {
+            return batch;
+        }
+        List<SinkRecord> kept = null;
+        TopicPartition partition = null;
+        for (int i = 0; i < batch.length; i++) {
+            SinkRecord record = batch[i];
+            if (partition == null || !partition.topic().equals(record.topic())
+                    || partition.partition() != record.kafkaPartition()) {
+                partition = new TopicPartition(record.topic(), record.kafkaPartition());
+            }
+            Long applied = appliedOffsets.get(partition);
+            boolean replay = applied != null && record.kafkaOffset() < applied;
+            if (replay && kept == null) {
+                kept = new ArrayList<>(Arrays.asList(batch).subList(0, i));
+            } else if (!replay && kept != null) {
+                kept.add(record);
+            }
+        }
+        if (kept == null) {
+            return batch;
+        }
+        metrics.add(REPLAYED_RECORDS_SKIPPED, batch.length - kept.size());
+        return kept.toArray(new SinkRecord[0]);
+    }
+
+    /**
+     * The heap budget is exhausted: pause all assigned partitions until it drains.
+     */
+    private void pauseForBudget() {
+        Set<TopicPartition> assignment = context.assignment();
+        log.info("Heap budget exceeded (" + heapBudget.getUsedBytes() + " of " + heapBudget.getMaxBytes() +
+                " bytes), pausing " + assignment.size() + " partitions");
+        budgetPaused = true;
+        metrics.increment(BUFFER_PAUSES);
+        context.pause(assignment.toArray(new TopicPartition[0]));
+    }
+
+    /**
+     * Resume the partitions paused for the heap budget once usage is below half of it, except
+     * those flow control still holds back.
+     */
+    private void resumeAfterBudget() {
+        if (heapBudget.getUsedBytes() > heapBudget.getMaxBytes() / 2) {
+            return;
+        }
+        List<TopicPartition> resume = new ArrayList<>();
+        for (TopicPartition partition : context.assignment()) {
+            if (flowController == null || !flowController.isPaused(partition)) {
+                resume.add(partition);
+            }
+        }
+        budgetPaused = false;
+        log.info("Heap budget drained to " + heapBudget.getUsedBytes() + " bytes, resuming " +
+                resume.size() + " partitions");
+        context.resume(resume.toArray(new TopicPartition[0]));
+    }
+
+    /**
+     * Record the offsets and size of a poll that joins the open transaction.
+     */
+    private void trackPending(SinkRecord[] batch) {
+        TopicPartition partition = null;
+        for (SinkRecord record : batch) {
+            if (partition == null || !partition.topic().equals(record.topic())
+                    || partition.partition() != record.kafkaPartition()) {
+                partition = new TopicPartition(record.topic(), record.kafkaPartition());
+            }
+            pendingStart.merge(partition, record.kafkaOffset(), Math::min);
+            pendingEnd.merge(partition, record.kafkaOffset() + 1, Math::max);
+            if (config.isGroupCommit()) {
+                pendingBytes += RecordSizeEstimator.estimate(record);
+            }
+        }
+        if (pendingRecords == 0) {
+            pendingSinceMs = System.currentTimeMillis();
+        }
+        pendingRecords += batch.length;
+    }
+
+    private boolean isCommitDue() {
+        return pendingRecords >= config.getCommitMaxRecords()
+                || pendingBytes >= config.getCommitMaxBytes()
+                || System.currentTimeMillis() - pendingSinceMs >= config.getCommitLingerMs();
+    }
+
+    /**
+     * Commit the open transaction on all connections (extra connections first, see WriteLanes).
+     */
+    private void commitTransaction() throws SQLException {
+        long start = System.nanoTime();
+        if (offsetStore != null) {
+            offsetStore.write(pendingEnd);
+        }
+        if (tableScheduler != null) {
+            tableScheduler.commit();
+        }
+        if (writeLanes != null) {
+            writeLanes.commit();
+        }
+        connection.commit();
+        if (rowImageCache != null) {
+            rowImageCache.publish();
+            rowImageCache.committed(pendingEnd);
+        }
+        metrics.increment(TRANSACTION_COMMITS);
+        metrics.add(TRANSACTION_COMMIT_MS, (System.nanoTime() - start) / 1_000_000);
+
+        for (Map.Entry<TopicPartition, Long> entry : pendingEnd.entrySet()) {
+            committedOffsets.put(entry.getKey(), new OffsetAndMetadata(entry.getValue()));
+        }
+        if (offsetStore != null) {
+            appliedOffsets.putAll(pendingEnd);
+        }
+        clearPending();
+        if (flowController != null) {
+            flowController.transactionEnded();
+        }
+    }
+
+    /**
+     * Roll back the open transaction on all connections. With group commit, the consumer is
+     * rewound to the first uncommitted record, so records of earlier puts are delivered again.
+     */
+    private void rollbackTransaction() {
+        rollbackTransaction(true);
+    }
+
+    /**
+     * Roll back the open transaction, rewinding the consumer only if asked to. A put() that
+     * throws RetriableException is redelivered by Kafka Connect without a rewind.
+     */
+    private void rollbackTransaction(boolean rewind) {
+        if (tableScheduler != null) {
+            tableScheduler.rollback();
+        }
+        if (writeLanes != null) {
+            writeLanes.rollback();
+        }
+        try {
+            if (connection != null) {
                 connection.rollback();
-            } catch (SQLException rollbackEx) {
-                log.log(Level.SEVERE, "Failed to rollback transaction", rollbackEx);
             }
-            throw new RuntimeException("Failed to write records", e);
+        } catch (SQLException rollbackEx) {
+            log.log(Level.SEVERE, "Failed to rollback transaction", rollbackEx);
+        }
+        if (rowImageCache != null) {
+            rowImageCache.discard();
+        }
+        if (rewind && config.isGroupCommit() && !pendingStart.isEmpty()) {
+            context.offset(new HashMap<>(pendingStart));
+        }
+        clearPending();
+        if (flowController != null) {
+            flowController.transactionEnded();
+        }
+    }
+
+    /**
+     * Whether a write failure is expected to go away on retry: deadlocks, lock wait timeouts
+     * and other transient errors, reported by the exception or one chained to it.
+     */
+    private boolean isTransient(SQLException e) {
+        return anyCause(e, c -> c instanceof SQLTransientException
+                && !(c instanceof SQLTransientConnectionException)
+                || hasSqlStateClass(c, "40") || dialect.isDeadlock(c) || dialect.isLockWaitTimeout(c));
+    }
+
+    /**
+     * Whether a write failure means the target database cannot be reached.
+     */
+    private static boolean isConnectionFailure(SQLException e) {
+        return anyCause(e, c -> c instanceof SQLRecoverableException
+                || c instanceof SQLNonTransientConnectionException
+                || c instanceof SQLTransientConnectionException
+                || hasSqlStateClass(c, "08"));
+    }
+
+    private static boolean hasSqlStateClass(SQLException e, String stateClass) {
+        String state = e.getSQLState();
+        return state != null && state.startsWith(stateClass);
+    }
+
+    /**
+     * Test an exception and the exceptions chained to it (next exceptions and causes).
+     */
+    private static boolean anyCause(SQLException e, Predicate<SQLException> test) {
+        for (Throwable t = e; t != null; ) {
+            if (t instanceof SQLException) {
+                SQLException sqlException = (SQLException) t;
+                if (test.test(sqlException)) {
+                    return true;
+                }
+                Throwable next = sqlException.getNextException();
+                t = next != null && next != t ? next : t.getCause();
+            } else {
+                t = t.getCause();
+            }
+        }
+        return false;
+    }
+
+    private void clearPending() {
+        pendingStart.clear();
+        pendingEnd.clear();
+        pendingRecords = 0;
+        pendingBytes = 0;
+    }
+
+    /**
+     * Whether a table's batch is large enough to split across the write lanes. Plain INSERT
+     * and change-log routes stay on the task connection (also with write.concurrency), since
+     * a partial commit of the extra connections could not be replayed.
+     */
+    private boolean useWriteLanes(List<ProcessedRecord> records, Route route) {
+        return writeLanes != null
+                && records.size() >= config.getWriteLanesThreshold()
+                && !isAppendOnly(route);
+    }
+
+    private static boolean isAppendOnly(Route route) {
+        return route != null
+                && (route.getWriteMode() == WriteMode.INSERT || route.getWriteMode() == WriteMode.CHANGELOG);
+    }
+
+    /**
+     * Fail on two routes that reach one target through table.name.format with different
+     * settings. Explicit targets are checked when the routes are built.
+     */
+    private static void checkRoute(String targetTable, Route route, Route previous) {
+        if (previous != null && previous != route && !previous.hasSameSettings(route)) {
+            throw new RuntimeException("Source tables " + previous.getSourceTable() + " and " +
+                    route.getSourceTable() + " are both routed to " + targetTable +
+                    " with different pk.fields or write.mode");
+        }
+    }
+
+    /**
+     * Run the auto.create / auto.evolve DDL of a put's tables before any of its rows are
+     * written. DDL implicitly commits the open transaction on MySQL/MariaDB, so the pending
+     * puts are committed with their offsets first, and the DDL is committed on its own.
+     */
+    private void prepareTables(Map<String, List<ProcessedRecord>> recordsByTable,
+                               Map<String, Route> routesByTable) throws SQLException {
+        for (Map.Entry<String, List<ProcessedRecord>> entry : recordsByTable.entrySet()) {
+            Route route = routesByTable.get(entry.getKey());
+            if (!jdbcWriter.needsDdl(entry.getKey(), entry.getValue(), route)) {
+                continue;
+            }
+            if (pendingRecords > 0) {
+                commitTransaction();
+            }
+            jdbcWriter.prepare(entry.getKey(), entry.getValue(), route);
+            connection.commit();
+        }
+    }
+
+    /**
+     * Have the compactor merge the change logs of the change-log routes named by
+     * table.name.format, for the topics of the assigned partitions. Logs left behind by an
+     * earlier run are then merged before any new record of their table arrives.
+     */
+    private void registerChangeLogs(Collection<TopicPartition> partitions) {
+        Set<String> topics = new HashSet<>();
+        for (TopicPartition partition : partitions) {
+            topics.add(partition.topic());
+        }
+        for (Route route : tableRoutes.getRoutes()) {
+            if (route.getWriteMode() != WriteMode.CHANGELOG || route.getTargetTable() != null) {
+                continue;
+            }
+            for (String topic : topics) {
+                changeLogCompactor.register(resolveTargetTable(route.getSourceTable(), topic), route);
+            }
+        }
+    }
+
+    /**
+     * Have the compactor merge the change log of a change-log route's target table.
+     */
+    private void trackChangeLog(String table, Route route) {
+        if (changeLogCompactor != null && route != null && route.getWriteMode() == WriteMode.CHANGELOG) {
+            changeLogCompactor.register(table, route);
+        }
+    }
+
+    /**
+     * Process the records of a poll into results at the same positions.
+     *
+     * Large polls are split into contiguous chunks that are decoded on the decode pool, each
+     * chunk with its own header view; smaller polls are decoded on the task thread.
+     */
+    private ProcessingResult[] decode(SinkRecord[] batch) {
+        ProcessingResult[] results = new ProcessingResult[batch.length];
+        if (decodePool == null || batch.length < config.getDecodeParallelThreshold()) {
+            decodeRange(batch, results, 0, batch.length, recordHeaders);
+            return results;
+        }
+
+        int chunks = decodePool.getParallelism() * DECODE_CHUNKS_PER_THREAD;
+        int chunkSize = Math.max(MIN_DECODE_CHUNK, (batch.length + chunks - 1) / chunks);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int start = 0; start < batch.length; start += chunkSize) {
+            int from = start;
+            int to = Math.min(batch.length, start + chunkSize);
+            tasks.add(decodePool.submit(() -> decodeRange(batch, results, from, to, new RecordHeaders())));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        return results;
+    }
+
+    private void decodeRange(SinkRecord[] batch, ProcessingResult[] results, int from, int to,
+                             RecordHeaders headers) {
+        for (int i = from; i < to; i++) {
+            try {
+                results[i] = processRecord(batch[i], headers);
+            } catch (Exception e) {
+                log.log(Level.SEVERE, "Unexpected error processing record: " + e.getMessage(), e);
+                results[i] = ProcessingResult.corrupt("Processing error: " + e.getMessage());
+            }
         }
     }
 
     /**
      * Process a single SinkRecord into a ProcessingResult.
      * Validates headers, maps operation, and extracts data.
+     * Called concurrently for parallel decoding, so it only uses thread-safe task state.
      */
-    private ProcessingResult processRecord(SinkRecord record) {
+    private ProcessingResult processRecord(SinkRecord record, RecordHeaders headerView) {
+        // Decode all CDC headers in one pass
+        RecordHeaders headers = headerView.read(record);
+        String tableName = headers.getTableName();
+
         // 0. Check if this record should be processed by this connector
         // (for multi-connector scenarios reading from the same topic)
-        if (!shouldProcessRecord(record)) {
+        Route route = tableRoutes.get(tableName);
+        if (tableRoutes.isEnabled() ? route == null : !shouldProcessRecord(tableName, record.topic())) {
             return ProcessingResult.skip();
         }
 
         // 1. Validate required headers
-        String headerError = HeaderExtractor.validateRequiredHeaders(record);
+        String headerError = headers.validateRequiredHeaders();
         if (headerError != null) {
             return ProcessingResult.corrupt(headerError);
         }
 
-        // 2. Extract headers
-        String tableName = HeaderExtractor.extractTableName(record);
-        String entryType = HeaderExtractor.extractEntryType(record);
-        String timestamp = HeaderExtractor.extractTimestamp(record);
-
-        // 3. Map entry type to operation
-        CdcOperation operation = EntryTypeMapper.mapEntryType(entryType);
+        // 2-3. Map entry type to operation
+        CdcOperation operation = headers.getOperation();
         if (operation == null) {
-            return ProcessingResult.corrupt("Unrecognized A_ENTTYP code: " + entryType);
+            return ProcessingResult.corrupt("Unrecognized A_ENTTYP code: " + headers.getEntryType());
+        }
+
+        // Deserialize the value now if LazyValueConverter deferred it
+        Object value = record.value();
+        Schema valueSchema = record.valueSchema();
+        if (value instanceof LazyValue) {
+            SchemaAndValue resolved = ((LazyValue) value).resolve();
+            value = resolved.value();
+            valueSchema = resolved.schema();
+        }
+
+        // Without replays a journal insert cannot find its row already applied
+        if (insertFastPath && operation == CdcOperation.UPSERT && headers.isInsertEntry()) {
+            operation = CdcOperation.INSERT;
         }
 
         // 4. Validate operation-specific requirements
@@ -189,41 +998,55 @@ public class IidrCdcSinkTask extends SinkTask {
             }
         } else {
             // INSERT, UPDATE, UPSERT require a value
-            if (record.value() == null) {
+            if (value == null) {
                 return ProcessingResult.corrupt(operation + " operation requires a non-null value");
             }
         }
 
-        // 5. Convert timestamp if present
+        // 5. Convert timestamp if present. Last-writer-wins also takes it as epoch micros,
+        // so the writer need not parse the ISO form again
         String isoTimestamp = null;
-        if (timestamp != null) {
-            isoTimestamp = timestampConverter.convertToIso8601(timestamp);
+        long changeTime = ProcessedRecord.NO_CHANGE_TIME;
+        Object timestamp = headers.getTimestamp();
+        if (timestamp instanceof byte[]) {
+            isoTimestamp = timestampConverter.convertToIso8601((byte[]) timestamp);
+            if (lww) {
+                changeTime = timestampConverter.toEpochMicros((byte[]) timestamp);
+            }
+        } else if (timestamp != null) {
+            isoTimestamp = timestampConverter.convertToIso8601(timestamp.toString());
+            if (lww) {
+                changeTime = timestampConverter.toEpochMicros(timestamp.toString());
+            }
         }
 
         // 6. Build target table name
-        String targetTable = resolveTargetTable(tableName, record.topic());
+        String targetTable = route != null && route.getTargetTable() != null
+                ? route.getTargetTable()
+                : resolveTargetTable(tableName, record.topic());
 
         ProcessedRecord processed = new ProcessedRecord(
                 targetTable,
                 operation,
                 record.key(),
-                record.value(),
+                value,
                 record.keySchema(),
-                record.valueSchema(),
-                isoTimestamp
+                valueSchema,
+                isoTimestamp,
+                record.topic(),
+                record.kafkaPartition(),
+                record.kafkaOffset(),
+                changeTime
         );
 
-        return ProcessingResult.success(processed);
+        return ProcessingResult.success(processed, route);
     }
 
     /**
-     * Resolve target table name from format string.
+     * Resolve target table name from the compiled format.
      */
     private String resolveTargetTable(String tableName, String topic) {
-        String format = config.getTableNameFormat();
-        return format
-                .replace("${TableName}", tableName != null ? tableName : "")
-                .replace("${topic}", topic != null ? topic : "");
+        return tableNameTemplate.resolve(tableName, topic);
     }
 
     /**
@@ -233,14 +1056,19 @@ public class IidrCdcSinkTask extends SinkTask {
      * - "all": silently skip
      * If corrupt.events.table is configured, also write to that table.
      */
-    private void handleCorruptRecords(List<CorruptRecord> corruptRecords) throws SQLException {
+    private void handleCorruptRecords(List<CorruptRecord> corruptRecords, boolean writeTable) throws SQLException {
         if (corruptRecords.isEmpty()) {
             return;
         }
 
         // Write to corrupt events table if enabled
         if (config.isCorruptEventsTableEnabled() && corruptEventWriter != null) {
-            corruptEventWriter.write(corruptRecords);
+            if (writeTable) {
+                corruptEventWriter.write(corruptRecords);
+            } else {
+                log.warning("Target database unavailable, " + corruptRecords.size() +
+                        " corrupt records are not written to " + config.getCorruptEventsTable());
+            }
         }
 
         // Handle based on errors.tolerance setting
@@ -268,18 +1096,329 @@ public class IidrCdcSinkTask extends SinkTask {
         log.info("Stopping IidrCdcSinkTask");
 
         try {
-            if (jdbcWriter != null) {
-                jdbcWriter.close();
+            if (changeLogCompactor != null) {
+                changeLogCompactor.close();
+                changeLogCompactor = null;
+            }
+            closeWriters();
+            if (flowController != null) {
+                flowController.close();
+                flowController = null;
+            }
+            if (spillLog != null) {
+                spillLog.close();
+                spillLog = null;
+            }
+            if (rowImageCache != null) {
+                try {
+                    rowImageCache.close();
+                } catch (IOException e) {
+                    log.warning("Failed to close row image cache: " + e.getMessage());
+                }
+                rowImageCache = null;
             }
-            if (corruptEventWriter != null) {
-                corruptEventWriter.close();
+        } finally {
+            if (decodePool != null) {
+                decodePool.shutdownNow();
+                decodePool = null;
             }
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+            if (keyFilters != null) {
+                KeyFilters.release(metadataScope);
+                keyFilters = null;
+            }
+            if (metadataScope != null) {
+                MetadataRegistry.release(metadataScope);
+                metadataScope = null;
+            }
+            if (heapBudget != null) {
+                HeapBudget.release(connectorName);
+                heapBudget = null;
+            }
+            if (metrics != null) {
+                metrics.close();
+            }
+        }
+    }
+
+    /**
+     * Create the writers bound to the task connection, and the extra connections of the
+     * write lanes and table scheduler.
+     */
+    private void openWriters() throws SQLException {
+        this.jdbcWriter = new JdbcWriter(connection, config, metadataCache, metrics);
+        if (config.getWriteLanes() > 1) {
+            this.writeLanes = new WriteLanes(openConnections(config.getWriteLanes()), config, metadataCache, metrics);
+        }
+        if (config.getWriteConcurrency() > 1) {
+            this.tableScheduler = new TableScheduler(openConnections(config.getWriteConcurrency()), config,
+                    metadataCache, metrics);
+        }
+        if (rowImageCache != null) {
+            jdbcWriter.setRowImageCache(rowImageCache);
+            if (writeLanes != null) {
+                writeLanes.setRowImageCache(rowImageCache);
+            }
+            if (tableScheduler != null) {
+                tableScheduler.setRowImageCache(rowImageCache);
+            }
+        }
+        if (keyFilters != null) {
+            jdbcWriter.setKeyFilters(keyFilters);
+            if (writeLanes != null) {
+                writeLanes.setKeyFilters(keyFilters);
+            }
+            if (tableScheduler != null) {
+                tableScheduler.setKeyFilters(keyFilters);
+            }
+        }
+        if (config.isOffsetsTableEnabled()) {
+            this.offsetStore = new OffsetStore(connection, dialect, config.getOffsetsTable(), connectorName);
+        }
+        if (config.isCorruptEventsTableEnabled()) {
+            this.corruptEventWriter = new CorruptEventWriter(
+                    connection,
+                    config.getCorruptEventsTable(),
+                    false,
+                    config.getLobStreamThreshold()
+            );
+        }
+    }
+
+    /**
+     * Close the writers and all connections, logging failures.
+     */
+    private void closeWriters() {
+        closeQuietly(jdbcWriter, "writer");
+        closeQuietly(writeLanes, "write lanes");
+        closeQuietly(tableScheduler, "table scheduler");
+        closeQuietly(corruptEventWriter, "corrupt event writer");
+        closeQuietly(offsetStore, "offsets store");
+        closeQuietly(connection, "connection");
+        jdbcWriter = null;
+        writeLanes = null;
+        tableScheduler = null;
+        corruptEventWriter = null;
+        offsetStore = null;
+        connection = null;
+    }
+
+    private static void closeQuietly(AutoCloseable resource, String name) {
+        if (resource == null) {
+            return;
+        }
+        try {
+            resource.close();
+        } catch (Exception e) {
+            log.log(Level.SEVERE, "Error closing " + name, e);
+        }
+    }
+
+    /**
+     * Replace a broken task connection (and the extra connections) with new ones.
+     */
+    private void ensureConnected() throws SQLException {
+        if (connection != null && connection.isValid(CONNECTION_CHECK_SECONDS)) {
+            return;
+        }
+        closeWriters();
+        this.connection = openConnection();
+        openWriters();
+        log.info("Reconnected to the target database");
+    }
+
+    /**
+     * Write the valid records of a poll to the spill log, behind the batches already there.
+     * If the log is full, the poll is redelivered after retry.backoff.ms instead.
+     */
+    private void spill(SinkRecord[] batch, ProcessingResult[] results, List<CorruptRecord> corruptRecords) {
+        SpillCodec.Batch spilled = new SpillCodec.Batch();
+        TopicPartition partition = null;
+        for (int i = 0; i < batch.length; i++) {
+            SinkRecord record = batch[i];
+            if (partition == null || !partition.topic().equals(record.topic())
+                    || partition.partition() != record.kafkaPartition()) {
+                partition = new TopicPartition(record.topic(), record.kafkaPartition());
+            }
+            spilled.track(partition, record.kafkaOffset());
+            ProcessingResult result = results[i];
+            if (!result.isSkipped() && !result.isCorrupt()) {
+                Route route = result.getRoute();
+                spilled.add(partition, record.kafkaOffset(), result.getProcessedRecord(),
+                        route != null ? route.getSourceTable() : null);
+            }
+        }
+        try {
+            if (!spillLog.append(SpillCodec.encode(spilled))) {
+                log.warning("Spill log is full (" + spillLog.size() + " bytes), redelivering records in " +
+                        config.getRetryBackoffMs() + " ms");
+                context.timeout(config.getRetryBackoffMs());
+                throw new RetriableException("Spill log is full");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to spill records to " + spillLog.getDirectory(), e);
+        }
+        metrics.add(SPILLED_RECORDS, spilled.size());
+
+        // The corrupt events table is in the unavailable database
+        if (!corruptRecords.isEmpty()) {
+            try {
+                handleCorruptRecords(corruptRecords, false);
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to handle corrupt records", e);
+            }
+        }
+    }
+
+    /**
+     * Apply spilled batches in order, for up to SPILL_DRAIN_BUDGET_MS. Each batch is committed
+     * with its offsets before it is removed from the log. While the target is unavailable,
+     * draining is retried every retry.backoff.ms. Any other failure fails the task, since
+     * retrying the batch would fail again while new records pile up behind it.
+     */
+    private void drainSpill() {
+        long now = System.currentTimeMillis();
+        if (now < nextDrainMs) {
+            return;
+        }
+        long deadline = now + SPILL_DRAIN_BUDGET_MS;
+        try {
+            SpillLog.Frame frame;
+            while ((frame = spillLog.peek()) != null && System.currentTimeMillis() < deadline) {
+                applySpilled(frame);
+                spillLog.advance(frame);
+            }
+            if (spillLog.isEmpty()) {
+                log.info("Spill log drained, resuming direct writes");
             }
         } catch (SQLException e) {
-            log.log(Level.SEVERE, "Error closing resources", e);
+            if (!isConnectionFailure(e)) {
+                log.log(Level.SEVERE, "Failed to apply spilled records", e);
+                rollbackTransaction(false);
+                throw new RuntimeException("Failed to apply spilled records from " + spillLog.getDirectory(), e);
+            }
+            log.warning("Target database still unavailable, keeping records spilled: " + e.getMessage());
+            rollbackTransaction(false);
+            nextDrainMs = System.currentTimeMillis() + config.getRetryBackoffMs();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to drain spill log " + spillLog.getDirectory(), e);
+        }
+    }
+
+    private void applySpilled(SpillLog.Frame frame) throws SQLException {
+        SpillCodec.Batch spilled = SpillCodec.decode(frame.getPayload());
+        Set<TopicPartition> assignment = context.assignment();
+        int applied = 0;
+        int fenced = 0;
+        Map<String, List<ProcessedRecord>> recordsByTable = new LinkedHashMap<>();
+        Map<String, Route> routesByTable = new HashMap<>();
+        for (Map.Entry<String, SpillCodec.TableRecords> table : spilled.getTables().entrySet()) {
+            List<ProcessedRecord> records = new ArrayList<>();
+            for (SpillCodec.Entry entry : table.getValue().getEntries()) {
+                TopicPartition partition = entry.getPartition();
+                if (!ownsSpilled(partition, frame, assignment)) {
+                    fenced++;
+                } else if (!appliedOffsets.containsKey(partition) || entry.getOffset() >= appliedOffsets.get(partition)) {
+                    records.add(entry.getRecord());
+                }
+            }
+            if (!records.isEmpty()) {
+                recordsByTable.put(table.getKey(), records);
+                String source = table.getValue().getSourceTable();
+                Route route = source != null ? tableRoutes.get(source) : null;
+                if (route != null) {
+                    routesByTable.put(table.getKey(), route);
+                }
+            }
+        }
+        if (!recordsByTable.isEmpty()) {
+            ensureConnected();
+            prepareTables(recordsByTable, routesByTable);
+        }
+        for (Map.Entry<String, List<ProcessedRecord>> table : recordsByTable.entrySet()) {
+            Route route = routesByTable.get(table.getKey());
+            trackChangeLog(table.getKey(), route);
+            jdbcWriter.write(table.getKey(), table.getValue(), route);
+            applied += table.getValue().size();
+        }
+        Map<TopicPartition, Long> drained = new HashMap<>();
+        for (Map.Entry<TopicPartition, Long> next : spilled.getNextOffsets().entrySet()) {
+            if (ownsSpilled(next.getKey(), frame, assignment)) {
+                pendingEnd.merge(next.getKey(), next.getValue(), Math::max);
+                drained.put(next.getKey(), next.getValue());
+            }
+        }
+        if (!pendingEnd.isEmpty()) {
+            ensureConnected();
+            pendingRecords += applied;
+            commitTransaction();
+            // Kafka redelivers spilled records from the last committed offset. Without the
+            // offsets table, remember what was drained so that the copies are dropped. This
+            // only lives in memory: after a crash before Kafka commits these offsets, the
+            // drained records are applied again, duplicating rows of insert and changelog routes
+            for (Map.Entry<TopicPartition, Long> next : drained.entrySet()) {
+                appliedOffsets.merge(next.getKey(), next.getValue(), Math::max);
+            }
+        }
+        metrics.add(DRAINED_RECORDS, applied);
+        metrics.add(SPILL_FENCED_RECORDS, fenced);
+    }
+
+    private boolean ownsSpilled(TopicPartition partition, SpillLog.Frame frame, Set<TopicPartition> assignment) {
+        return assignment.contains(partition) && !spillLog.isFenced(partition, frame.getSequence());
+    }
+
+    /**
+     * On the first assignment, fence the partitions of batches spilled by a previous run
+     * that this task no longer owns.
+     */
+    private void fenceRecoveredSpill(Collection<TopicPartition> assigned) {
+        spillFenced = true;
+        Set<TopicPartition> unowned = new HashSet<>();
+        for (SpillLog.Frame frame : spillLog.frames()) {
+            unowned.addAll(SpillCodec.partitions(frame.getPayload()));
+        }
+        unowned.removeAll(assigned);
+        if (unowned.isEmpty()) {
+            return;
         }
+        log.info("Dropping spilled records of partitions no longer assigned: " + unowned);
+        try {
+            spillLog.fence(unowned);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to fence spill log", e);
+        }
+    }
+
+    private Connection openConnection() throws SQLException {
+        Connection conn = DriverManager.getConnection(
+                config.getConnectionUrl(),
+                config.getConnectionUser(),
+                config.getConnectionPassword()
+        );
+        conn.setAutoCommit(false);
+        return conn;
+    }
+
+    private List<Connection> openConnections(int count) throws SQLException {
+        List<Connection> connections = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                connections.add(openConnection());
+            }
+        } catch (SQLException e) {
+            for (Connection conn : connections) {
+                conn.close();
+            }
+            throw e;
+        }
+        return connections;
+    }
+
+    /**
+     * Scope of the shared metadata cache: the connector name and target database.
+     */
+    private String metadataScope(Map<String, String> props) {
+        return props.getOrDefault("name", "") + "|" + config.getConnectionUrl() + "|" + config.getConnectionUser();
     }
 
     /**
@@ -289,23 +1428,9 @@ public class IidrCdcSinkTask extends SinkTask {
      * This allows multiple connectors to read from the same topic,
      * each processing only their designated table's records.
      */
-    private boolean shouldProcessRecord(SinkRecord record) {
-        String format = config.getTableNameFormat();
-
-        // If format contains ${TableName}, process all records (template mode)
-        if (format.contains("${TableName}")) {
-            return true;
-        }
-
-        // Literal mode: only process if TableName header matches the format
-        String tableName = HeaderExtractor.extractTableName(record);
-        if (tableName == null) {
-            return false;
-        }
-
-        // Resolve the format (in case it uses ${topic}) and compare
-        String resolvedFormat = format.replace("${topic}", record.topic() != null ? record.topic() : "");
-        return resolvedFormat.equals(tableName);
+    private boolean shouldProcessRecord(String tableName, String topic) {
+        // Template mode processes all records; literal mode only the matching table
+        return tableNameTemplate.matches(tableName, topic);
     }
 
     /**
@@ -313,25 +1438,27 @@ public class IidrCdcSinkTask extends SinkTask {
      */
     private static class ProcessingResult {
         private final ProcessedRecord processedRecord;
+        private final Route route;
         private final String corruptReason;
         private final boolean skipped;
 
-        private ProcessingResult(ProcessedRecord processedRecord, String corruptReason, boolean skipped) {
+        private ProcessingResult(ProcessedRecord processedRecord, Route route, String corruptReason, boolean skipped) {
             this.processedRecord = processedRecord;
+            this.route = route;
             this.corruptReason = corruptReason;
             this.skipped = skipped;
         }
 
-        static ProcessingResult success(ProcessedRecord record) {
-            return new ProcessingResult(record, null, false);
+        static ProcessingResult success(ProcessedRecord record, Route route) {
+            return new ProcessingResult(record, route, null, false);
         }
 
         static ProcessingResult corrupt(String reason) {
-            return new ProcessingResult(null, reason, false);
+            return new ProcessingResult(null, null, reason, false);
         }
 
         static ProcessingResult skip() {
-            return new ProcessingResult(null, null, true);
+            return new ProcessingResult(null, null, null, true);
         }
 
         boolean isSkipped() {
@@ -349,5 +1476,12 @@ public class IidrCdcSinkTask extends SinkTask {
         ProcessedRecord getProcessedRecord() {
             return processedRecord;
         }
+
+        /**
+         * Fan-out route of the record's table, or null if routing is not enabled.
+         */
+        Route getRoute() {
+            return route;
+        }
     }
 }
@@ -0,0 +1,493 @@
+package com.example.kafka.connect.iidr.converter;
+
+import com.example.kafka.connect.iidr.util.HeaderExtractor;
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.storage.Converter;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Streaming converter for the flat JSON rows written by IIDR.
+ *
+ * A drop-in replacement for JsonConverter with schemas.enable=false on flat row payloads.
+ * Each JSON object is parsed straight from the record bytes into a {@link RowValue}: the field
+ * names are matched against the layout last seen for the same topic and TableName header,
+ * and layouts are interned per topic, so a row costs one value array instead of a JSON tree
+ * plus a HashMap.
+ *
+ * Values follow JsonConverter's schemaless mapping: strings, Long for integers, Double for
+ * fractions, Boolean and null. Integers beyond the long range become BigDecimal. Nested
+ * objects and arrays are not expected in IIDR rows and are kept as their JSON text.
+ *
+ * The converter may be called concurrently (e.g. as the delegate of LazyValueConverter with
+ * parallel decoding). The last-layout slots are only a hint, since every field name is
+ * verified against the candidate layout, so they are updated without locking.
+ */
+public class IidrJsonConverter implements Converter {
+
+    private static final Logger log = Logger.getLogger(IidrJsonConverter.class.getName());
+
+    private static final int TABLE_SLOTS = 256;
+    private static final int MAX_LAYOUTS_PER_TOPIC = 1024;
+    private static final byte[] NO_TABLE = new byte[0];
+
+    private static final ConfigDef CONFIG_DEF = new ConfigDef();
+
+    /**
+     * Layouts of one topic: interned by field list, plus the last layout per TableName.
+     */
+    private static final class TopicLayouts {
+        final Map<List<String>, RowLayout> interned = new HashMap<>();
+        final byte[][] tableNames = new byte[TABLE_SLOTS][];
+        final RowLayout[] lastLayouts = new RowLayout[TABLE_SLOTS];
+
+        RowLayout candidate(byte[] tableName) {
+            int slot = Arrays.hashCode(tableName) & (TABLE_SLOTS - 1);
+            return Arrays.equals(tableNames[slot], tableName) ? lastLayouts[slot] : null;
+        }
+
+        void remember(byte[] tableName, RowLayout layout) {
+            int slot = Arrays.hashCode(tableName) & (TABLE_SLOTS - 1);
+            if (!Arrays.equals(tableNames[slot], tableName)) {
+                tableNames[slot] = tableName.clone();
+            }
+            // A racing update may pair a name with another table's layout; that only costs a miss
+            lastLayouts[slot] = layout;
+        }
+
+        synchronized RowLayout intern(List<String> names) {
+            RowLayout layout = interned.get(names);
+            if (layout == null) {
+                if (interned.size() >= MAX_LAYOUTS_PER_TOPIC) {
+                    interned.clear();
+                }
+                layout = new RowLayout(names);
+                interned.put(layout.getColumns(), layout);
+            }
+            return layout;
+        }
+    }
+
+    private final Map<String, TopicLayouts> layoutsByTopic = new ConcurrentHashMap<>();
+    private boolean isKey;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        this.isKey = isKey;
+        log.info("IidrJsonConverter configured" + (isKey ? " (key)" : " (value)"));
+    }
+
+    @Override
+    public byte[] fromConnectData(String topic, Schema schema, Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof Map)) {
+            throw new DataException("IidrJsonConverter only serializes flat rows, got " +
+                    value.getClass().getName());
+        }
+        StringBuilder sb = new StringBuilder();
+        RowValue.appendJson(sb, (Map<?, ?>) value);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public SchemaAndValue toConnectData(String topic, byte[] value) {
+        return toConnectData(topic, null, value);
+    }
+
+    @Override
+    public SchemaAndValue toConnectData(String topic, Headers headers, byte[] value) {
+        if (value == null) {
+            return SchemaAndValue.NULL;
+        }
+        try {
+            RowValue row = new Parser(value).parseRow(layouts(topic), tableName(headers));
+            return row != null ? new SchemaAndValue(null, row) : SchemaAndValue.NULL;
+        } catch (DataException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new DataException("Failed to parse JSON " + (isKey ? "key" : "value") +
+                    " of topic " + topic, e);
+        }
+    }
+
+    @Override
+    public ConfigDef config() {
+        return CONFIG_DEF;
+    }
+
+    private TopicLayouts layouts(String topic) {
+        String key = topic != null ? topic : "";
+        TopicLayouts layouts = layoutsByTopic.get(key);
+        return layouts != null ? layouts : layoutsByTopic.computeIfAbsent(key, k -> new TopicLayouts());
+    }
+
+    private static byte[] tableName(Headers headers) {
+        if (headers == null) {
+            return NO_TABLE;
+        }
+        Header header = headers.lastHeader(HeaderExtractor.HEADER_TABLE_NAME);
+        return header != null && header.value() != null ? header.value() : NO_TABLE;
+    }
+
+    /**
+     * Single-use parser over the bytes of one record.
+     */
+    private static final class Parser {
+        private final byte[] buf;
+        private int pos;
+
+        Parser(byte[] buf) {
+            this.buf = buf;
+        }
+
+        /**
+         * Parse a flat JSON object, or return null for a JSON null / empty payload.
+         */
+        RowValue parseRow(TopicLayouts layouts, byte[] tableName) {
+            skipWhitespace();
+            if (pos >= buf.length) {
+                return null;
+            }
+            if (buf[pos] == 'n') {
+                expectLiteral("null");
+                expectEnd();
+                return null;
+            }
+            if (buf[pos] != '{') {
+                throw error("Expected a JSON object");
+            }
+            pos++;
+
+            RowLayout candidate = layouts.candidate(tableName);
+            Object[] values = candidate != null ? new Object[candidate.size()] : null;
+            List<String> names = null;
+            List<Object> slowValues = null;
+            int count = 0;
+
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    skipWhitespace();
+                    if (peek() != '"') {
+                        throw error("Expected a field name");
+                    }
+                    int nameStart = pos + 1;
+                    boolean escaped = skipString();
+                    int nameEnd = pos - 1;
+
+                    skipWhitespace();
+                    if (peek() != ':') {
+                        throw error("Expected ':'");
+                    }
+                    pos++;
+                    skipWhitespace();
+
+                    if (names == null && candidate != null && count < candidate.size() && !escaped
+                            && candidate.nameEquals(count, buf, nameStart, nameEnd)) {
+                        values[count] = parseValue();
+                    } else {
+                        if (names == null) {
+                            // Layout differs from the last one of this table: collect names
+                            names = new ArrayList<>();
+                            slowValues = new ArrayList<>();
+                            for (int i = 0; i < count; i++) {
+                                names.add(candidate.getName(i));
+                                slowValues.add(values[i]);
+                            }
+                        }
+                        String name = escaped
+                                ? decodeString(nameStart - 1)
+                                : new String(buf, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8);
+                        Object fieldValue = parseValue();
+                        int existing = names.indexOf(name);
+                        if (existing >= 0) {
+                            // Duplicate field: last one wins, as with JsonConverter
+                            slowValues.set(existing, fieldValue);
+                        } else {
+                            names.add(name);
+                            slowValues.add(fieldValue);
+                        }
+                    }
+                    count++;
+
+                    skipWhitespace();
+                    byte c = peek();
+                    pos++;
+                    if (c == '}') {
+                        break;
+                    }
+                    if (c != ',') {
+                        throw error("Expected ',' or '}'");
+                    }
+                }
+            }
+            expectEnd();
+
+            if (names == null) {
+                if (candidate != null && count == candidate.size()) {
+                    return new RowValue(candidate, values);
+                }
+                names = new ArrayList<>();
+                slowValues = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    names.add(candidate.getName(i));
+                    slowValues.add(values[i]);
+                }
+            }
+            RowLayout layout = layouts.intern(names);
+            layouts.remember(tableName, layout);
+            return new RowValue(layout, slowValues.toArray());
+        }
+
+        private Object parseValue() {
+            byte c = peek();
+            switch (c) {
+                case '"':
+                    return parseString();
+                case 't':
+                    expectLiteral("true");
+                    return Boolean.TRUE;
+                case 'f':
+                    expectLiteral("false");
+                    return Boolean.FALSE;
+                case 'n':
+                    expectLiteral("null");
+                    return null;
+                case '{':
+                case '[':
+                    int start = pos;
+                    skipNested();
+                    return new String(buf, start, pos - start, StandardCharsets.UTF_8);
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) {
+                        return parseNumber();
+                    }
+                    throw error("Unexpected character '" + (char) c + "'");
+            }
+        }
+
+        private String parseString() {
+            int start = pos + 1;
+            boolean ascii = true;
+            int i = start;
+            while (i < buf.length) {
+                byte b = buf[i];
+                if (b == '"') {
+                    pos = i + 1;
+                    return new String(buf, start, i - start,
+                            ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+                }
+                if (b == '\\') {
+                    return decodeString(pos);
+                }
+                if (b < 0) {
+                    ascii = false;
+                }
+                i++;
+            }
+            throw error("Unterminated string");
+        }
+
+        /**
+         * Decode a string with escape sequences, starting at its opening quote.
+         */
+        private String decodeString(int quote) {
+            pos = quote + 1;
+            StringBuilder sb = new StringBuilder();
+            int runStart = pos;
+            while (pos < buf.length) {
+                byte b = buf[pos];
+                if (b == '"') {
+                    sb.append(new String(buf, runStart, pos - runStart, StandardCharsets.UTF_8));
+                    pos++;
+                    return sb.toString();
+                }
+                if (b != '\\') {
+                    pos++;
+                    continue;
+                }
+                sb.append(new String(buf, runStart, pos - runStart, StandardCharsets.UTF_8));
+                if (pos + 1 >= buf.length) {
+                    break;
+                }
+                byte esc = buf[pos + 1];
+                pos += 2;
+                switch (esc) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        sb.append((char) esc);
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        if (pos + 4 > buf.length) {
+                            throw error("Truncated unicode escape");
+                        }
+                        sb.append((char) Integer.parseInt(new String(buf, pos, 4, StandardCharsets.ISO_8859_1), 16));
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("Invalid escape '\\" + (char) esc + "'");
+                }
+                runStart = pos;
+            }
+            throw error("Unterminated string");
+        }
+
+        /**
+         * Skip a string starting at its opening quote.
+         *
+         * @return whether the string contains escape sequences
+         */
+        private boolean skipString() {
+            boolean escaped = false;
+            int i = pos + 1;
+            while (i < buf.length) {
+                byte b = buf[i];
+                if (b == '"') {
+                    pos = i + 1;
+                    return escaped;
+                }
+                if (b == '\\') {
+                    escaped = true;
+                    i++;
+                }
+                i++;
+            }
+            throw error("Unterminated string");
+        }
+
+        private void skipNested() {
+            int depth = 0;
+            while (pos < buf.length) {
+                byte b = buf[pos];
+                if (b == '"') {
+                    skipString();
+                    continue;
+                }
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        pos++;
+                        return;
+                    }
+                }
+                pos++;
+            }
+            throw error("Unterminated object or array");
+        }
+
+        private Object parseNumber() {
+            int start = pos;
+            boolean negative = buf[pos] == '-';
+            if (negative) {
+                pos++;
+            }
+            long value = 0;
+            int digits = 0;
+            while (pos < buf.length && buf[pos] >= '0' && buf[pos] <= '9') {
+                value = value * 10 + (buf[pos] - '0');
+                digits++;
+                pos++;
+            }
+            if (digits == 0) {
+                throw error("Invalid number");
+            }
+            boolean fraction = false;
+            while (pos < buf.length) {
+                byte b = buf[pos];
+                if (b == '.' || b == 'e' || b == 'E' || b == '+' || b == '-' || (b >= '0' && b <= '9')) {
+                    fraction = true;
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            if (fraction) {
+                return Double.parseDouble(new String(buf, start, pos - start, StandardCharsets.ISO_8859_1));
+            }
+            if (digits <= 18) {
+                return negative ? -value : value;
+            }
+            String text = new String(buf, start, pos - start, StandardCharsets.ISO_8859_1);
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                return new BigDecimal(text);
+            }
+        }
+
+        private void expectLiteral(String literal) {
+            if (pos + literal.length() > buf.length) {
+                throw error("Expected '" + literal + "'");
+            }
+            for (int i = 0; i < literal.length(); i++) {
+                if (buf[pos + i] != literal.charAt(i)) {
+                    throw error("Expected '" + literal + "'");
+                }
+            }
+            pos += literal.length();
+        }
+
+        private void expectEnd() {
+            skipWhitespace();
+            if (pos < buf.length) {
+                throw error("Unexpected data after the JSON object");
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < buf.length) {
+                byte b = buf[pos];
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        private byte peek() {
+            if (pos >= buf.length) {
+                throw error("Unexpected end of JSON");
+            }
+            return buf[pos];
+        }
+
+        private DataException error(String message) {
+            return new DataException(message + " at position " + pos);
+        }
+    }
+}
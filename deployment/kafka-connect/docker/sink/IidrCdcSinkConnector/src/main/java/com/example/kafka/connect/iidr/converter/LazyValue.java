@@ -0,0 +1,77 @@
+package com.example.kafka.connect.iidr.converter;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.storage.Converter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A record value whose deserialization is deferred until it is first requested.
+ *
+ * Produced by {@link LazyValueConverter}. Holds the raw bytes and Kafka headers of the
+ * record and converts them with the delegate converter on the first call to
+ * {@link #resolve()}; the result is kept for later calls.
+ */
+public final class LazyValue {
+
+    private final Converter delegate;
+    private final String topic;
+    private final Headers headers;
+    private final byte[] raw;
+    private SchemaAndValue resolved;
+
+    LazyValue(Converter delegate, String topic, Headers headers, byte[] raw) {
+        this.delegate = delegate;
+        this.topic = topic;
+        this.headers = headers;
+        this.raw = raw;
+    }
+
+    /**
+     * Deserialize the value with the delegate converter (once).
+     *
+     * @throws org.apache.kafka.connect.errors.DataException if the bytes cannot be converted
+     */
+    public SchemaAndValue resolve() {
+        SchemaAndValue result = resolved;
+        if (result == null) {
+            result = headers != null
+                    ? delegate.toConnectData(topic, headers, raw)
+                    : delegate.toConnectData(topic, raw);
+            resolved = result;
+        }
+        return result;
+    }
+
+    public boolean isResolved() {
+        return resolved != null;
+    }
+
+    /**
+     * The serialized value as received from Kafka.
+     */
+    public byte[] getRaw() {
+        return raw;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    /**
+     * The Kafka record headers passed to the converter (may be null).
+     */
+    public Headers getHeaders() {
+        return headers;
+    }
+
+    /**
+     * The raw value decoded as UTF-8, so that logging and the corrupt events table
+     * see the original payload without deserializing it.
+     */
+    @Override
+    public String toString() {
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+}
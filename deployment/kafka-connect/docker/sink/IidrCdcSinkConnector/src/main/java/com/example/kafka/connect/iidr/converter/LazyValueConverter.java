@@ -0,0 +1,111 @@
+package com.example.kafka.connect.iidr.converter;
+
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigDef.Importance;
+import org.apache.kafka.common.config.ConfigDef.Type;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.utils.Utils;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.storage.Converter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Converter that defers value deserialization to the sink task.
+ *
+ * Wraps another converter (the delegate) and, instead of deserializing every value when the
+ * record is read, returns a {@link LazyValue} holding the raw bytes and headers. The IIDR sink
+ * task filters records by their TableName header first and only resolves the values it keeps,
+ * so records for other tables (literal table.name.format with many connectors on one topic)
+ * are never parsed.
+ *
+ * Configuration (under value.converter.*):
+ * - delegate: class of the real converter, e.g. org.apache.kafka.connect.json.JsonConverter
+ * - all other properties are passed on to the delegate
+ *
+ * Since values are opaque until the task resolves them, this converter must not be combined
+ * with SMTs that read or modify the record value. Deserialization errors surface in the task
+ * as corrupt records (iidr.errors.tolerance) rather than through the worker's errors.tolerance.
+ * Keys and null values are converted eagerly.
+ */
+public class LazyValueConverter implements Converter, Closeable {
+
+    private static final Logger log = Logger.getLogger(LazyValueConverter.class.getName());
+
+    public static final String DELEGATE_CONFIG = "delegate";
+    private static final String DELEGATE_DOC = "Class of the converter that deserializes the value " +
+            "when the task requests it. Other properties of this converter are passed on to it";
+
+    private static final ConfigDef CONFIG_DEF = new ConfigDef()
+            .define(DELEGATE_CONFIG, Type.CLASS, ConfigDef.NO_DEFAULT_VALUE,
+                    Importance.HIGH, DELEGATE_DOC);
+
+    private Converter delegate;
+    private boolean isKey;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object delegateClass = configs.get(DELEGATE_CONFIG);
+        if (delegateClass == null) {
+            throw new ConfigException(DELEGATE_CONFIG, null, "A delegate converter class is required");
+        }
+        try {
+            this.delegate = delegateClass instanceof Class
+                    ? Utils.newInstance((Class<?>) delegateClass, Converter.class)
+                    : Utils.newInstance(delegateClass.toString(), Converter.class);
+        } catch (ClassNotFoundException e) {
+            throw new ConfigException(DELEGATE_CONFIG, delegateClass, "Class not found: " + e.getMessage());
+        }
+
+        Map<String, Object> delegateConfigs = new HashMap<>(configs);
+        delegateConfigs.remove(DELEGATE_CONFIG);
+        delegate.configure(delegateConfigs, isKey);
+        this.isKey = isKey;
+
+        log.info("LazyValueConverter configured with delegate " + delegate.getClass().getName() +
+                (isKey ? " (key, eager)" : " (value, lazy)"));
+    }
+
+    @Override
+    public byte[] fromConnectData(String topic, Schema schema, Object value) {
+        return delegate.fromConnectData(topic, schema, value);
+    }
+
+    @Override
+    public byte[] fromConnectData(String topic, Headers headers, Schema schema, Object value) {
+        return delegate.fromConnectData(topic, headers, schema, value);
+    }
+
+    @Override
+    public SchemaAndValue toConnectData(String topic, byte[] value) {
+        return toConnectData(topic, null, value);
+    }
+
+    @Override
+    public SchemaAndValue toConnectData(String topic, Headers headers, byte[] value) {
+        if (isKey || value == null) {
+            return headers != null
+                    ? delegate.toConnectData(topic, headers, value)
+                    : delegate.toConnectData(topic, value);
+        }
+        return new SchemaAndValue(null, new LazyValue(delegate, topic, headers, value));
+    }
+
+    @Override
+    public ConfigDef config() {
+        return CONFIG_DEF;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+}
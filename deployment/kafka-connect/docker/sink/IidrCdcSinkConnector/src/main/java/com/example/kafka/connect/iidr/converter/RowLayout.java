@@ -0,0 +1,73 @@
+package com.example.kafka.connect.iidr.converter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Field names of a {@link RowValue}, in payload order.
+ *
+ * Layouts are interned per topic by {@link IidrJsonConverter}, so all rows with the same
+ * field set share one instance (and one set of name Strings). Writers can compare layouts
+ * by identity and resolve column positions once per layout.
+ */
+public final class RowLayout {
+
+    private final String[] names;
+    private final byte[][] encodedNames;
+    private final List<String> columns;
+    private final Map<String, Integer> index;
+
+    RowLayout(List<String> names) {
+        this.names = names.toArray(new String[0]);
+        this.encodedNames = new byte[this.names.length][];
+        this.index = new HashMap<>(this.names.length * 2);
+        for (int i = 0; i < this.names.length; i++) {
+            encodedNames[i] = this.names[i].getBytes(StandardCharsets.UTF_8);
+            index.put(this.names[i], i);
+        }
+        this.columns = Collections.unmodifiableList(Arrays.asList(this.names));
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int i) {
+        return names[i];
+    }
+
+    /**
+     * The field names as an unmodifiable list, shared by all rows of this layout.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Position of a field, or -1 if the layout does not have it.
+     */
+    public int indexOf(Object name) {
+        Integer i = index.get(name);
+        return i != null ? i : -1;
+    }
+
+    /**
+     * Whether the i-th name equals the UTF-8 bytes buf[start, end).
+     */
+    boolean nameEquals(int i, byte[] buf, int start, int end) {
+        byte[] name = encodedNames[i];
+        if (name.length != end - start) {
+            return false;
+        }
+        for (int j = 0; j < name.length; j++) {
+            if (name[j] != buf[start + j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
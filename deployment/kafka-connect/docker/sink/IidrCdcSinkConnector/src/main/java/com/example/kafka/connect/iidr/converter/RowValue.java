@@ -0,0 +1,166 @@
+package com.example.kafka.connect.iidr.converter;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Compact, read-only row produced by {@link IidrJsonConverter}.
+ *
+ * Stores a shared {@link RowLayout} and one value array instead of a hash map per record.
+ * It is a {@link Map} so that code written for schemaless values keeps working, while
+ * {@code JdbcWriter} reads the value array directly by position.
+ */
+public final class RowValue extends AbstractMap<String, Object> {
+
+    private final RowLayout layout;
+    private final Object[] values;
+
+    RowValue(RowLayout layout, Object[] values) {
+        this.layout = layout;
+        this.values = values;
+    }
+
+    public RowLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Value of the i-th field of the layout.
+     */
+    public Object getValue(int i) {
+        return values[i];
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = layout.indexOf(key);
+        return i >= 0 ? values[i] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return layout.indexOf(key) >= 0;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<Entry<String, Object>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < values.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+                        int i = next++;
+                        return new SimpleImmutableEntry<>(layout.getName(i), values[i]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof RowValue && ((RowValue) o).layout == layout) {
+            return Arrays.equals(values, ((RowValue) o).values);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        // Same contract as AbstractMap.hashCode(), without allocating entries
+        int h = 0;
+        for (int i = 0; i < values.length; i++) {
+            h += layout.getName(i).hashCode() ^ Objects.hashCode(values[i]);
+        }
+        return h;
+    }
+
+    /**
+     * The row as a flat JSON object.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(16 * values.length + 2);
+        appendJson(sb, this);
+        return sb.toString();
+    }
+
+    static void appendJson(StringBuilder sb, Map<?, ?> map) {
+        sb.append('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            appendString(sb, String.valueOf(entry.getKey()));
+            sb.append(':');
+            Object value = entry.getValue();
+            if (value == null || value instanceof Number || value instanceof Boolean) {
+                sb.append(value);
+            } else {
+                appendString(sb, value.toString());
+            }
+        }
+        sb.append('}');
+    }
+
+    private static void appendString(StringBuilder sb, String str) {
+        sb.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                    break;
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -38,6 +38,34 @@ public interface Dialect {
      */
     String buildDeleteSql(String tableName, List<String> pkColumns);
 
+    /**
+     * Build an UPSERT that only overwrites an existing row if the new change time, bound to
+     * tsColumn (the last of the columns), is not older than the stored one. Rows without a
+     * change time on either side are always overwritten, but a row without one keeps the
+     * stored change time, so later changes are still compared against it. Returns null if
+     * the database has no conditional upsert, in which case plain upserts are used.
+     */
+    default String buildConditionalUpsertSql(String tableName, List<String> columns,
+                                             List<String> pkColumns, String tsColumn) {
+        return null;
+    }
+
+    /**
+     * Build a DELETE that leaves a row alone if it was changed after the delete. The change
+     * time is bound after the primary key values; a delete without one (NULL) always applies.
+     */
+    default String buildConditionalDeleteSql(String tableName, List<String> pkColumns, String tsColumn) {
+        return buildDeleteSql(tableName, pkColumns) +
+                " AND (" + tsColumn + " IS NULL OR " + tsColumn + " <= COALESCE(?, " + tsColumn + "))";
+    }
+
+    /**
+     * Column type used to store change times.
+     */
+    default String getTimestampColumnType() {
+        return "TIMESTAMP";
+    }
+
     /**
      * Build a CREATE TABLE statement for the given table and record schema.
      */
@@ -66,4 +94,27 @@ public interface Dialect {
     default String normalizeIdentifierForMetadata(String identifier) {
         return identifier;
     }
+
+    /**
+     * Whether an exception reports that the statement was chosen as a deadlock victim.
+     * Defaults to the standard SQLState 40001 (serialization failure) and PostgreSQL's 40P01.
+     */
+    default boolean isDeadlock(SQLException e) {
+        return "40001".equals(e.getSQLState()) || "40P01".equals(e.getSQLState());
+    }
+
+    /**
+     * Whether an exception reports a lock wait timeout.
+     */
+    default boolean isLockWaitTimeout(SQLException e) {
+        return false;
+    }
+
+    /**
+     * Whether an exception reports a duplicate primary or unique key. Defaults to the
+     * standard SQLState 23505 (unique violation).
+     */
+    default boolean isDuplicateKey(SQLException e) {
+        return "23505".equals(e.getSQLState());
+    }
 }
@@ -1,5 +1,6 @@
 package com.example.kafka.connect.iidr.dialect;
 
+import java.sql.SQLException;
 import java.util.List;
 
 /**
@@ -7,6 +8,10 @@ import java.util.List;
  */
 public class MySqlDialect extends GenericDialect {
 
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int ER_DUP_ENTRY = 1062;
+
     @Override
     public String getName() {
         return "MySQL";
@@ -30,6 +35,55 @@ public class MySqlDialect extends GenericDialect {
                 tableName, cols, placeholders, updateClause);
     }
 
+    /**
+     * ON DUPLICATE KEY UPDATE has no WHERE clause, so every column keeps its stored value
+     * unless the change is current. The change time column comes last, as assignments see
+     * the values assigned before them, and is only replaced by a non-null time.
+     */
+    @Override
+    public String buildConditionalUpsertSql(String tableName, List<String> columns,
+                                            List<String> pkColumns, String tsColumn) {
+        String cols = String.join(", ", columns);
+        String placeholders = String.join(", ", java.util.Collections.nCopies(columns.size(), "?"));
+        String current = "VALUES(" + tsColumn + ") IS NULL OR " + tsColumn + " IS NULL OR VALUES(" +
+                tsColumn + ") >= " + tsColumn;
+
+        StringBuilder updateClause = new StringBuilder();
+        for (String col : columns) {
+            if (pkColumns.contains(col) || col.equals(tsColumn)) {
+                continue;
+            }
+            updateClause.append(col).append(" = IF(").append(current).append(", VALUES(")
+                    .append(col).append("), ").append(col).append("), ");
+        }
+        updateClause.append(tsColumn).append(" = IF(VALUES(").append(tsColumn).append(") IS NOT NULL AND (")
+                .append(tsColumn).append(" IS NULL OR VALUES(").append(tsColumn).append(") >= ")
+                .append(tsColumn).append("), VALUES(").append(tsColumn).append("), ").append(tsColumn).append(")");
+
+        return String.format("INSERT INTO %s (%s) VALUES (%s) ON DUPLICATE KEY UPDATE %s",
+                tableName, cols, placeholders, updateClause);
+    }
+
+    @Override
+    public String getTimestampColumnType() {
+        return "DATETIME(6)";
+    }
+
+    @Override
+    public boolean isDeadlock(SQLException e) {
+        return e.getErrorCode() == ER_LOCK_DEADLOCK || super.isDeadlock(e);
+    }
+
+    @Override
+    public boolean isLockWaitTimeout(SQLException e) {
+        return e.getErrorCode() == ER_LOCK_WAIT_TIMEOUT;
+    }
+
+    @Override
+    public boolean isDuplicateKey(SQLException e) {
+        return e.getErrorCode() == ER_DUP_ENTRY || super.isDuplicateKey(e);
+    }
+
     @Override
     public String getColumnType(org.apache.kafka.connect.data.Schema schema) {
         if (schema == null) {
@@ -1,5 +1,6 @@
 package com.example.kafka.connect.iidr.dialect;
 
+import java.sql.SQLException;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -13,6 +14,19 @@ public class PostgreSqlDialect extends GenericDialect {
         return "PostgreSQL";
     }
 
+    @Override
+    public boolean isDeadlock(SQLException e) {
+        return "40P01".equals(e.getSQLState());
+    }
+
+    /**
+     * lock_not_available, raised when lock_timeout expires.
+     */
+    @Override
+    public boolean isLockWaitTimeout(SQLException e) {
+        return "55P03".equals(e.getSQLState());
+    }
+
     @Override
     public String buildUpsertSql(String tableName, List<String> columns, List<String> pkColumns) {
         String cols = String.join(", ", columns);
@@ -38,6 +52,27 @@ public class PostgreSqlDialect extends GenericDialect {
         }
     }
 
+    @Override
+    public String buildConditionalUpsertSql(String tableName, List<String> columns,
+                                            List<String> pkColumns, String tsColumn) {
+        String cols = String.join(", ", columns);
+        String pkCols = String.join(", ", pkColumns);
+        String placeholders = String.join(", ", java.util.Collections.nCopies(columns.size(), "?"));
+
+        // A change without a change time keeps the stored one
+        String updateClause = columns.stream()
+                .filter(c -> !pkColumns.contains(c))
+                .map(col -> col.equals(tsColumn)
+                        ? String.format("%s = COALESCE(EXCLUDED.%s, cur.%s)", col, col, col)
+                        : String.format("%s = EXCLUDED.%s", col, col))
+                .collect(Collectors.joining(", "));
+        // A skipped row reports an update count of 0
+        return String.format("INSERT INTO %s AS cur (%s) VALUES (%s) ON CONFLICT (%s) DO UPDATE SET %s " +
+                        "WHERE EXCLUDED.%s IS NULL OR cur.%s IS NULL OR EXCLUDED.%s >= cur.%s",
+                tableName, cols, placeholders, pkCols, updateClause,
+                tsColumn, tsColumn, tsColumn, tsColumn);
+    }
+
     @Override
     public String getColumnType(org.apache.kafka.connect.data.Schema schema) {
         if (schema == null) {
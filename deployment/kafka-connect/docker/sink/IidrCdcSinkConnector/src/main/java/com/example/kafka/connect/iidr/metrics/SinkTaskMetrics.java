@@ -0,0 +1,175 @@
+package com.example.kafka.connect.iidr.metrics;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Counters and gauges of a sink task, exported over JMX.
+ *
+ * Metrics are created on first use, so components only need a reference to this object
+ * to report. Each metric is exposed as a Long attribute of the MBean
+ * {@code com.example.kafka.connect.iidr:type=sink-task-metrics,connector=<name>,task=<id>}.
+ */
+public class SinkTaskMetrics implements DynamicMBean, AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(SinkTaskMetrics.class.getName());
+
+    public static final String DOMAIN = "com.example.kafka.connect.iidr";
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private ObjectName objectName;
+
+    /**
+     * Increment a counter by one.
+     */
+    public void increment(String name) {
+        counter(name).increment();
+    }
+
+    /**
+     * Add a delta to a counter.
+     */
+    public void add(String name, long delta) {
+        counter(name).add(delta);
+    }
+
+    /**
+     * Current value of a counter, 0 if it was never incremented.
+     */
+    public long count(String name) {
+        LongAdder adder = counters.get(name);
+        return adder != null ? adder.sum() : 0L;
+    }
+
+    /**
+     * Register (or replace) a gauge whose value is read on demand.
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * Remove a gauge, e.g. when the component it observes is closed.
+     */
+    public void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    /**
+     * Remove a counter, e.g. one named after a table when the component counting it is closed.
+     */
+    public void removeCounter(String name) {
+        counters.remove(name);
+    }
+
+    private LongAdder counter(String name) {
+        LongAdder adder = counters.get(name);
+        if (adder == null) {
+            adder = counters.computeIfAbsent(name, k -> new LongAdder());
+        }
+        return adder;
+    }
+
+    /**
+     * Snapshot of all metrics, sorted by name.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, adder) -> values.put(name, adder.sum()));
+        gauges.forEach((name, supplier) -> values.put(name, supplier.getAsLong()));
+        return values;
+    }
+
+    /**
+     * Register this object with the platform MBean server. Failures are logged, not thrown.
+     */
+    public void register(String connectorName, String taskId) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=sink-task-metrics,connector="
+                    + ObjectName.quote(connectorName) + ",task=" + ObjectName.quote(taskId));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            this.objectName = name;
+        } catch (JMException e) {
+            log.warning("Failed to register sink task metrics: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            log.fine("Failed to unregister sink task metrics: " + e.getMessage());
+        }
+        objectName = null;
+    }
+
+    // DynamicMBean
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        LongSupplier gauge = gauges.get(attribute);
+        if (gauge != null) {
+            return gauge.getAsLong();
+        }
+        LongAdder adder = counters.get(attribute);
+        if (adder != null) {
+            return adder.sum();
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // skip unknown attributes
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new UnsupportedOperationException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Long> values = snapshot();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+        int i = 0;
+        for (String name : values.keySet()) {
+            attributes[i++] = new MBeanAttributeInfo(name, Long.class.getName(), name, true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "IIDR CDC sink task metrics",
+                attributes, null, null, null);
+    }
+}
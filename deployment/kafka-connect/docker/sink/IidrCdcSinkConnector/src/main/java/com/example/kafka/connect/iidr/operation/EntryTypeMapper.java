@@ -16,6 +16,8 @@ import java.util.Set;
 public class EntryTypeMapper {
 
     private static final Map<String, CdcOperation> ENTRY_TYPE_MAP = new HashMap<>();
+    // Operations of the two-letter codes by letter pair, built from ENTRY_TYPE_MAP
+    private static final CdcOperation[] CODE_TABLE = new CdcOperation[26 * 26];
 
     static {
         // INSERT codes: PT, RR, PX - use UPSERT for idempotent replay
@@ -34,6 +36,15 @@ public class EntryTypeMapper {
         // DELETE codes: DL, DR
         ENTRY_TYPE_MAP.put("DL", CdcOperation.DELETE);
         ENTRY_TYPE_MAP.put("DR", CdcOperation.DELETE);
+
+        for (Map.Entry<String, CdcOperation> entry : ENTRY_TYPE_MAP.entrySet()) {
+            String code = entry.getKey();
+            int index = code.length() == 2 ? codeIndex(code.charAt(0), code.charAt(1)) : -1;
+            if (index < 0) {
+                throw new IllegalStateException("Entry type code is not two letters: " + code);
+            }
+            CODE_TABLE[index] = entry.getValue();
+        }
     }
 
     /**
@@ -49,6 +60,43 @@ public class EntryTypeMapper {
         return ENTRY_TYPE_MAP.get(entryType.trim().toUpperCase());
     }
 
+    /**
+     * Map a two-character A_ENTTYP code given as its characters (case-insensitive),
+     * without building a String. Same result as {@link #mapEntryType(String)}.
+     *
+     * @return The corresponding CdcOperation, or null if unrecognized
+     */
+    public static CdcOperation mapEntryType(char first, char second) {
+        int index = codeIndex(first, second);
+        return index >= 0 ? CODE_TABLE[index] : null;
+    }
+
+    /**
+     * Whether a two-character A_ENTTYP code is a journal insert (PT, PX) of a row that did not
+     * exist at the source. Refreshed rows (RR) are not included, since a refresh may resend
+     * rows that already exist in the target.
+     */
+    public static boolean isInsertEntryType(char first, char second) {
+        int code = (upper(first) << 8) | upper(second);
+        return code == (('P' << 8) | 'T') || code == (('P' << 8) | 'X');
+    }
+
+    private static int upper(char c) {
+        return c >= 'a' && c <= 'z' ? c - ('a' - 'A') : c;
+    }
+
+    /**
+     * Index of a letter pair (case-insensitive) in CODE_TABLE, or -1 if either is no letter.
+     */
+    private static int codeIndex(char first, char second) {
+        int a = upper(first) - 'A';
+        int b = upper(second) - 'A';
+        if (a < 0 || a >= 26 || b < 0 || b >= 26) {
+            return -1;
+        }
+        return a * 26 + b;
+    }
+
     /**
      * Check if an entry type code is valid/recognized.
      */
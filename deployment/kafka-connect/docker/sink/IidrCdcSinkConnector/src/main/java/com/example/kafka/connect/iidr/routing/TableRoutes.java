@@ -0,0 +1,197 @@
+package com.example.kafka.connect.iidr.routing;
+
+import org.apache.kafka.common.config.ConfigException;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Per-table routing for multi-table fan-out mode.
+ *
+ * When table.include.list is set, or per-table overrides are given under the "tables."
+ * prefix, one connector dispatches records of several source tables (by TableName header)
+ * from a shared topic, replacing one literal-mode connector per table. Records of tables
+ * that are not routed are skipped.
+ *
+ * Per-table overrides, keyed by the TableName header value:
+ * - tables.&lt;TableName&gt;.target: target table (default: resolved from table.name.format)
+ * - tables.&lt;TableName&gt;.pk.fields: comma-separated primary key fields (default: pk.fields / discovery)
+ * - tables.&lt;TableName&gt;.write.mode: 'upsert' (default), 'insert' or 'changelog'
+ */
+public class TableRoutes {
+
+    private static final Logger log = Logger.getLogger(TableRoutes.class.getName());
+
+    public static final String TABLES_PREFIX = "tables.";
+    public static final String TARGET_SUFFIX = ".target";
+    public static final String PK_FIELDS_SUFFIX = ".pk.fields";
+    public static final String WRITE_MODE_SUFFIX = ".write.mode";
+
+    /**
+     * How upserts of a table are applied.
+     */
+    public enum WriteMode {
+        /** Apply inserts and updates as upserts (idempotent replay). */
+        UPSERT,
+        /** Apply inserts and updates as plain INSERTs, e.g. for append-only tables. */
+        INSERT,
+        /** Append every change to a change-log table, merged into the table in the background. */
+        CHANGELOG;
+
+        static WriteMode parse(String key, String value) {
+            for (WriteMode mode : values()) {
+                if (mode.name().equalsIgnoreCase(value.trim())) {
+                    return mode;
+                }
+            }
+            throw new ConfigException(key, value, "Expected one of " + Arrays.toString(values()).toLowerCase());
+        }
+    }
+
+    /**
+     * Settings of one routed source table.
+     */
+    public static class Route {
+        private final String sourceTable;
+        private final String targetTable;
+        private final List<String> pkFields;
+        private final WriteMode writeMode;
+
+        Route(String sourceTable, String targetTable, List<String> pkFields, WriteMode writeMode) {
+            this.sourceTable = sourceTable;
+            this.targetTable = targetTable;
+            this.pkFields = pkFields;
+            this.writeMode = writeMode;
+        }
+
+        public String getSourceTable() {
+            return sourceTable;
+        }
+
+        /**
+         * Explicit target table, or null to resolve it from table.name.format.
+         */
+        public String getTargetTable() {
+            return targetTable;
+        }
+
+        /**
+         * Primary key fields of this table, empty to use the connector-wide setting.
+         */
+        public List<String> getPkFields() {
+            return pkFields;
+        }
+
+        public WriteMode getWriteMode() {
+            return writeMode;
+        }
+
+        /**
+         * Whether another route writes its target the same way, so both can share a batch.
+         */
+        public boolean hasSameSettings(Route other) {
+            return pkFields.equals(other.pkFields) && writeMode == other.writeMode;
+        }
+    }
+
+    private final Map<String, Route> routes;
+
+    private TableRoutes(Map<String, Route> routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * Build the routes from table.include.list and the "tables." overrides.
+     *
+     * @param includeList   source tables to route, may be empty
+     * @param originals     all connector properties
+     */
+    public static TableRoutes from(List<String> includeList, Map<String, ?> originals) {
+        Map<String, Map<String, String>> overrides = new LinkedHashMap<>();
+        for (Map.Entry<String, ?> entry : originals.entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(TABLES_PREFIX) || entry.getValue() == null) {
+                continue;
+            }
+            String rest = key.substring(TABLES_PREFIX.length());
+            // Table names may contain dots, so match on the known setting suffixes
+            for (String suffix : new String[]{TARGET_SUFFIX, PK_FIELDS_SUFFIX, WRITE_MODE_SUFFIX}) {
+                if (rest.endsWith(suffix) && rest.length() > suffix.length()) {
+                    String table = rest.substring(0, rest.length() - suffix.length());
+                    overrides.computeIfAbsent(table, t -> new HashMap<>()).put(suffix, entry.getValue().toString());
+                    break;
+                }
+            }
+        }
+
+        Set<String> tables = new LinkedHashSet<>();
+        for (String table : includeList) {
+            if (!table.trim().isEmpty()) {
+                tables.add(table.trim());
+            }
+        }
+        tables.addAll(overrides.keySet());
+
+        Map<String, Route> routes = new HashMap<>();
+        for (String table : tables) {
+            Map<String, String> settings = overrides.getOrDefault(table, Collections.emptyMap());
+            String target = settings.get(TARGET_SUFFIX);
+            String pk = settings.get(PK_FIELDS_SUFFIX);
+            String mode = settings.get(WRITE_MODE_SUFFIX);
+
+            List<String> pkFields = new ArrayList<>();
+            if (pk != null) {
+                for (String field : pk.split(",")) {
+                    if (!field.trim().isEmpty()) {
+                        pkFields.add(field.trim());
+                    }
+                }
+            }
+            routes.put(table, new Route(
+                    table,
+                    target != null && !target.trim().isEmpty() ? target.trim() : null,
+                    Collections.unmodifiableList(pkFields),
+                    mode != null ? WriteMode.parse(TABLES_PREFIX + table + WRITE_MODE_SUFFIX, mode) : WriteMode.UPSERT));
+        }
+
+        // Records of one target are written as one batch, with the settings of one route
+        Map<String, Route> byTarget = new HashMap<>();
+        for (Route route : routes.values()) {
+            if (route.getTargetTable() == null) {
+                continue;
+            }
+            Route other = byTarget.putIfAbsent(route.getTargetTable(), route);
+            if (other != null && !other.hasSameSettings(route)) {
+                throw new ConfigException(TABLES_PREFIX + route.getSourceTable() + TARGET_SUFFIX,
+                        route.getTargetTable(), "Also the target of " + other.getSourceTable() +
+                                ", with different pk.fields or write.mode");
+            }
+        }
+
+        if (!routes.isEmpty()) {
+            log.info("Multi-table routing enabled for " + routes.size() + " tables: " + routes.keySet());
+        }
+        return new TableRoutes(routes);
+    }
+
+    /**
+     * Whether fan-out routing is configured. If not, table.name.format alone decides.
+     */
+    public boolean isEnabled() {
+        return !routes.isEmpty();
+    }
+
+    /**
+     * All routes.
+     */
+    public Collection<Route> getRoutes() {
+        return Collections.unmodifiableCollection(routes.values());
+    }
+
+    /**
+     * The route of a source table, or null if the table is not routed.
+     */
+    public Route get(String sourceTable) {
+        return sourceTable != null ? routes.get(sourceTable) : null;
+    }
+}
@@ -0,0 +1,513 @@
+package com.example.kafka.connect.iidr.spill;
+
+import com.example.kafka.connect.iidr.operation.CdcOperation;
+import com.example.kafka.connect.iidr.writer.JdbcWriter.ProcessedRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of a spilled batch: the partitions it covers with their next offsets, and
+ * per target table the processed records with their partition and offset.
+ *
+ * Values keep their Java types (Struct with its schema, Map, List, numbers, strings, bytes,
+ * BigDecimal, Date), so a drained record binds exactly like the original. Maps, including
+ * compact JSON rows, come back as LinkedHashMaps. Schemas are written once per frame.
+ */
+public final class SpillCodec {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INT = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte BOOLEAN = 8;
+    private static final byte BYTES = 9;
+    private static final byte DECIMAL = 10;
+    private static final byte DATE = 11;
+    private static final byte STRUCT = 12;
+    private static final byte MAP = 13;
+    private static final byte LIST = 14;
+
+    private static final int NO_SCHEMA = -1;
+    private static final int NEW_SCHEMA = -2;
+
+    private static final CdcOperation[] OPERATIONS = CdcOperation.values();
+    private static final Schema.Type[] SCHEMA_TYPES = Schema.Type.values();
+
+    private SpillCodec() {
+    }
+
+    public static byte[] encode(Batch batch) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            Encoder encoder = new Encoder(out);
+            List<TopicPartition> partitions = new ArrayList<>(batch.nextOffsets.keySet());
+            Map<TopicPartition, Integer> partitionIndex = new LinkedHashMap<>();
+            out.writeInt(partitions.size());
+            for (TopicPartition partition : partitions) {
+                partitionIndex.put(partition, partitionIndex.size());
+                encoder.writeString(partition.topic());
+                out.writeInt(partition.partition());
+                out.writeLong(batch.nextOffsets.get(partition));
+            }
+            out.writeInt(batch.tables.size());
+            for (Map.Entry<String, TableRecords> table : batch.tables.entrySet()) {
+                encoder.writeString(table.getKey());
+                encoder.writeString(table.getValue().sourceTable);
+                List<Entry> entries = table.getValue().entries;
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    ProcessedRecord record = entry.record;
+                    out.writeInt(partitionIndex.get(entry.partition));
+                    out.writeLong(entry.offset);
+                    out.writeByte(record.getOperation().ordinal());
+                    encoder.writeString(record.getIsoTimestamp());
+                    encoder.writeSchema(record.getKeySchema());
+                    encoder.writeSchema(record.getValueSchema());
+                    encoder.writeValue(record.getKey());
+                    encoder.writeValue(record.getValue());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Batch decode(ByteBuffer payload) {
+        Decoder decoder = new Decoder(payload);
+        Batch batch = new Batch();
+        List<TopicPartition> partitions = decodePartitions(decoder, batch);
+        int tableCount = payload.getInt();
+        for (int t = 0; t < tableCount; t++) {
+            String table = decoder.readString();
+            TableRecords records = batch.table(table, decoder.readString());
+            int count = payload.getInt();
+            for (int i = 0; i < count; i++) {
+                TopicPartition partition = partitions.get(payload.getInt());
+                long offset = payload.getLong();
+                CdcOperation operation = OPERATIONS[payload.get()];
+                String isoTimestamp = decoder.readString();
+                Schema keySchema = decoder.readSchema();
+                Schema valueSchema = decoder.readSchema();
+                Object key = decoder.readValue();
+                Object value = decoder.readValue();
+                records.entries.add(new Entry(partition, offset,
+                        new ProcessedRecord(table, operation, key, value, keySchema, valueSchema, isoTimestamp,
+                                partition.topic(), partition.partition(), offset)));
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * The partitions a spilled batch covers, without decoding its records.
+     */
+    public static Collection<TopicPartition> partitions(ByteBuffer payload) {
+        return decodePartitions(new Decoder(payload), new Batch());
+    }
+
+    private static List<TopicPartition> decodePartitions(Decoder decoder, Batch batch) {
+        int count = decoder.buffer.getInt();
+        List<TopicPartition> partitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TopicPartition partition = new TopicPartition(decoder.readString(), decoder.buffer.getInt());
+            partitions.add(partition);
+            batch.nextOffsets.put(partition, decoder.buffer.getLong());
+        }
+        return partitions;
+    }
+
+    /**
+     * Records of one put(), grouped by target table in order of first appearance.
+     */
+    public static final class Batch {
+        private final Map<TopicPartition, Long> nextOffsets = new LinkedHashMap<>();
+        private final Map<String, TableRecords> tables = new LinkedHashMap<>();
+
+        /**
+         * Include a delivered record's offset, whether or not the record is written.
+         */
+        public void track(TopicPartition partition, long offset) {
+            nextOffsets.merge(partition, offset + 1, Math::max);
+        }
+
+        /**
+         * Add a processed record to its target table.
+         *
+         * @param sourceTable source table of the record's route, or null
+         */
+        public void add(TopicPartition partition, long offset, ProcessedRecord record, String sourceTable) {
+            table(record.getTargetTable(), sourceTable).entries.add(new Entry(partition, offset, record));
+        }
+
+        public Map<TopicPartition, Long> getNextOffsets() {
+            return nextOffsets;
+        }
+
+        public Map<String, TableRecords> getTables() {
+            return tables;
+        }
+
+        public int size() {
+            int size = 0;
+            for (TableRecords records : tables.values()) {
+                size += records.entries.size();
+            }
+            return size;
+        }
+
+        private TableRecords table(String table, String sourceTable) {
+            return tables.computeIfAbsent(table, t -> new TableRecords(sourceTable));
+        }
+    }
+
+    /**
+     * Spilled records of one target table.
+     */
+    public static final class TableRecords {
+        private final String sourceTable;
+        private final List<Entry> entries = new ArrayList<>();
+
+        private TableRecords(String sourceTable) {
+            this.sourceTable = sourceTable;
+        }
+
+        public String getSourceTable() {
+            return sourceTable;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+    }
+
+    /**
+     * A spilled record with the partition and offset it was consumed from.
+     */
+    public static final class Entry {
+        private final TopicPartition partition;
+        private final long offset;
+        private final ProcessedRecord record;
+
+        private Entry(TopicPartition partition, long offset, ProcessedRecord record) {
+            this.partition = partition;
+            this.offset = offset;
+            this.record = record;
+        }
+
+        public TopicPartition getPartition() {
+            return partition;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public ProcessedRecord getRecord() {
+            return record;
+        }
+    }
+
+    private static final class Encoder {
+        private final DataOutputStream out;
+        private final Map<Schema, Integer> schemas = new IdentityHashMap<>();
+
+        Encoder(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        /**
+         * Write a schema reference, defining the schema (children first) on first use.
+         */
+        void writeSchema(Schema schema) throws IOException {
+            if (schema == null) {
+                out.writeInt(NO_SCHEMA);
+                return;
+            }
+            Integer index = schemas.get(schema);
+            if (index != null) {
+                out.writeInt(index);
+                return;
+            }
+            out.writeInt(NEW_SCHEMA);
+            out.writeByte(schema.type().ordinal());
+            out.writeBoolean(schema.isOptional());
+            writeString(schema.name());
+            out.writeInt(schema.version() != null ? schema.version() : -1);
+            Map<String, String> parameters = schema.parameters();
+            out.writeInt(parameters != null ? parameters.size() : 0);
+            if (parameters != null) {
+                for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                    writeString(parameter.getKey());
+                    writeString(parameter.getValue());
+                }
+            }
+            switch (schema.type()) {
+                case STRUCT:
+                    out.writeInt(schema.fields().size());
+                    for (Field field : schema.fields()) {
+                        writeString(field.name());
+                        writeSchema(field.schema());
+                    }
+                    break;
+                case ARRAY:
+                    writeSchema(schema.valueSchema());
+                    break;
+                case MAP:
+                    writeSchema(schema.keySchema());
+                    writeSchema(schema.valueSchema());
+                    break;
+                default:
+                    break;
+            }
+            schemas.put(schema, schemas.size());
+        }
+
+        void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                writeString((String) value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Integer) {
+                out.writeByte(INT);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Short) {
+                out.writeByte(SHORT);
+                out.writeShort((Short) value);
+            } else if (value instanceof Byte) {
+                out.writeByte(BYTE);
+                out.writeByte((Byte) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Float) {
+                out.writeByte(FLOAT);
+                out.writeFloat((Float) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof byte[]) {
+                out.writeByte(BYTES);
+                writeBytes((byte[]) value);
+            } else if (value instanceof ByteBuffer) {
+                ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                out.writeByte(BYTES);
+                writeBytes(bytes);
+            } else if (value instanceof BigDecimal) {
+                BigDecimal decimal = (BigDecimal) value;
+                out.writeByte(DECIMAL);
+                out.writeInt(decimal.scale());
+                writeBytes(decimal.unscaledValue().toByteArray());
+            } else if (value instanceof java.util.Date) {
+                out.writeByte(DATE);
+                out.writeLong(((java.util.Date) value).getTime());
+            } else if (value instanceof Struct) {
+                Struct struct = (Struct) value;
+                out.writeByte(STRUCT);
+                writeSchema(struct.schema());
+                for (Field field : struct.schema().fields()) {
+                    writeValue(struct.get(field));
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeByte(MAP);
+                out.writeInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            } else if (value instanceof Collection) {
+                Collection<?> list = (Collection<?>) value;
+                out.writeByte(LIST);
+                out.writeInt(list.size());
+                for (Object element : list) {
+                    writeValue(element);
+                }
+            } else {
+                out.writeByte(STRING);
+                writeString(value.toString());
+            }
+        }
+    }
+
+    private static final class Decoder {
+        private final ByteBuffer buffer;
+        private final List<Schema> schemas = new ArrayList<>();
+
+        Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        String readString() {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            return new String(readRaw(length), StandardCharsets.UTF_8);
+        }
+
+        byte[] readBytes() {
+            return readRaw(buffer.getInt());
+        }
+
+        private byte[] readRaw(int length) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        Schema readSchema() {
+            int ref = buffer.getInt();
+            if (ref == NO_SCHEMA) {
+                return null;
+            }
+            if (ref != NEW_SCHEMA) {
+                return schemas.get(ref);
+            }
+            Schema.Type type = SCHEMA_TYPES[buffer.get()];
+            boolean optional = buffer.get() != 0;
+            String name = readString();
+            int version = buffer.getInt();
+            int parameterCount = buffer.getInt();
+            Map<String, String> parameters = new LinkedHashMap<>();
+            for (int i = 0; i < parameterCount; i++) {
+                parameters.put(readString(), readString());
+            }
+
+            SchemaBuilder builder;
+            switch (type) {
+                case STRUCT:
+                    builder = SchemaBuilder.struct();
+                    int fieldCount = buffer.getInt();
+                    for (int i = 0; i < fieldCount; i++) {
+                        String field = readString();
+                        builder.field(field, readSchema());
+                    }
+                    break;
+                case ARRAY:
+                    builder = SchemaBuilder.array(readSchema());
+                    break;
+                case MAP:
+                    Schema keySchema = readSchema();
+                    builder = SchemaBuilder.map(keySchema, readSchema());
+                    break;
+                default:
+                    builder = SchemaBuilder.type(type);
+                    break;
+            }
+            if (optional) {
+                builder.optional();
+            }
+            if (name != null) {
+                builder.name(name);
+            }
+            if (version >= 0) {
+                builder.version(version);
+            }
+            if (!parameters.isEmpty()) {
+                builder.parameters(parameters);
+            }
+            Schema schema = builder.build();
+            schemas.add(schema);
+            return schema;
+        }
+
+        Object readValue() {
+            byte tag = buffer.get();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case STRING:
+                    return readString();
+                case LONG:
+                    return buffer.getLong();
+                case INT:
+                    return buffer.getInt();
+                case SHORT:
+                    return buffer.getShort();
+                case BYTE:
+                    return buffer.get();
+                case DOUBLE:
+                    return buffer.getDouble();
+                case FLOAT:
+                    return buffer.getFloat();
+                case BOOLEAN:
+                    return buffer.get() != 0;
+                case BYTES:
+                    return readBytes();
+                case DECIMAL:
+                    int scale = buffer.getInt();
+                    return new BigDecimal(new BigInteger(readBytes()), scale);
+                case DATE:
+                    return new java.util.Date(buffer.getLong());
+                case STRUCT:
+                    Schema schema = readSchema();
+                    Struct struct = new Struct(schema);
+                    for (Field field : schema.fields()) {
+                        struct.put(field, readValue());
+                    }
+                    return struct;
+                case MAP:
+                    int size = buffer.getInt();
+                    Map<Object, Object> map = new LinkedHashMap<>();
+                    for (int i = 0; i < size; i++) {
+                        Object key = readValue();
+                        map.put(key, readValue());
+                    }
+                    return map;
+                case LIST:
+                    int length = buffer.getInt();
+                    List<Object> list = new ArrayList<>(length);
+                    for (int i = 0; i < length; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                default:
+                    throw new IllegalStateException("Unknown spilled value tag " + tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package com.example.kafka.connect.iidr.spill;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of batches that could not be applied, kept in memory-mapped segment files.
+ *
+ * Frames are appended to the last segment and read back in order. Each frame carries its
+ * payload length, a CRC32 of the payload and a sequence number; the length is written last,
+ * and every append is forced to disk. On open, the segments are scanned from the drain
+ * position and the first frame that is incomplete or fails its CRC ends its segment, so a
+ * crash loses at most the frame being written.
+ *
+ * The drain position is kept in a checkpoint file that is replaced atomically by
+ * {@link #advance(Frame)}, after the frame has been applied. Fully drained segments are
+ * deleted, and once the log is empty all segments are removed, so the log only occupies
+ * disk space for undrained frames. Appends beyond the size cap are refused.
+ *
+ * Partitions revoked from the task are fenced: their records in the frames written so far
+ * must no longer be applied, since the partition's new owner consumes them again.
+ */
+public class SpillLog implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(SpillLog.class.getName());
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int CHECKPOINT_MAGIC = 0x53504c31;
+
+    // Payload length, CRC32 of the payload, frame sequence
+    private static final int HEADER_BYTES = 16;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Map<TopicPartition, Long> fences = new HashMap<>();
+    private long readSegment;
+    private int readPosition;
+    private long nextSequence;
+    private long pendingBytes;
+    private int pendingFrames;
+
+    /**
+     * Open the log in a directory, recovering the frames left by a previous run.
+     *
+     * @param segmentBytes size of new segment files
+     * @param maxBytes     maximum undrained bytes
+     */
+    public SpillLog(Path dir, int segmentBytes, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+        readCheckpoint();
+        recover();
+    }
+
+    public boolean isEmpty() {
+        return pendingFrames == 0;
+    }
+
+    /**
+     * Bytes of undrained frames, headers included.
+     */
+    public long size() {
+        return pendingBytes;
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    /**
+     * Append a frame and force it to disk.
+     *
+     * @return false if the frame would exceed the size cap
+     */
+    public boolean append(byte[] payload) throws IOException {
+        int frameBytes = HEADER_BYTES + payload.length;
+        if (pendingBytes + frameBytes > maxBytes) {
+            return false;
+        }
+        Segment tail = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (tail == null || tail.end + frameBytes > tail.buffer.capacity()) {
+            long id = tail == null ? readSegment : tail.id + 1;
+            tail = Segment.create(segmentPath(id), id, Math.max(segmentBytes, frameBytes));
+            if (segments.isEmpty()) {
+                readSegment = id;
+                readPosition = 0;
+            }
+            segments.put(id, tail);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        MappedByteBuffer buffer = tail.buffer;
+        buffer.putInt(tail.end + 4, (int) crc.getValue());
+        buffer.putLong(tail.end + 8, nextSequence);
+        buffer.put(tail.end + HEADER_BYTES, payload);
+        buffer.putInt(tail.end, payload.length);
+        buffer.force(tail.end, frameBytes);
+
+        tail.end += frameBytes;
+        nextSequence++;
+        pendingBytes += frameBytes;
+        pendingFrames++;
+        return true;
+    }
+
+    /**
+     * The oldest undrained frame, or null if the log is empty.
+     */
+    public Frame peek() {
+        if (pendingFrames == 0) {
+            return null;
+        }
+        return frameAt(segments.get(readSegment), readPosition);
+    }
+
+    /**
+     * All undrained frames, oldest first.
+     */
+    public List<Frame> frames() {
+        List<Frame> frames = new ArrayList<>(pendingFrames);
+        int position = readPosition;
+        for (Segment segment : segments.tailMap(readSegment, true).values()) {
+            while (position < segment.end) {
+                Frame frame = frameAt(segment, position);
+                frames.add(frame);
+                position = frame.nextPosition;
+            }
+            position = 0;
+        }
+        return frames;
+    }
+
+    /**
+     * Mark the frame returned by {@link #peek()} as applied and persist the drain position.
+     */
+    public void advance(Frame frame) throws IOException {
+        readPosition = frame.nextPosition;
+        pendingBytes -= HEADER_BYTES + frame.payload.remaining();
+        pendingFrames--;
+        if (pendingFrames == 0) {
+            for (Segment segment : segments.values()) {
+                segment.delete();
+            }
+            segments.clear();
+            fences.clear();
+            readSegment = frame.segment + 1;
+            readPosition = 0;
+        } else if (readPosition >= segments.get(readSegment).end) {
+            segments.remove(readSegment).delete();
+            readSegment = segments.firstKey();
+            readPosition = 0;
+        }
+        writeCheckpoint();
+    }
+
+    /**
+     * Fence partitions: their records in the frames written so far are no longer applied.
+     */
+    public void fence(Collection<TopicPartition> partitions) throws IOException {
+        if (pendingFrames == 0 || partitions.isEmpty()) {
+            return;
+        }
+        for (TopicPartition partition : partitions) {
+            fences.put(partition, nextSequence - 1);
+        }
+        writeCheckpoint();
+    }
+
+    /**
+     * Whether a partition's records in a frame are fenced.
+     */
+    public boolean isFenced(TopicPartition partition, long sequence) {
+        Long fence = fences.get(partition);
+        return fence != null && sequence <= fence;
+    }
+
+    @Override
+    public void close() {
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private Frame frameAt(Segment segment, int position) {
+        int length = segment.buffer.getInt(position);
+        long sequence = segment.buffer.getLong(position + 8);
+        ByteBuffer payload = segment.buffer.slice(position + HEADER_BYTES, length).asReadOnlyBuffer();
+        return new Frame(sequence, payload, segment.id, position + HEADER_BYTES + length);
+    }
+
+    private void recover() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())));
+                }
+            });
+        }
+        ids.sort(null);
+
+        for (long id : ids) {
+            Path path = segmentPath(id);
+            if (id < readSegment) {
+                Files.deleteIfExists(path);
+                continue;
+            }
+            Segment segment = Segment.open(path, id);
+            int position = id == readSegment ? readPosition : 0;
+            segment.end = scan(segment, position);
+            if (segment.end == position && id != readSegment) {
+                segment.delete();
+                continue;
+            }
+            segments.put(id, segment);
+        }
+        if (!segments.isEmpty() && !segments.containsKey(readSegment)) {
+            readSegment = segments.firstKey();
+            readPosition = 0;
+        }
+        // A crash after draining a segment may leave it behind
+        while (segments.size() > 1 && readPosition >= segments.get(readSegment).end) {
+            segments.remove(readSegment).delete();
+            readSegment = segments.firstKey();
+            readPosition = 0;
+        }
+        if (pendingFrames > 0) {
+            log.info("Recovered " + pendingFrames + " spilled batches (" + pendingBytes + " bytes) from " + dir);
+        } else {
+            for (Segment segment : segments.values()) {
+                segment.delete();
+            }
+            segments.clear();
+            fences.clear();
+        }
+    }
+
+    /**
+     * Count the valid frames of a segment from a position and return the end of the last one.
+     */
+    private int scan(Segment segment, int position) {
+        MappedByteBuffer buffer = segment.buffer;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(position + HEADER_BYTES, length));
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                log.warning("Discarding torn frame at " + position + " of spill segment " + segment.path);
+                break;
+            }
+            nextSequence = Math.max(nextSequence, buffer.getLong(position + 8) + 1);
+            pendingBytes += HEADER_BYTES + length;
+            pendingFrames++;
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private Path segmentPath(long id) {
+        return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private void readCheckpoint() throws IOException {
+        Path path = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(path)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException("Not a spill checkpoint: " + path);
+            }
+            readSegment = in.readLong();
+            readPosition = in.readInt();
+            nextSequence = in.readLong();
+            int fenceCount = in.readInt();
+            for (int i = 0; i < fenceCount; i++) {
+                fences.put(new TopicPartition(in.readUTF(), in.readInt()), in.readLong());
+            }
+        }
+    }
+
+    private void writeCheckpoint() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeLong(readSegment);
+            out.writeInt(readPosition);
+            out.writeLong(nextSequence);
+            out.writeInt(fences.size());
+            for (Map.Entry<TopicPartition, Long> fence : fences.entrySet()) {
+                out.writeUTF(fence.getKey().topic());
+                out.writeInt(fence.getKey().partition());
+                out.writeLong(fence.getValue());
+            }
+        }
+        Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+    }
+
+    /**
+     * Force the directory entry of a renamed file to disk, so the rename survives a crash.
+     * Platforms that cannot open a directory (Windows) skip this.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.fine("Cannot sync spill directory " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * One spilled batch.
+     */
+    public static final class Frame {
+        private final long sequence;
+        private final ByteBuffer payload;
+        private final long segment;
+        private final int nextPosition;
+
+        private Frame(long sequence, ByteBuffer payload, long segment, int nextPosition) {
+            this.sequence = sequence;
+            this.payload = payload;
+            this.segment = segment;
+            this.nextPosition = nextPosition;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Read-only view of the payload, valid until the frame is advanced past.
+         */
+        public ByteBuffer getPayload() {
+            return payload.duplicate();
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final long id;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int end;
+
+        private Segment(Path path, long id, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.id = id;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path path, long id, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(path, id, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+
+        static Segment open(Path path, long id) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(path, id, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.fine("Failed to close spill segment " + path + ": " + e.getMessage());
+            }
+        }
+
+        void delete() {
+            close();
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warning("Failed to delete spill segment " + path + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.kafka.connect.iidr.util;
+
+/**
+ * Exception-free helpers for parsing the fixed-width fields of date and time strings,
+ * shared by the timestamp converter and the column value parsers.
+ */
+public final class CalendarFields {
+
+    private CalendarFields() {
+    }
+
+    /**
+     * Value of count decimal digits of a string starting at start, or -1 if one is not a digit.
+     */
+    public static int digits(CharSequence str, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int d = str.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    /**
+     * Value of count ASCII decimal digits of a byte array starting at start, or -1 if one is
+     * not a digit.
+     */
+    public static int digits(byte[] bytes, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int d = (bytes[i] & 0xFF) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    /**
+     * Whether a year of the proleptic Gregorian calendar is a leap year.
+     */
+    public static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * Number of days of a month (1-12) of a year.
+     */
+    public static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.kafka.connect.iidr.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Heap budget shared by all tasks of a connector in the same worker.
+ *
+ * Tasks reserve the estimated retained size of the records they are processing and free it
+ * when done, so the total held by the connector stays near buffer.max.bytes however many
+ * tasks run in the worker. Budgets are reference counted like the metadata caches: the
+ * first task to acquire a connector's budget creates it, the last to release it drops it.
+ */
+public final class HeapBudget {
+
+    private static final Logger log = Logger.getLogger(HeapBudget.class.getName());
+
+    private static final Map<String, HeapBudget> BUDGETS = new HashMap<>();
+
+    private final long maxBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private int references;
+
+    private HeapBudget(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Acquire the budget of a connector, creating it with the given size if needed.
+     * Every call must be paired with a {@link #release(String)}.
+     */
+    public static HeapBudget acquire(String connector, long maxBytes) {
+        synchronized (BUDGETS) {
+            HeapBudget budget = BUDGETS.get(connector);
+            if (budget == null) {
+                budget = new HeapBudget(maxBytes);
+                BUDGETS.put(connector, budget);
+                log.info("Created heap budget of " + maxBytes + " bytes for " + connector);
+            }
+            budget.references++;
+            return budget;
+        }
+    }
+
+    /**
+     * Release a reference to the budget of a connector.
+     */
+    public static void release(String connector) {
+        synchronized (BUDGETS) {
+            HeapBudget budget = BUDGETS.get(connector);
+            if (budget != null && --budget.references <= 0) {
+                BUDGETS.remove(connector);
+            }
+        }
+    }
+
+    /**
+     * Reserve bytes, even beyond the budget. Returns the bytes in use afterwards.
+     */
+    public long reserve(long bytes) {
+        return usedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Return bytes reserved earlier.
+     */
+    public void free(long bytes) {
+        usedBytes.addAndGet(-bytes);
+    }
+
+    /**
+     * Bytes that can be reserved without exceeding the budget.
+     */
+    public long available() {
+        return Math.max(0, maxBytes - usedBytes.get());
+    }
+
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.kafka.connect.iidr.util;
+
+import com.example.kafka.connect.iidr.operation.CdcOperation;
+import com.example.kafka.connect.iidr.operation.EntryTypeMapper;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.header.Headers;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reusable view of the IIDR headers of one record, filled in a single pass.
+ *
+ * {@link #read(SinkRecord)} walks the record's headers once and keeps the last value of
+ * TableName, A_ENTTYP and A_TIMSTAMP (same semantics as {@link HeaderExtractor}). The entry
+ * type is decoded straight from its two ASCII characters to a {@link CdcOperation}, and
+ * byte[] table names are interned through a small cache so that repeated names are not
+ * decoded again. The A_TIMSTAMP value is kept raw for {@link TimestampConverter}.
+ *
+ * An instance is meant to be reused for every record processed by one thread.
+ */
+public class RecordHeaders {
+
+    private static final int TABLE_NAME_CACHE_SIZE = 512;
+
+    private final byte[][] cachedNameBytes = new byte[TABLE_NAME_CACHE_SIZE][];
+    private final String[] cachedNames = new String[TABLE_NAME_CACHE_SIZE];
+
+    private String tableName;
+    private Object entryType;
+    private Object timestamp;
+    private CdcOperation operation;
+    private boolean insertEntry;
+
+    /**
+     * Read the headers of a record, replacing the previous record's values.
+     */
+    public RecordHeaders read(SinkRecord record) {
+        Object tableNameValue = null;
+        entryType = null;
+        timestamp = null;
+
+        Headers headers = record.headers();
+        if (headers != null) {
+            for (Header header : headers) {
+                String key = header.key();
+                if (HeaderExtractor.HEADER_TABLE_NAME.equals(key)) {
+                    tableNameValue = header.value();
+                } else if (HeaderExtractor.HEADER_ENTRY_TYPE.equals(key)) {
+                    entryType = header.value();
+                } else if (HeaderExtractor.HEADER_TIMESTAMP.equals(key)) {
+                    timestamp = header.value();
+                }
+            }
+        }
+
+        tableName = decodeTableName(tableNameValue);
+        insertEntry = false;
+        operation = decodeOperation(entryType);
+        return this;
+    }
+
+    /**
+     * The TableName header, or null if missing.
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * The operation mapped from A_ENTTYP, or null if the header is missing or unrecognized.
+     */
+    public CdcOperation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Whether A_ENTTYP is a journal insert code (PT, PX), see
+     * {@link EntryTypeMapper#isInsertEntryType(char, char)}.
+     */
+    public boolean isInsertEntry() {
+        return insertEntry;
+    }
+
+    /**
+     * The A_ENTTYP header as a String, or null if missing. Decoded on demand.
+     */
+    public String getEntryType() {
+        return asString(entryType);
+    }
+
+    public boolean hasEntryType() {
+        return entryType != null;
+    }
+
+    /**
+     * The raw A_TIMSTAMP header value (String or byte[]), or null if missing.
+     */
+    public Object getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Validate that all required headers are present.
+     *
+     * @return null if valid, otherwise a description of what's missing
+     */
+    public String validateRequiredHeaders() {
+        if (tableName != null && entryType != null) {
+            return null;
+        }
+        StringBuilder errors = new StringBuilder();
+        if (tableName == null) {
+            errors.append("Missing header: TableName. ");
+        }
+        if (entryType == null) {
+            errors.append("Missing header: A_ENTTYP. ");
+        }
+        return errors.toString().trim();
+    }
+
+    private String decodeTableName(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof byte[])) {
+            return value.toString();
+        }
+
+        byte[] bytes = (byte[]) value;
+        int slot = Arrays.hashCode(bytes) & (TABLE_NAME_CACHE_SIZE - 1);
+        byte[] cached = cachedNameBytes[slot];
+        if (cached != null && Arrays.equals(cached, bytes)) {
+            return cachedNames[slot];
+        }
+        String name = new String(bytes, StandardCharsets.UTF_8);
+        cachedNameBytes[slot] = bytes.clone();
+        cachedNames[slot] = name;
+        return name;
+    }
+
+    private CdcOperation decodeOperation(Object value) {
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            int start = 0;
+            int end = bytes.length;
+            while (start < end && (bytes[start] & 0xFF) <= ' ') {
+                start++;
+            }
+            while (end > start && (bytes[end - 1] & 0xFF) <= ' ') {
+                end--;
+            }
+            return end - start == 2 ? decodeOperation((char) bytes[start], (char) bytes[start + 1]) : null;
+        }
+        if (value instanceof String) {
+            String str = ((String) value).trim();
+            return str.length() == 2 ? decodeOperation(str.charAt(0), str.charAt(1)) : null;
+        }
+        return value != null ? decodeOperation(value.toString()) : null;
+    }
+
+    private CdcOperation decodeOperation(char first, char second) {
+        insertEntry = EntryTypeMapper.isInsertEntryType(first, second);
+        return EntryTypeMapper.mapEntryType(first, second);
+    }
+
+    private static String asString(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof byte[]) {
+            return new String((byte[]) value, StandardCharsets.UTF_8);
+        }
+        return value.toString();
+    }
+}
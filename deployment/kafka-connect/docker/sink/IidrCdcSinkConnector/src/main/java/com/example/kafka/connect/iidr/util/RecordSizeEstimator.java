@@ -0,0 +1,198 @@
+package com.example.kafka.connect.iidr.util;
+
+import com.example.kafka.connect.iidr.converter.LazyValue;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cheap estimate of the payload size of a record, used for byte-based thresholds.
+ *
+ * Counts string lengths, byte array lengths and 8 bytes per other scalar of the key and
+ * value, walking Structs, Maps and Collections. Values deferred by LazyValueConverter count
+ * their raw length.
+ *
+ * {@link #retainedSize(SinkRecord)} approximates the heap a record holds instead, for memory
+ * budgets: object headers, references and arrays of a 64-bit JVM are added to the payload,
+ * and Struct fields of fixed-size schema types are counted without inspecting their values.
+ */
+public final class RecordSizeEstimator {
+
+    private static final int SCALAR_BYTES = 8;
+
+    // Approximate heap footprint on a 64-bit JVM
+    private static final int OBJECT_BYTES = 16;
+    private static final int REFERENCE_BYTES = 8;
+    private static final int STRING_BYTES = 40;
+    private static final int BOXED_BYTES = 16;
+    private static final int BOXED_WIDE_BYTES = 24;
+    private static final int DECIMAL_BYTES = 64;
+    private static final int MAP_ENTRY_BYTES = 32;
+    private static final int SINK_RECORD_BYTES = 120;
+    private static final int HEADER_BYTES = 48;
+    // A deferred value is expected to take about twice its raw size once deserialized
+    private static final int LAZY_EXPANSION = 2;
+
+    private RecordSizeEstimator() {
+    }
+
+    /**
+     * Estimated payload bytes of a record's key and value.
+     */
+    public static long estimate(SinkRecord record) {
+        return estimate(record.key()) + estimate(record.value());
+    }
+
+    /**
+     * Estimated payload bytes of a key or value.
+     */
+    public static long estimate(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return ((String) value).length();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof ByteBuffer) {
+            return ((ByteBuffer) value).remaining();
+        }
+        if (value instanceof LazyValue) {
+            return ((LazyValue) value).getRaw().length;
+        }
+        if (value instanceof Struct) {
+            Struct struct = (Struct) value;
+            long size = 0;
+            for (Field field : struct.schema().fields()) {
+                size += estimate(struct.get(field));
+            }
+            return size;
+        }
+        if (value instanceof Map) {
+            long size = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += estimate(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            long size = 0;
+            for (Object element : (Collection<?>) value) {
+                size += estimate(element);
+            }
+            return size;
+        }
+        return SCALAR_BYTES;
+    }
+
+    /**
+     * Approximate heap retained by a record: the record itself, its key, value and headers.
+     */
+    public static long retainedSize(SinkRecord record) {
+        long size = SINK_RECORD_BYTES + retainedSize(record.key()) + retainedSize(record.value());
+        for (Header header : record.headers()) {
+            size += HEADER_BYTES + retainedSize(header.key()) + retainedSize(header.value());
+        }
+        return size;
+    }
+
+    /**
+     * Approximate heap retained by a key, value or nested value.
+     */
+    public static long retainedSize(Object value) {
+        if (value == null || value instanceof Boolean) {
+            // Booleans are shared instances
+            return 0;
+        }
+        if (value instanceof String) {
+            // Strings with non-Latin-1 characters take two bytes per character
+            return STRING_BYTES + 2L * ((String) value).length();
+        }
+        if (value instanceof byte[]) {
+            return OBJECT_BYTES + ((byte[]) value).length;
+        }
+        if (value instanceof ByteBuffer) {
+            return 3 * OBJECT_BYTES + ((ByteBuffer) value).capacity();
+        }
+        if (value instanceof Long || value instanceof Double) {
+            return BOXED_WIDE_BYTES;
+        }
+        if (value instanceof BigDecimal) {
+            return DECIMAL_BYTES;
+        }
+        if (value instanceof Number) {
+            return BOXED_BYTES;
+        }
+        if (value instanceof LazyValue) {
+            LazyValue lazy = (LazyValue) value;
+            long raw = OBJECT_BYTES + lazy.getRaw().length;
+            if (!lazy.isResolved()) {
+                return 3 * OBJECT_BYTES + raw * (1 + LAZY_EXPANSION);
+            }
+            SchemaAndValue resolved = lazy.resolve();
+            return 4 * OBJECT_BYTES + raw + retainedSize(resolved.value());
+        }
+        if (value instanceof Struct) {
+            Struct struct = (Struct) value;
+            List<Field> fields = struct.schema().fields();
+            // The schema is shared; the struct holds a reference and an array of values
+            long size = 2 * OBJECT_BYTES + (long) REFERENCE_BYTES * fields.size();
+            for (Field field : fields) {
+                size += retainedFieldSize(field, struct.get(field));
+            }
+            return size;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            // Hash table sized at a load factor of 0.75
+            long size = 3 * OBJECT_BYTES + REFERENCE_BYTES * (map.size() * 4L / 3 + 1);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += MAP_ENTRY_BYTES + retainedSize(entry.getKey()) + retainedSize(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            long size = 2 * OBJECT_BYTES + (long) REFERENCE_BYTES * collection.size();
+            for (Object element : collection) {
+                size += retainedSize(element);
+            }
+            return size;
+        }
+        return BOXED_WIDE_BYTES;
+    }
+
+    private static long retainedFieldSize(Field field, Object value) {
+        if (value == null) {
+            return 0;
+        }
+        // Logical types (Decimal, Date, Time, Timestamp) are not boxed primitives
+        if (field.schema().name() != null) {
+            return retainedSize(value);
+        }
+        switch (field.schema().type()) {
+            case BOOLEAN:
+                return 0;
+            case INT8:
+            case INT16:
+            case INT32:
+            case FLOAT32:
+                return BOXED_BYTES;
+            case INT64:
+            case FLOAT64:
+                return BOXED_WIDE_BYTES;
+            default:
+                return retainedSize(value);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.kafka.connect.iidr.util;
+
+import org.apache.kafka.common.config.ConfigException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiled form of the table.name.format setting.
+ *
+ * The format is parsed once into literal and placeholder parts. Supported placeholders:
+ * - ${TableName}: value of the TableName header
+ * - ${topic}: Kafka topic of the record
+ * Each placeholder accepts an optional case transform: ${TableName:upper}, ${topic:lower}.
+ * Literal text around the placeholders acts as prefix/suffix (e.g. "STG_${TableName:upper}").
+ * Any other ${...} text is kept literally.
+ *
+ * A format without ${TableName} is a literal target: only records whose TableName header
+ * equals the resolved format are processed. Resolved names are cached per (TableName, topic).
+ */
+public class TableNameTemplate {
+
+    private static final int MAX_CACHED_NAMES = 10_000;
+
+    private enum Source { LITERAL, TABLE_NAME, TOPIC }
+
+    private enum CaseTransform { NONE, UPPER, LOWER }
+
+    private static final class Part {
+        private final Source source;
+        private final String literal;
+        private final CaseTransform transform;
+
+        Part(Source source, String literal, CaseTransform transform) {
+            this.source = source;
+            this.literal = literal;
+            this.transform = transform;
+        }
+    }
+
+    private final String format;
+    private final Part[] parts;
+    private final boolean literalMode;
+    private final boolean usesTopic;
+    // topic -> TableName header -> resolved name
+    private final Map<String, Map<String, String>> cache = new ConcurrentHashMap<>();
+    private final AtomicInteger cachedNames = new AtomicInteger();
+
+    private TableNameTemplate(String format, Part[] parts, boolean literalMode, boolean usesTopic) {
+        this.format = format;
+        this.parts = parts;
+        this.literalMode = literalMode;
+        this.usesTopic = usesTopic;
+    }
+
+    /**
+     * Compile a table.name.format string.
+     *
+     * @throws ConfigException on an unknown case transform
+     */
+    public static TableNameTemplate compile(String format) {
+        List<Part> parts = new ArrayList<>();
+        boolean hasTableName = false;
+        boolean hasTopic = false;
+        int pos = 0;
+        while (pos < format.length()) {
+            int start = format.indexOf("${", pos);
+            if (start < 0) {
+                parts.add(new Part(Source.LITERAL, format.substring(pos), CaseTransform.NONE));
+                break;
+            }
+            if (start > pos) {
+                parts.add(new Part(Source.LITERAL, format.substring(pos, start), CaseTransform.NONE));
+            }
+            int end = format.indexOf('}', start);
+            if (end < 0) {
+                // Unterminated placeholder is kept as literal text
+                parts.add(new Part(Source.LITERAL, format.substring(start), CaseTransform.NONE));
+                break;
+            }
+
+            String placeholder = format.substring(start + 2, end);
+            String name = placeholder;
+            CaseTransform transform = CaseTransform.NONE;
+            int colon = placeholder.indexOf(':');
+            if (colon >= 0) {
+                name = placeholder.substring(0, colon);
+            }
+
+            Source source = "TableName".equals(name) ? Source.TABLE_NAME
+                    : "topic".equals(name) ? Source.TOPIC : null;
+            if (source == null) {
+                // Unknown placeholders are kept as literal text
+                parts.add(new Part(Source.LITERAL, format.substring(start, end + 1), CaseTransform.NONE));
+                pos = end + 1;
+                continue;
+            }
+            if (colon >= 0) {
+                String modifier = placeholder.substring(colon + 1);
+                if ("upper".equalsIgnoreCase(modifier)) {
+                    transform = CaseTransform.UPPER;
+                } else if ("lower".equalsIgnoreCase(modifier)) {
+                    transform = CaseTransform.LOWER;
+                } else {
+                    throw new ConfigException("table.name.format", format,
+                            "Unknown case transform '" + modifier + "', expected 'upper' or 'lower'");
+                }
+            }
+            parts.add(new Part(source, null, transform));
+            hasTableName |= source == Source.TABLE_NAME;
+            hasTopic |= source == Source.TOPIC;
+            pos = end + 1;
+        }
+        return new TableNameTemplate(format, parts.toArray(new Part[0]), !hasTableName, hasTopic);
+    }
+
+    /**
+     * Whether the format has no ${TableName} placeholder, i.e. names a single target table.
+     */
+    public boolean isLiteral() {
+        return literalMode;
+    }
+
+    /**
+     * Whether a record with the given TableName header is handled by this format.
+     * Template formats accept every record; literal formats only their own table.
+     */
+    public boolean matches(String tableName, String topic) {
+        if (!literalMode) {
+            return true;
+        }
+        return tableName != null && tableName.equals(resolve(tableName, topic));
+    }
+
+    /**
+     * Resolve the target table name for a record.
+     */
+    public String resolve(String tableName, String topic) {
+        String tableKey = literalMode || tableName == null ? "" : tableName;
+        String topicKey = !usesTopic || topic == null ? "" : topic;
+
+        Map<String, String> byTable = cache.get(topicKey);
+        if (byTable != null) {
+            String cached = byTable.get(tableKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        String resolved = render(tableKey, topicKey);
+        if (cachedNames.get() >= MAX_CACHED_NAMES) {
+            cache.clear();
+            cachedNames.set(0);
+        }
+        if (cache.computeIfAbsent(topicKey, k -> new ConcurrentHashMap<>()).putIfAbsent(tableKey, resolved) == null) {
+            cachedNames.incrementAndGet();
+        }
+        return resolved;
+    }
+
+    private String render(String tableName, String topic) {
+        StringBuilder sb = new StringBuilder(format.length() + tableName.length() + topic.length());
+        for (Part part : parts) {
+            String value;
+            switch (part.source) {
+                case TABLE_NAME:
+                    value = tableName;
+                    break;
+                case TOPIC:
+                    value = topic;
+                    break;
+                default:
+                    value = part.literal;
+                    break;
+            }
+            switch (part.transform) {
+                case UPPER:
+                    value = value.toUpperCase(Locale.ROOT);
+                    break;
+                case LOWER:
+                    value = value.toLowerCase(Locale.ROOT);
+                    break;
+                default:
+                    break;
+            }
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return format;
+    }
+}
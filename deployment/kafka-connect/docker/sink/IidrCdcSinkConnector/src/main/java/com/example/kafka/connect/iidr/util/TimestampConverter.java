@@ -1,11 +1,16 @@
 package com.example.kafka.connect.iidr.util;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.time.zone.ZoneRules;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Logger;
 
 /**
@@ -18,6 +23,11 @@ import java.util.logging.Logger;
  * - Input: "2025-01-22 11:17:14.000000000000"
  * - Timezone: "Asia/Taipei" (+08:00)
  * - Output: 2025-01-22T11:17:14.000000+08:00
+ *
+ * The fixed layout is parsed by hand, directly on the header String or byte[], without
+ * building intermediate Strings or java.time objects. The zone offset of region zones is
+ * cached per local hour, so only hours containing a DST transition take the
+ * java.time path. Inputs that do not match the layout fall back to DateTimeFormatter.
  */
 public class TimestampConverter {
 
@@ -27,10 +37,35 @@ public class TimestampConverter {
     private static final DateTimeFormatter INPUT_FORMATTER =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSSSSS");
 
+    /** Returned by {@link #toEpochMicros} when the timestamp cannot be parsed. */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int SECONDS_PER_DAY = 86400;
+    private static final int OFFSET_CACHE_SIZE = 256;
+    private static final int OFFSET_BIAS = 1 << 19;
+    private static final long EMPTY_SLOT = -1L;
+    /** Days from 0000-01-01 to 1970-01-01, used to keep hour keys non-negative. */
+    private static final long DAYS_0000_TO_1970 = 719528L;
+
+    // Range of local times whose nanos-of-epoch fit in a long (1677-09-22 .. 2262-04-11)
+    private static final long MIN_LOCAL_SECOND = Long.MIN_VALUE / NANOS_PER_SECOND + 1;
+    private static final long MAX_LOCAL_SECOND = Long.MAX_VALUE / NANOS_PER_SECOND - 1;
+
     private final ZoneId sourceZone;
+    private final ZoneRules rules;
+    private final ZoneOffset fixedOffset;
+    // Per local hour: (hourKey << 20) | (offsetSeconds + OFFSET_BIAS), or EMPTY_SLOT
+    private final AtomicLongArray offsetCache;
 
     public TimestampConverter(String timezone) {
         this.sourceZone = parseTimezone(timezone);
+        this.rules = sourceZone.getRules();
+        this.fixedOffset = rules.isFixedOffset() ? rules.getOffset(Instant.EPOCH) : null;
+        this.offsetCache = new AtomicLongArray(OFFSET_CACHE_SIZE);
+        for (int i = 0; i < OFFSET_CACHE_SIZE; i++) {
+            offsetCache.set(i, EMPTY_SLOT);
+        }
         log.info("TimestampConverter initialized with timezone: " + timezone + " (" + sourceZone + ")");
     }
 
@@ -115,7 +150,278 @@ public class TimestampConverter {
      * Convert and format to ISO8601 string.
      */
     public String convertToIso8601(String timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        long localNanos = parseLocalNanos(timestamp, null, timestamp.length());
+        if (localNanos != INVALID) {
+            String iso = formatIso8601(localNanos);
+            if (iso != null) {
+                return iso;
+            }
+        }
         OffsetDateTime odt = convert(timestamp);
         return odt != null ? odt.toString() : null;
     }
+
+    /**
+     * Convert and format a raw (UTF-8/ASCII) A_TIMSTAMP header value to ISO8601 string.
+     */
+    public String convertToIso8601(byte[] timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        long localNanos = parseLocalNanos(null, timestamp, timestamp.length);
+        if (localNanos != INVALID) {
+            String iso = formatIso8601(localNanos);
+            if (iso != null) {
+                return iso;
+            }
+        }
+        return convertToIso8601(new String(timestamp, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Convert A_TIMSTAMP to microseconds since the epoch in the configured timezone.
+     *
+     * @return epoch microseconds, or {@link #INVALID} if the timestamp cannot be parsed
+     */
+    public long toEpochMicros(String timestamp) {
+        if (timestamp == null) {
+            return INVALID;
+        }
+        long micros = epochMicros(parseLocalNanos(timestamp, null, timestamp.length()));
+        if (micros != INVALID) {
+            return micros;
+        }
+        OffsetDateTime odt = convert(timestamp);
+        if (odt == null) {
+            return INVALID;
+        }
+        return odt.toEpochSecond() * 1_000_000L + odt.getNano() / 1000;
+    }
+
+    /**
+     * Convert a raw (UTF-8/ASCII) A_TIMSTAMP header value to microseconds since the epoch.
+     *
+     * @return epoch microseconds, or {@link #INVALID} if the timestamp cannot be parsed
+     */
+    public long toEpochMicros(byte[] timestamp) {
+        if (timestamp == null) {
+            return INVALID;
+        }
+        long micros = epochMicros(parseLocalNanos(null, timestamp, timestamp.length));
+        if (micros != INVALID) {
+            return micros;
+        }
+        return toEpochMicros(new String(timestamp, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Epoch microseconds of local epoch nanos in the configured zone, or INVALID if the
+     * nanos are INVALID or the offset must be resolved through java.time.
+     */
+    private long epochMicros(long localNanos) {
+        if (localNanos != INVALID) {
+            long localSecond = Math.floorDiv(localNanos, NANOS_PER_SECOND);
+            int offset = offsetSeconds(localSecond);
+            if (offset != Integer.MIN_VALUE) {
+                return (localSecond - offset) * 1_000_000L + Math.floorMod(localNanos, NANOS_PER_SECOND) / 1000;
+            }
+        }
+        return INVALID;
+    }
+
+    // Fixed-layout fast path
+
+    /**
+     * Parse "yyyy-MM-dd HH:mm:ss[.f...]" (surrounding blanks allowed, fraction truncated to
+     * nanoseconds) from either a String or a byte[] into nanoseconds of the local epoch.
+     *
+     * @return local epoch nanos, or INVALID if the input does not match the layout
+     */
+    private static long parseLocalNanos(String str, byte[] bytes, int length) {
+        int start = 0;
+        int end = length;
+        while (start < end && charAt(str, bytes, start) <= ' ') {
+            start++;
+        }
+        while (end > start && charAt(str, bytes, end - 1) <= ' ') {
+            end--;
+        }
+        if (end - start < 19
+                || charAt(str, bytes, start + 4) != '-' || charAt(str, bytes, start + 7) != '-'
+                || charAt(str, bytes, start + 10) != ' '
+                || charAt(str, bytes, start + 13) != ':' || charAt(str, bytes, start + 16) != ':') {
+            return INVALID;
+        }
+
+        int year = digits(str, bytes, start, 4);
+        int month = digits(str, bytes, start + 5, 2);
+        int day = digits(str, bytes, start + 8, 2);
+        int hour = digits(str, bytes, start + 11, 2);
+        int minute = digits(str, bytes, start + 14, 2);
+        int second = digits(str, bytes, start + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > CalendarFields.lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+
+        int nanos = 0;
+        int pos = start + 19;
+        if (pos < end) {
+            if (charAt(str, bytes, pos) != '.') {
+                return INVALID;
+            }
+            pos++;
+            int scale = 100_000_000;
+            for (; pos < end; pos++) {
+                int d = charAt(str, bytes, pos) - '0';
+                if (d < 0 || d > 9) {
+                    return INVALID;
+                }
+                nanos += d * scale;
+                scale /= 10;
+            }
+        }
+
+        long localSecond = toEpochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+        if (localSecond < MIN_LOCAL_SECOND || localSecond > MAX_LOCAL_SECOND) {
+            return INVALID;
+        }
+        return localSecond * NANOS_PER_SECOND + nanos;
+    }
+
+    private static int charAt(String str, byte[] bytes, int index) {
+        return bytes != null ? bytes[index] & 0xFF : str.charAt(index);
+    }
+
+    private static int digits(String str, byte[] bytes, int start, int count) {
+        return bytes != null ? CalendarFields.digits(bytes, start, count) : CalendarFields.digits(str, start, count);
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date (same algorithm as LocalDate.toEpochDay).
+     */
+    private static long toEpochDay(int year, int month, int day) {
+        long y = year;
+        long total = 365 * y;
+        total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!CalendarFields.isLeapYear(year)) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * Offset in seconds applied to a local time, or Integer.MIN_VALUE if the local hour
+     * contains a DST gap or overlap and must be resolved through java.time.
+     */
+    private int offsetSeconds(long localSecond) {
+        if (fixedOffset != null) {
+            return fixedOffset.getTotalSeconds();
+        }
+        long hourKey = Math.floorDiv(localSecond, 3600L) + DAYS_0000_TO_1970 * 24;
+        int slot = (int) (hourKey & (OFFSET_CACHE_SIZE - 1));
+        long entry = offsetCache.get(slot);
+        if (entry != EMPTY_SLOT && (entry >>> 20) == hourKey) {
+            return (int) (entry & 0xFFFFF) - OFFSET_BIAS;
+        }
+
+        long hourStart = Math.floorDiv(localSecond, 3600L) * 3600L;
+        List<ZoneOffset> first = rules.getValidOffsets(LocalDateTime.ofEpochSecond(hourStart, 0, ZoneOffset.UTC));
+        List<ZoneOffset> last = rules.getValidOffsets(LocalDateTime.ofEpochSecond(hourStart + 3599, 0, ZoneOffset.UTC));
+        if (first.size() != 1 || last.size() != 1 || !first.get(0).equals(last.get(0))) {
+            return Integer.MIN_VALUE;
+        }
+        int offset = first.get(0).getTotalSeconds();
+        offsetCache.set(slot, (hourKey << 20) | (offset + OFFSET_BIAS));
+        return offset;
+    }
+
+    /**
+     * Format local epoch nanos in the configured zone exactly like OffsetDateTime.toString().
+     *
+     * @return the ISO8601 string, or null if the offset must be resolved through java.time
+     */
+    private String formatIso8601(long localNanos) {
+        long localSecond = Math.floorDiv(localNanos, NANOS_PER_SECOND);
+        int nanos = (int) Math.floorMod(localNanos, NANOS_PER_SECOND);
+        int offset = offsetSeconds(localSecond);
+        if (offset == Integer.MIN_VALUE) {
+            return null;
+        }
+        String offsetId = offset == 0 ? "Z" : ZoneOffset.ofTotalSeconds(offset).getId();
+
+        long epochDay = Math.floorDiv(localSecond, SECONDS_PER_DAY);
+        int secondOfDay = Math.floorMod(localSecond, SECONDS_PER_DAY);
+
+        // Civil date from epoch day (same algorithm as LocalDate.ofEpochDay)
+        long zeroDay = epochDay + DAYS_0000_TO_1970 - 60;
+        long adjust = 0;
+        if (zeroDay < 0) {
+            long adjustCycles = (zeroDay + 1) / 146097 - 1;
+            adjust = adjustCycles * 400;
+            zeroDay += -adjustCycles * 146097;
+        }
+        long yearEst = (400 * zeroDay + 591) / 146097;
+        long doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+        if (doyEst < 0) {
+            yearEst--;
+            doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+        }
+        yearEst += adjust;
+        int marchDoy0 = (int) doyEst;
+        int marchMonth0 = (marchDoy0 * 5 + 2) / 153;
+        int month = (marchMonth0 + 2) % 12 + 1;
+        int day = marchDoy0 - (marchMonth0 * 306 + 5) / 10 + 1;
+        int year = (int) (yearEst + marchMonth0 / 10);
+
+        int hour = secondOfDay / 3600;
+        int minute = (secondOfDay / 60) % 60;
+        int second = secondOfDay % 60;
+
+        char[] buf = new char[35 + offsetId.length()];
+        int pos = 0;
+        pos = put(buf, pos, year, 4);
+        buf[pos++] = '-';
+        pos = put(buf, pos, month, 2);
+        buf[pos++] = '-';
+        pos = put(buf, pos, day, 2);
+        buf[pos++] = 'T';
+        pos = put(buf, pos, hour, 2);
+        buf[pos++] = ':';
+        pos = put(buf, pos, minute, 2);
+        // LocalTime.toString() omits zero seconds and prints the fraction in groups of three digits
+        if (second > 0 || nanos > 0) {
+            buf[pos++] = ':';
+            pos = put(buf, pos, second, 2);
+            if (nanos > 0) {
+                buf[pos++] = '.';
+                if (nanos % 1_000_000 == 0) {
+                    pos = put(buf, pos, nanos / 1_000_000, 3);
+                } else if (nanos % 1000 == 0) {
+                    pos = put(buf, pos, nanos / 1000, 6);
+                } else {
+                    pos = put(buf, pos, nanos, 9);
+                }
+            }
+        }
+        offsetId.getChars(0, offsetId.length(), buf, pos);
+        pos += offsetId.length();
+        return new String(buf, 0, pos);
+    }
+
+    private static int put(char[] buf, int pos, int value, int width) {
+        for (int i = pos + width - 1; i >= pos; i--) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + width;
+    }
 }
@@ -0,0 +1,364 @@
+package com.example.kafka.connect.iidr.writer;
+
+import com.example.kafka.connect.iidr.IidrCdcSinkConfig;
+import com.example.kafka.connect.iidr.metrics.SinkTaskMetrics;
+import com.example.kafka.connect.iidr.operation.CdcOperation;
+import com.example.kafka.connect.iidr.routing.TableRoutes.Route;
+import com.example.kafka.connect.iidr.writer.JdbcWriter.ProcessedRecord;
+import org.apache.kafka.common.TopicPartition;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Merges the change-log tables of write.mode=changelog routes into their tables in the
+ * background, on a connection of its own.
+ *
+ * Every changelog.compact.interval.ms, the log rows of each assigned partition are read in
+ * offset order, changelog.compact.batch.size at a time. Only the last change of each key is
+ * written to the table, through the regular batched upsert and delete paths, and the rows
+ * read are deleted from the log in the same transaction. A key's changes all come from one
+ * partition, and each task only merges the partitions assigned to it, so the changes of a
+ * key are merged in order by one compactor at a time. {@link #revoke(Collection)} waits for
+ * a running round, before the partitions move to another task.
+ *
+ * Rows appended after a round read its partition have higher offsets and are kept for the
+ * next round. A failed transaction is rolled back, and only its (table, partition) is backed
+ * off: it is retried after 1, 2, 4 ... up to {@value #MAX_BACKOFF_ROUNDS} intervals, while the
+ * other tables and partitions are still merged. A lost connection ends the round.
+ */
+public class ChangeLogCompactor implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(ChangeLogCompactor.class.getName());
+
+    public static final String COMPACTED = "changelog-compacted";
+    public static final String APPLIED = "changelog-applied";
+    public static final String FAILURES = "changelog-compaction-failures";
+
+    private static final int FETCH_SIZE = 10000;
+    private static final int MAX_BACKOFF_ROUNDS = 64;
+    private static final int VALID_TIMEOUT_SECONDS = 5;
+    private static final Set<String> LOG_COLUMNS = new HashSet<>(Arrays.asList(
+            JdbcWriter.CDC_OP, JdbcWriter.CDC_TIMESTAMP, JdbcWriter.CDC_TOPIC,
+            JdbcWriter.CDC_PARTITION, JdbcWriter.CDC_OFFSET));
+
+    /**
+     * Opens connections to the target database.
+     */
+    public interface ConnectionSource {
+        Connection open() throws SQLException;
+    }
+
+    private final ConnectionSource connectionSource;
+    private final IidrCdcSinkConfig config;
+    private final TableMetadataCache metadataCache;
+    private final SinkTaskMetrics metrics;
+    private final int batchSize;
+    private final long intervalMs;
+    private final Map<String, Route> tables = new ConcurrentHashMap<>();
+    private final Set<TopicPartition> partitions = new HashSet<>();
+    // Failed (table, partition) pairs, by partition and table
+    private final Map<TopicPartition, Map<String, Backoff>> backoffs = new HashMap<>();
+    private final ScheduledExecutorService executor;
+    private Connection connection;
+    private JdbcWriter writer;
+
+    public ChangeLogCompactor(ConnectionSource connectionSource, IidrCdcSinkConfig config,
+                              TableMetadataCache metadataCache, SinkTaskMetrics metrics) {
+        this.connectionSource = connectionSource;
+        this.config = config;
+        this.metadataCache = metadataCache;
+        this.metrics = metrics;
+        this.batchSize = config.getChangeLogCompactBatchSize();
+        this.intervalMs = config.getChangeLogCompactIntervalMs();
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "iidr-changelog-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::compact, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Merge the change log of a table from now on.
+     */
+    public void register(String tableName, Route route) {
+        if (tables.putIfAbsent(tableName, route) == null) {
+            log.info("Compacting change log of " + tableName + " every " + intervalMs + " ms");
+        }
+    }
+
+    public synchronized void assign(Collection<TopicPartition> assigned) {
+        partitions.addAll(assigned);
+    }
+
+    /**
+     * Stop merging the rows of partitions, after the round in progress.
+     */
+    public synchronized void revoke(Collection<TopicPartition> revoked) {
+        partitions.removeAll(revoked);
+        backoffs.keySet().removeAll(revoked);
+    }
+
+    /**
+     * Merge the change logs of the assigned partitions, each until it is empty or the
+     * interval has passed. Pairs that failed recently are skipped until their backoff ends.
+     */
+    synchronized void compact() {
+        long now = System.currentTimeMillis();
+        long deadline = now + intervalMs;
+        for (Map.Entry<String, Route> table : tables.entrySet()) {
+            for (TopicPartition partition : partitions) {
+                Map<String, Backoff> failed = backoffs.get(partition);
+                Backoff backoff = failed != null ? failed.get(table.getKey()) : null;
+                if (backoff != null && now < backoff.retryAtMs) {
+                    continue;
+                }
+                try {
+                    // Keep merging a partition that is behind
+                    int merged;
+                    do {
+                        merged = compact(table.getKey(), table.getValue(), partition);
+                    } while (merged == batchSize && System.currentTimeMillis() < deadline);
+                    if (backoff != null) {
+                        failed.remove(table.getKey());
+                        log.info("Change-log compaction of " + table.getKey() + " " + partition + " recovered");
+                    }
+                } catch (SQLException | RuntimeException e) {
+                    metrics.increment(FAILURES);
+                    if (!rollback()) {
+                        log.log(Level.WARNING, "Change-log compaction lost its connection, retrying in " +
+                                intervalMs + " ms", e);
+                        closeConnection(false);
+                        return;
+                    }
+                    backOff(table.getKey(), partition, backoff, now, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Skip a failing (table, partition) for twice as many rounds as last time, so one bad
+     * row does not fail every round, while it is still retried after it is fixed.
+     */
+    private void backOff(String tableName, TopicPartition partition, Backoff previous, long now, Exception e) {
+        int failures = previous != null ? previous.failures + 1 : 1;
+        int rounds = Math.min(1 << Math.min(failures - 1, 30), MAX_BACKOFF_ROUNDS);
+        backoffs.computeIfAbsent(partition, p -> new HashMap<>())
+                .put(tableName, new Backoff(failures, now + rounds * intervalMs));
+        Level level = rounds == MAX_BACKOFF_ROUNDS ? Level.SEVERE : Level.WARNING;
+        log.log(level, "Change-log compaction of " + tableName + " " + partition + " failed " + failures +
+                " time(s), retrying in " + rounds * intervalMs + " ms", e);
+    }
+
+    /**
+     * Roll back a failed transaction.
+     *
+     * @return false if the connection is gone
+     */
+    private boolean rollback() {
+        if (connection == null) {
+            return false;
+        }
+        try {
+            connection.rollback();
+            return connection.isValid(VALID_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Merge up to changelog.compact.batch.size log rows of a partition in one transaction.
+     *
+     * @return the number of log rows merged
+     */
+    private int compact(String tableName, Route route, TopicPartition partition) throws SQLException {
+        ensureConnected();
+        String logTable = writer.getChangeLogTable(tableName);
+        if (!exists(logTable)) {
+            return 0;
+        }
+
+        List<ProcessedRecord> changes = new ArrayList<>();
+        List<String> pkColumns = null;
+        long lastOffset = -1;
+        String sql = "SELECT * FROM " + logTable + " WHERE " + JdbcWriter.CDC_TOPIC + " = ? AND " +
+                JdbcWriter.CDC_PARTITION + " = ? ORDER BY " + JdbcWriter.CDC_OFFSET;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, partition.topic());
+            stmt.setInt(2, partition.partition());
+            stmt.setMaxRows(batchSize);
+            stmt.setFetchSize(Math.min(batchSize, FETCH_SIZE));
+            try (ResultSet rs = stmt.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                while (rs.next()) {
+                    ProcessedRecord record = readChange(tableName, rs, meta);
+                    if (pkColumns == null) {
+                        pkColumns = writer.getPrimaryKeyColumns(tableName, record, route);
+                    }
+                    changes.add(record);
+                    lastOffset = Math.max(lastOffset, record.getOffset());
+                }
+            }
+        }
+        if (changes.isEmpty()) {
+            connection.rollback();
+            return 0;
+        }
+
+        List<ProcessedRecord> latest = latestChanges(changes, pkColumns);
+        writer.applyChangeLog(tableName, latest, route);
+        String delete = "DELETE FROM " + logTable + " WHERE " + JdbcWriter.CDC_TOPIC + " = ? AND " +
+                JdbcWriter.CDC_PARTITION + " = ? AND " + JdbcWriter.CDC_OFFSET + " <= ?";
+        try (PreparedStatement stmt = connection.prepareStatement(delete)) {
+            stmt.setString(1, partition.topic());
+            stmt.setInt(2, partition.partition());
+            stmt.setLong(3, lastOffset);
+            stmt.executeUpdate();
+        }
+        connection.commit();
+        metrics.add(COMPACTED, changes.size());
+        metrics.add(APPLIED, latest.size());
+        return changes.size();
+    }
+
+    /**
+     * The last change of each key among changes read in offset order, in the order of the
+     * last changes. Without a key, every change is kept.
+     */
+    static List<ProcessedRecord> latestChanges(List<ProcessedRecord> changes, List<String> pkColumns) {
+        Map<List<Object>, ProcessedRecord> latest = new LinkedHashMap<>();
+        for (ProcessedRecord record : changes) {
+            List<Object> keyValues;
+            if (pkColumns.isEmpty()) {
+                keyValues = Collections.singletonList(record.getOffset());
+            } else {
+                Object[] key = new Object[pkColumns.size()];
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = JdbcWriter.primaryKeyValue(record, pkColumns.get(i));
+                }
+                keyValues = Arrays.asList(key);
+            }
+            latest.remove(keyValues);
+            latest.put(keyValues, record);
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    /**
+     * Whether a change-log table exists. Until it is found, the catalog is asked every round.
+     */
+    private boolean exists(String logTable) throws SQLException {
+        if (metadataCache.isKnownTable(logTable)) {
+            return true;
+        }
+        String normalizedTableName = metadataCache.getDialect().normalizeIdentifierForMetadata(logTable);
+        try (ResultSet rs = connection.getMetaData().getTables(null, null, normalizedTableName,
+                new String[]{"TABLE"})) {
+            if (!rs.next()) {
+                return false;
+            }
+        }
+        metadataCache.markKnownTable(logTable);
+        return true;
+    }
+
+    /**
+     * A log row as a change of the table. The row image is looked up case-insensitively,
+     * as drivers may report column labels in another case than the record fields.
+     */
+    private static ProcessedRecord readChange(String tableName, ResultSet rs, ResultSetMetaData meta)
+            throws SQLException {
+        Map<String, Object> row = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            String column = meta.getColumnLabel(i);
+            if (!LOG_COLUMNS.contains(column.toUpperCase())) {
+                row.put(column, rs.getObject(i));
+            }
+        }
+        CdcOperation operation = CdcOperation.DELETE.name().equals(rs.getString(JdbcWriter.CDC_OP))
+                ? CdcOperation.DELETE : CdcOperation.UPSERT;
+        return new ProcessedRecord(tableName, operation, null, row, null, null,
+                rs.getString(JdbcWriter.CDC_TIMESTAMP), rs.getString(JdbcWriter.CDC_TOPIC),
+                rs.getInt(JdbcWriter.CDC_PARTITION), rs.getLong(JdbcWriter.CDC_OFFSET));
+    }
+
+    private void ensureConnected() throws SQLException {
+        if (connection == null) {
+            connection = connectionSource.open();
+            writer = new JdbcWriter(connection, config, metadataCache, metrics);
+        }
+    }
+
+    private void closeConnection(boolean rollback) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            if (rollback) {
+                connection.rollback();
+            }
+            writer.close();
+        } catch (SQLException e) {
+            log.fine("Error discarding compactor connection: " + e.getMessage());
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.fine("Error closing compactor connection: " + e.getMessage());
+        }
+        connection = null;
+        writer = null;
+    }
+
+    private static class Backoff {
+        final int failures;
+        final long retryAtMs;
+
+        Backoff(int failures, long retryAtMs) {
+            this.failures = failures;
+            this.retryAtMs = retryAtMs;
+        }
+    }
+
+    /**
+     * Stop compacting, after the round in progress.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(intervalMs * 2, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closeConnection(false);
+        }
+    }
+}
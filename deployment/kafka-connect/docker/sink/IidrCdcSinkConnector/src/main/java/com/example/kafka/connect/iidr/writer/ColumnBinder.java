@@ -0,0 +1,69 @@
+package com.example.kafka.connect.iidr.writer;
+
+import com.example.kafka.connect.iidr.converter.RowLayout;
+import com.example.kafka.connect.iidr.metrics.SinkTaskMetrics;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parameter layout of a prepared statement.
+ *
+ * Holds the bound column names in parameter order together with a {@link ValueConverter}
+ * per column, resolved once from the table's column metadata so that binding a row does
+ * not repeat the per-column metadata lookup or type dispatch. For {@link RowLayout} rows the
+ * field position of each parameter is resolved once per layout.
+ */
+class ColumnBinder {
+
+    private final List<String> columns;
+    private final ValueConverter[] converters;
+    private RowLayout slotLayout;
+    private int[] slots;
+
+    ColumnBinder(List<String> columns, Map<String, Integer> columnTypes, int lobStreamThreshold,
+                 SinkTaskMetrics metrics) {
+        this.columns = columns;
+        this.converters = new ValueConverter[columns.size()];
+        for (int i = 0; i < converters.length; i++) {
+            Integer sqlType = columnTypes.get(columns.get(i).toUpperCase());
+            converters[i] = ValueConverter.forSqlType(sqlType, lobStreamThreshold, metrics);
+        }
+    }
+
+    List<String> getColumns() {
+        return columns;
+    }
+
+    int size() {
+        return converters.length;
+    }
+
+    String getColumn(int i) {
+        return columns.get(i);
+    }
+
+    /**
+     * Field position in the given layout of each parameter (-1 if the layout lacks the column).
+     */
+    int[] slotsFor(RowLayout layout) {
+        if (layout != slotLayout) {
+            int[] resolved = new int[columns.size()];
+            for (int i = 0; i < resolved.length; i++) {
+                resolved[i] = layout.indexOf(columns.get(i));
+            }
+            slots = resolved;
+            slotLayout = layout;
+        }
+        return slots;
+    }
+
+    /**
+     * Bind a value to the i-th parameter (0-based) using the column's converter.
+     */
+    void bind(PreparedStatement ps, int i, Object value) throws SQLException {
+        converters[i].bind(ps, i + 1, value);
+    }
+}
@@ -32,6 +32,7 @@ public class CorruptEventWriter implements AutoCloseable {
 
     private final Connection connection;
     private final String tableName;
+    private final int lobStreamThreshold;
     private PreparedStatement insertStatement;
 
     private static final String INSERT_SQL =
@@ -59,8 +60,17 @@ public class CorruptEventWriter implements AutoCloseable {
 
     public CorruptEventWriter(Connection connection, String tableName, boolean autoCreate)
             throws SQLException {
+        this(connection, tableName, autoCreate, 0);
+    }
+
+    /**
+     * @param lobStreamThreshold length at which record_value is bound as a character stream (0 = never)
+     */
+    public CorruptEventWriter(Connection connection, String tableName, boolean autoCreate,
+                              int lobStreamThreshold) throws SQLException {
         this.connection = connection;
         this.tableName = tableName;
+        this.lobStreamThreshold = lobStreamThreshold;
 
         if (autoCreate) {
             ensureTableExists();
@@ -96,7 +106,10 @@ public class CorruptEventWriter implements AutoCloseable {
                 insertStatement.setInt(2, record.kafkaPartition());
                 insertStatement.setLong(3, record.kafkaOffset());
                 insertStatement.setString(4, serializeToJson(record.key()));
-                insertStatement.setString(5, serializeToJson(record.value()));
+                String value = serializeToJson(record.value());
+                if (!LobBinding.bindIfLarge(insertStatement, 5, value, Types.LONGVARCHAR, lobStreamThreshold)) {
+                    insertStatement.setString(5, value);
+                }
                 insertStatement.setString(6, serializeHeaders(record));
                 insertStatement.setString(7, truncate(corrupt.getReason(), 1000));
                 insertStatement.setString(8, HeaderExtractor.extractTableName(record));
@@ -1,14 +1,27 @@
 package com.example.kafka.connect.iidr.writer;
 
 import com.example.kafka.connect.iidr.IidrCdcSinkConfig;
+import com.example.kafka.connect.iidr.converter.RowValue;
 import com.example.kafka.connect.iidr.dialect.Dialect;
+import com.example.kafka.connect.iidr.metrics.SinkTaskMetrics;
 import com.example.kafka.connect.iidr.operation.CdcOperation;
+import com.example.kafka.connect.iidr.routing.TableRoutes.Route;
+import com.example.kafka.connect.iidr.routing.TableRoutes.WriteMode;
+import com.example.kafka.connect.iidr.util.TimestampConverter;
 import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.connect.data.Struct;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 /**
@@ -18,56 +31,246 @@ public class JdbcWriter implements AutoCloseable {
 
     private static final Logger log = Logger.getLogger(JdbcWriter.class.getName());
 
+    public static final String DEADLOCKS = "deadlocks";
+    public static final String LOCK_WAIT_TIMEOUTS = "lock-wait-timeouts";
+    public static final String UNCHANGED_ROWS_SKIPPED = "unchanged-rows-skipped";
+    public static final String KEY_FILTER_INSERTS = "key-filter-inserts";
+    public static final String KEY_FILTER_UPSERTS = "key-filter-upserts";
+    public static final String KEY_FILTER_FALLBACKS = "key-filter-fallbacks";
+    public static final String KEY_FILTER_FPP_PPM = "key-filter-fpp-ppm.";
+    public static final String STATEMENTS_EVICTED = "statements-evicted";
+    public static final String STALE_WRITES_SKIPPED = "stale-writes-skipped";
+    public static final String CHANGELOG_APPENDED = "changelog-appended";
+
+    // Columns of a change-log table in front of the row image
+    public static final String CDC_OP = "CDC_OP";
+    public static final String CDC_TIMESTAMP = "CDC_TIMESTAMP";
+    public static final String CDC_TOPIC = "CDC_TOPIC";
+    public static final String CDC_PARTITION = "CDC_PARTITION";
+    public static final String CDC_OFFSET = "CDC_OFFSET";
+
     private final Connection connection;
     private final IidrCdcSinkConfig config;
     private final Dialect dialect;
-    private final Map<String, PreparedStatement> statementCache;
-    private final Map<String, Map<String, Integer>> columnTypeCache;
+    private final Map<StatementKey, CachedStatement> statementCache;
+    private final int maxStatements;
+    private final TableMetadataCache metadataCache;
+    private final int lobStreamThreshold;
+    private final SinkTaskMetrics metrics;
+    private final boolean sortByPk;
+    private final Set<String> rowCacheTables;
+    // Column holding the source change time (A_TIMSTAMP) of each row, or null
+    private final String lwwColumn;
+    private final String changeLogSuffix;
+    private RowImageCache rowImageCache;
+    private KeyFilters keyFilters;
+    private long metadataVersion;
 
     public JdbcWriter(Connection connection, IidrCdcSinkConfig config, Dialect dialect) {
+        this(connection, config, new TableMetadataCache(dialect), new SinkTaskMetrics());
+    }
+
+    /**
+     * Create a writer that uses a (possibly shared) metadata cache and its dialect,
+     * reporting to the given task metrics.
+     */
+    public JdbcWriter(Connection connection, IidrCdcSinkConfig config, TableMetadataCache metadataCache,
+                      SinkTaskMetrics metrics) {
         this.connection = connection;
+        this.metrics = metrics;
         this.config = config;
-        this.dialect = dialect;
-        this.statementCache = new HashMap<>();
-        this.columnTypeCache = new HashMap<>();
+        this.dialect = metadataCache.getDialect();
+        // Access order, for least recently used eviction
+        this.statementCache = new LinkedHashMap<>(16, 0.75f, true);
+        this.maxStatements = config.getStatementCacheSize();
+        this.metadataCache = metadataCache;
+        this.lobStreamThreshold = config.getLobStreamThreshold();
+        this.sortByPk = config.isWriteSortByPk();
+        this.rowCacheTables = config.getRowCacheTables();
+        this.lwwColumn = config.isLwwEnabled() ? config.getLwwTimestampColumn() : null;
+        this.changeLogSuffix = config.getChangeLogTableSuffix();
+        this.metadataVersion = metadataCache.getVersion();
+    }
+
+    /**
+     * Skip rows whose image matches the last committed image of their key, for the tables
+     * of row.cache.tables (all if empty).
+     */
+    public void setRowImageCache(RowImageCache rowImageCache) {
+        this.rowImageCache = rowImageCache;
+    }
+
+    /**
+     * Write upserts of keys unknown to the key filter of their table as plain INSERTs.
+     */
+    public void setKeyFilters(KeyFilters keyFilters) {
+        this.keyFilters = keyFilters;
+    }
+
+    /**
+     * Fill the metadata cache for all tables of a schema before the first write.
+     *
+     * @param schema schema to load, or null/empty for the connection's current schema
+     */
+    public void preloadMetadata(String schema) throws SQLException {
+        long start = System.currentTimeMillis();
+        int tables = metadataCache.preload(connection, schema);
+        log.info("Preloaded metadata of " + tables + " tables in " +
+                (System.currentTimeMillis() - start) + " ms");
     }
 
     /**
      * Write a batch of processed records to the target table.
      */
     public void write(String tableName, List<ProcessedRecord> records) throws SQLException {
+        write(tableName, records, null);
+    }
+
+    /**
+     * Write a batch of processed records to the target table using the table's fan-out
+     * route settings (primary key and write mode), if any. Records of change-log routes
+     * are appended to the table's change-log table instead.
+     */
+    public void write(String tableName, List<ProcessedRecord> records, Route route) throws SQLException {
+        write(tableName, records, route, route != null && route.getWriteMode() == WriteMode.CHANGELOG);
+    }
+
+    /**
+     * Write changes merged from a change-log table to the table itself.
+     */
+    public void applyChangeLog(String tableName, List<ProcessedRecord> records, Route route) throws SQLException {
+        write(tableName, records, route, false);
+    }
+
+    /**
+     * Change-log table of a table routed with write.mode=changelog.
+     */
+    public String getChangeLogTable(String tableName) {
+        return tableName + changeLogSuffix;
+    }
+
+    private void write(String tableName, List<ProcessedRecord> records, Route route, boolean changeLog)
+            throws SQLException {
         if (records.isEmpty()) {
             return;
         }
 
         log.fine("Writing " + records.size() + " records to table " + tableName);
 
-        // Ensure table exists if auto.create is enabled
-        if (config.isAutoCreate()) {
-            ensureTableExists(tableName, records.get(0));
+        // Another writer sharing the metadata cache may have altered a table
+        long currentVersion = metadataCache.getVersion();
+        if (currentVersion != metadataVersion) {
+            closeStatements();
+            if (rowImageCache != null) {
+                rowImageCache.clear();
+            }
+            metadataVersion = currentVersion;
         }
 
-        // Evolve table schema if auto.evolve is enabled
-        if (config.isAutoEvolve()) {
-            evolveTable(tableName, records.get(0));
+        if (changeLog) {
+            appendChangeLog(getChangeLogTable(tableName), records);
+            return;
+        }
+
+        prepareTable(tableName, records, route);
+
+        List<String> pkColumns = getPrimaryKeyColumns(tableName, records.get(0), route);
+        boolean insertOnly = route != null && route.getWriteMode() == WriteMode.INSERT;
+        boolean lww = lwwColumn != null && !insertOnly && !pkColumns.isEmpty();
+        if (lww) {
+            records = dropStale(records, pkColumns);
         }
 
+        // Append-only tables keep every change, even an unchanged one. With last-writer-wins,
+        // an unchanged row still carries a newer change time
+        if (rowImageCache != null && !insertOnly && !lww && !pkColumns.isEmpty()
+                && (rowCacheTables.isEmpty() || rowCacheTables.contains(tableName))) {
+            records = skipUnchanged(tableName, records, pkColumns);
+        }
+
+        List<Integer> keyTypes = null;
+        KeyFilters.Filter keyFilter = null;
+        if (keyFilters != null && !insertOnly && !pkColumns.isEmpty()) {
+            keyTypes = keyTypes(tableName, pkColumns);
+            keyFilter = keyFilter(tableName, pkColumns, keyTypes);
+        }
+
+        // Operations run grouped by type, deletes last: where a key has changes of different
+        // types, e.g. a delete and a re-insert, the batch is split so they apply in order
+        List<List<ProcessedRecord>> segments = insertOnly || pkColumns.isEmpty()
+                ? Collections.singletonList(records) : keyOrderSegments(records, pkColumns);
+        for (List<ProcessedRecord> segment : segments) {
+            writeOperations(tableName, segment, pkColumns, insertOnly, lww, keyFilter, keyTypes);
+        }
+    }
+
+    /**
+     * Split records into runs in which no key has changes of different operations, so that
+     * applying each run grouped by operation keeps the order of each key's changes.
+     */
+    static List<List<ProcessedRecord>> keyOrderSegments(List<ProcessedRecord> records, List<String> pkColumns) {
+        CdcOperation first = records.get(0).getOperation();
+        boolean mixed = false;
+        for (ProcessedRecord record : records) {
+            if (record.getOperation() != first) {
+                mixed = true;
+                break;
+            }
+        }
+        if (!mixed) {
+            return Collections.singletonList(records);
+        }
+        List<List<ProcessedRecord>> segments = new ArrayList<>();
+        Map<List<Object>, CdcOperation> operations = new HashMap<>();
+        int start = 0;
+        for (int i = 0; i < records.size(); i++) {
+            ProcessedRecord record = records.get(i);
+            Object[] key = new Object[pkColumns.size()];
+            for (int k = 0; k < key.length; k++) {
+                key[k] = primaryKeyValue(record, pkColumns.get(k));
+            }
+            List<Object> keyValues = Arrays.asList(key);
+            CdcOperation previous = operations.putIfAbsent(keyValues, record.getOperation());
+            if (previous != null && previous != record.getOperation()) {
+                segments.add(records.subList(start, i));
+                start = i;
+                operations.clear();
+                operations.put(keyValues, record.getOperation());
+            }
+        }
+        segments.add(records.subList(start, records.size()));
+        return segments;
+    }
+
+    private void writeOperations(String tableName, List<ProcessedRecord> records, List<String> pkColumns,
+                                 boolean insertOnly, boolean lww, KeyFilters.Filter keyFilter,
+                                 List<Integer> keyTypes) throws SQLException {
         // Group by operation type
         List<ProcessedRecord> inserts = new ArrayList<>();
         List<ProcessedRecord> updates = new ArrayList<>();
         List<ProcessedRecord> upserts = new ArrayList<>();
         List<ProcessedRecord> deletes = new ArrayList<>();
+        // Upserts of keys the table has never seen
+        List<ProcessedRecord> newKeys = new ArrayList<>();
 
         for (ProcessedRecord record : records) {
             switch (record.getOperation()) {
                 case INSERT:
                     inserts.add(record);
+                    learnKey(keyFilter, record, pkColumns, keyTypes);
                     break;
                 case UPDATE:
                     updates.add(record);
+                    learnKey(keyFilter, record, pkColumns, keyTypes);
                     break;
                 case UPSERT:
-                    upserts.add(record);
+                    if (insertOnly) {
+                        inserts.add(record);
+                    } else if (learnKey(keyFilter, record, pkColumns, keyTypes)) {
+                        newKeys.add(record);
+                    } else {
+                        upserts.add(record);
+                    }
                     break;
                 case DELETE:
                     deletes.add(record);
@@ -77,194 +280,983 @@ public class JdbcWriter implements AutoCloseable {
 
         // Process each operation type
         if (!inserts.isEmpty()) {
-            executeInserts(tableName, inserts);
+            executeInserts(tableName, inserts, pkColumns, lww);
+        }
+        if (keyFilter != null) {
+            metrics.add(KEY_FILTER_INSERTS, newKeys.size());
+            metrics.add(KEY_FILTER_UPSERTS, upserts.size());
+        }
+        if (!newKeys.isEmpty()) {
+            executeNewKeyInserts(tableName, newKeys, pkColumns, lww);
         }
         if (!updates.isEmpty()) {
-            executeUpdates(tableName, updates);
+            executeUpdates(tableName, updates, pkColumns, lww);
         }
         if (!upserts.isEmpty()) {
-            executeUpserts(tableName, upserts);
+            executeUpserts(tableName, upserts, pkColumns, lww);
         }
         if (!deletes.isEmpty()) {
-            executeDeletes(tableName, deletes);
+            executeDeletes(tableName, deletes, pkColumns, lww);
         }
     }
 
-    private void executeInserts(String tableName, List<ProcessedRecord> records)
-            throws SQLException {
-        ProcessedRecord sample = records.get(0);
-        List<String> columns = extractColumnNames(sample);
+    /**
+     * Run the auto.create / auto.evolve DDL for a table, if enabled. The table is created
+     * from the first record and evolved with the fields of every record.
+     */
+    public void prepareTable(String tableName, List<ProcessedRecord> records, Route route) throws SQLException {
+        // Ensure table exists if auto.create is enabled
+        if (config.isAutoCreate()) {
+            ensureTableExists(tableName, records.get(0), route);
+        }
+
+        // Evolve table schema if auto.evolve is enabled. The cached columns are checked first,
+        // to keep catalog queries off the write path
+        if (config.isAutoEvolve()) {
+            for (ProcessedRecord sample : columnSamples(records)) {
+                if (!hasColumns(tableName, sample)) {
+                    evolveTable(tableName, sample);
+                }
+            }
+        }
+
+        if (lwwColumn != null && (config.isAutoCreate() || config.isAutoEvolve())
+                && (route == null || route.getWriteMode() != WriteMode.INSERT)) {
+            ensureChangeTimeColumn(tableName);
+        }
+    }
+
+    /**
+     * Add the last-writer-wins column to a table that lacks it.
+     */
+    private void ensureChangeTimeColumn(String tableName) throws SQLException {
         Map<String, Integer> columnTypes = getColumnTypes(tableName);
+        if (columnTypes.isEmpty() || columnTypes.containsKey(lwwColumn.toUpperCase())) {
+            return;
+        }
+        String ddl = "ALTER TABLE " + tableName + " ADD " + lwwColumn + " " + dialect.getTimestampColumnType();
+        log.info("Adding change time column with DDL: " + ddl);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(ddl);
+        }
+        metadataCache.invalidate(tableName);
+        invalidateStatements(tableName);
+        if (rowImageCache != null) {
+            rowImageCache.clear();
+        }
+    }
 
-        String sql = dialect.buildInsertSql(tableName, columns);
-        log.fine("INSERT SQL: " + sql);
+    /**
+     * Append the changes to a change-log table as plain INSERTs: the operation, change time
+     * and Kafka position, then the key and row image.
+     */
+    private void appendChangeLog(String logTable, List<ProcessedRecord> records) throws SQLException {
+        List<ProcessedRecord> entries = new ArrayList<>(records.size());
+        for (ProcessedRecord record : records) {
+            entries.add(new ProcessedRecord(logTable, CdcOperation.INSERT, null, changeLogRow(record), null, null,
+                    record.getIsoTimestamp(), record.getTopic(), record.getPartition(), record.getOffset()));
+        }
+        prepareChangeLog(logTable, records);
+        executeInserts(logTable, entries, Collections.emptyList(), false);
+        metrics.add(CHANGELOG_APPENDED, entries.size());
+    }
+
+    private static Map<String, Object> changeLogRow(ProcessedRecord record) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put(CDC_OP, record.getOperation().name());
+        row.put(CDC_TIMESTAMP, record.getIsoTimestamp());
+        row.put(CDC_TOPIC, record.getTopic());
+        row.put(CDC_PARTITION, record.getPartition());
+        row.put(CDC_OFFSET, record.getOffset());
+        copyFields(record.getKey(), row);
+        copyFields(record.getValue(), row);
+        return row;
+    }
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            for (ProcessedRecord record : records) {
-                setParameters(ps, record, columns, columnTypes);
-                ps.addBatch();
+    /**
+     * Run the auto.create / auto.evolve DDL of a change-log table, if needed.
+     */
+    private void prepareChangeLog(String logTable, List<ProcessedRecord> records) throws SQLException {
+        if (config.isAutoCreate() && !metadataCache.isKnownTable(logTable)) {
+            ensureChangeLogTable(logTable, changeLogSample(logTable, records));
+        }
+        // Check the cached columns first, to keep catalog queries off the append path
+        if (config.isAutoEvolve()) {
+            for (ProcessedRecord record : columnSamples(records)) {
+                ProcessedRecord sample = changeLogEntry(logTable, record);
+                if (!hasColumns(logTable, sample)) {
+                    evolveTable(logTable, sample);
+                }
             }
-            ps.executeBatch();
         }
     }
 
-    private void executeUpdates(String tableName, List<ProcessedRecord> records)
-            throws SQLException {
+    /**
+     * Change-log row to create the log table from: of a change with a row image, if any.
+     */
+    private static ProcessedRecord changeLogSample(String logTable, List<ProcessedRecord> records) {
         ProcessedRecord sample = records.get(0);
-        List<String> columns = extractColumnNames(sample);
-        List<String> pkColumns = config.getPkFields();
+        for (ProcessedRecord record : records) {
+            if (record.getValue() != null) {
+                sample = record;
+                break;
+            }
+        }
+        return changeLogEntry(logTable, sample);
+    }
 
-        if (pkColumns.isEmpty()) {
-            log.warning("No primary key fields configured, falling back to upsert for UPDATE operations");
-            executeUpserts(tableName, records);
-            return;
+    private static ProcessedRecord changeLogEntry(String logTable, ProcessedRecord record) {
+        return new ProcessedRecord(logTable, CdcOperation.INSERT, null, changeLogRow(record), null,
+                changeLogSchema(record), null);
+    }
+
+    /**
+     * One record per distinct column set of a batch, to run auto.evolve with, since later
+     * records may carry fields the first one lacks. Row layouts and schemas are compared by
+     * identity first, so a batch of one shape lists its columns once.
+     */
+    private List<ProcessedRecord> columnSamples(List<ProcessedRecord> records) {
+        Map<Object, Boolean> shapes = new IdentityHashMap<>();
+        Set<List<String>> signatures = new HashSet<>();
+        List<ProcessedRecord> samples = new ArrayList<>();
+        for (ProcessedRecord record : records) {
+            Object value = record.getValue();
+            Object shape = value instanceof RowValue ? ((RowValue) value).getLayout()
+                    : value instanceof Struct ? ((Struct) value).schema() : null;
+            if (shape != null && shapes.put(shape, Boolean.TRUE) != null) {
+                continue;
+            }
+            if (signatures.add(extractColumnNames(record))) {
+                samples.add(record);
+            }
         }
+        return samples;
+    }
 
+    /**
+     * Whether writing the records would run auto.create / auto.evolve DDL. DDL commits the
+     * open transaction on some databases (MySQL, MariaDB, Oracle), so callers run it with
+     * {@link #prepare} before writing anything.
+     */
+    public boolean needsDdl(String tableName, List<ProcessedRecord> records, Route route) throws SQLException {
+        if (!config.isAutoCreate() && !config.isAutoEvolve()) {
+            return false;
+        }
+        if (route != null && route.getWriteMode() == WriteMode.CHANGELOG) {
+            String logTable = getChangeLogTable(tableName);
+            if (config.isAutoCreate() && !metadataCache.isKnownTable(logTable)) {
+                return true;
+            }
+            if (config.isAutoEvolve()) {
+                for (ProcessedRecord record : columnSamples(records)) {
+                    if (!hasColumns(logTable, changeLogEntry(logTable, record))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        if (config.isAutoCreate() && !metadataCache.isKnownTable(tableName)) {
+            return true;
+        }
+        if (config.isAutoEvolve()) {
+            for (ProcessedRecord sample : columnSamples(records)) {
+                if (!hasColumns(tableName, sample)) {
+                    return true;
+                }
+            }
+        }
+        return lwwColumn != null && (route == null || route.getWriteMode() != WriteMode.INSERT)
+                && !getColumnTypes(tableName).containsKey(lwwColumn.toUpperCase());
+    }
+
+    /**
+     * Run the auto.create / auto.evolve DDL needed to write the records, without writing them.
+     */
+    public void prepare(String tableName, List<ProcessedRecord> records, Route route) throws SQLException {
+        if (route != null && route.getWriteMode() == WriteMode.CHANGELOG) {
+            prepareChangeLog(getChangeLogTable(tableName), records);
+        } else {
+            prepareTable(tableName, records, route);
+        }
+    }
+
+    private boolean hasColumns(String tableName, ProcessedRecord sample) throws SQLException {
         Map<String, Integer> columnTypes = getColumnTypes(tableName);
-        String sql = dialect.buildUpsertSql(tableName, columns, pkColumns);
-        log.fine("UPDATE SQL: " + sql);
+        for (String column : extractColumnNames(sample)) {
+            if (!columnTypes.containsKey(column.toUpperCase())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Schema of a change-log row: the change-log columns, then the key and value fields of a
+     * record with Struct schemas. Other columns are typed from their values.
+     */
+    private static Schema changeLogSchema(ProcessedRecord record) {
+        SchemaBuilder builder = SchemaBuilder.struct()
+                .field(CDC_OP, Schema.STRING_SCHEMA)
+                .field(CDC_TIMESTAMP, Schema.OPTIONAL_STRING_SCHEMA)
+                .field(CDC_TOPIC, Schema.STRING_SCHEMA)
+                .field(CDC_PARTITION, Schema.INT32_SCHEMA)
+                .field(CDC_OFFSET, Schema.INT64_SCHEMA);
+        Set<String> names = new HashSet<>(Arrays.asList(CDC_OP, CDC_TIMESTAMP, CDC_TOPIC, CDC_PARTITION, CDC_OFFSET));
+        for (Schema schema : new Schema[]{record.getKeySchema(), record.getValueSchema()}) {
+            if (schema != null && schema.type() == Schema.Type.STRUCT) {
+                for (Field field : schema.fields()) {
+                    if (names.add(field.name())) {
+                        builder.field(field.name(), field.schema());
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            for (ProcessedRecord record : records) {
-                setUpdateParameters(ps, record, columns, pkColumns, columnTypes);
-                ps.addBatch();
+    private static void copyFields(Object container, Map<String, Object> row) {
+        if (container instanceof Struct) {
+            Struct struct = (Struct) container;
+            for (Field field : struct.schema().fields()) {
+                row.put(field.name(), struct.get(field));
+            }
+        } else if (container instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) container).entrySet()) {
+                row.put(String.valueOf(entry.getKey()), entry.getValue());
             }
-            ps.executeBatch();
         }
     }
 
-    private void executeUpserts(String tableName, List<ProcessedRecord> records)
+    /**
+     * Create a change-log table without a primary key, indexed by Kafka position for the
+     * compactor.
+     */
+    private void ensureChangeLogTable(String logTable, ProcessedRecord sample) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        String normalizedTableName = dialect.normalizeIdentifierForMetadata(logTable);
+        try (ResultSet rs = meta.getTables(null, null, normalizedTableName, new String[]{"TABLE"})) {
+            if (!rs.next()) {
+                String indexName = logTable.substring(logTable.lastIndexOf('.') + 1) + "_pos";
+                List<String> ddl = Arrays.asList(
+                        dialect.buildCreateTableSql(logTable, sample),
+                        "CREATE INDEX " + indexName + " ON " + logTable +
+                                " (" + CDC_TOPIC + ", " + CDC_PARTITION + ", " + CDC_OFFSET + ")");
+                log.info("Creating change-log table with DDL: " + ddl);
+                try (Statement stmt = connection.createStatement()) {
+                    for (String sql : ddl) {
+                        stmt.execute(sql);
+                    }
+                }
+                metadataCache.invalidate(logTable);
+                invalidateStatements(logTable);
+            }
+        }
+        metadataCache.markKnownTable(logTable);
+    }
+
+    /**
+     * Primary key columns used to write a table: the route's pk.fields, the configured
+     * pk.fields or the discovered key.
+     */
+    public List<String> getPrimaryKeyColumns(String tableName, ProcessedRecord sample, Route route)
             throws SQLException {
-        ProcessedRecord sample = records.get(0);
-        List<String> columns = extractColumnNames(sample);
-        List<String> pkColumns = config.getPkFields();
+        return route != null && !route.getPkFields().isEmpty()
+                ? route.getPkFields()
+                : resolvePrimaryKey(tableName, sample);
+    }
+
+    /**
+     * Commit the writer's connection.
+     */
+    public void commit() throws SQLException {
+        connection.commit();
+    }
+
+    /**
+     * Roll back the writer's connection.
+     */
+    public void rollback() throws SQLException {
+        connection.rollback();
+    }
+
+    /**
+     * Drop the rows whose image is already committed for their key, in order, staging the
+     * images of the rows that are written.
+     */
+    private List<ProcessedRecord> skipUnchanged(String tableName, List<ProcessedRecord> records,
+                                                List<String> pkColumns) {
+        List<ProcessedRecord> changed = new ArrayList<>(records.size());
+        for (ProcessedRecord record : records) {
+            long key = RowImageCache.keyHash(tableName, record, pkColumns);
+            long image = record.getOperation() == CdcOperation.DELETE
+                    ? 0 : RowImageCache.imageHash(record.getValue());
+            if (rowImageCache.admit(key, image)) {
+                changed.add(record);
+            }
+        }
+        if (changed.size() < records.size()) {
+            metrics.add(UNCHANGED_ROWS_SKIPPED, records.size() - changed.size());
+        }
+        return changed;
+    }
+
+    /**
+     * The key filter of a table, or null if the table has none. Its warm-up is started on
+     * first use.
+     */
+    private KeyFilters.Filter keyFilter(String tableName, List<String> pkColumns, List<Integer> keyTypes) {
+        KeyFilters.Filter filter = keyFilters.get(tableName);
+        if (filter != null) {
+            keyFilters.warm(filter, tableName, pkColumns, keyTypes);
+        }
+        return filter;
+    }
+
+    /**
+     * Catalog types of the key columns, null where unknown.
+     */
+    private List<Integer> keyTypes(String tableName, List<String> pkColumns) throws SQLException {
         Map<String, Integer> columnTypes = getColumnTypes(tableName);
+        List<Integer> types = new ArrayList<>(pkColumns.size());
+        for (String column : pkColumns) {
+            types.add(columnTypes.get(column.toUpperCase()));
+        }
+        return types;
+    }
+
+    /**
+     * Add a record's key to the filter, also while it is warming.
+     *
+     * @return true if the key is definitely new to the table
+     */
+    private static boolean learnKey(KeyFilters.Filter filter, ProcessedRecord record, List<String> pkColumns,
+                                    List<Integer> keyTypes) {
+        if (filter == null) {
+            return false;
+        }
+        boolean warm = filter.isWarm();
+        long hash = KeyFilters.keyHash(record, pkColumns, keyTypes);
+        return hash != 0 && filter.add(hash) && warm;
+    }
+
+    /**
+     * Insert rows whose keys the filter has not seen. If one exists after all (written by
+     * another client, or missed by the warm-up), the inserts are undone to a savepoint and
+     * the rows are upserted instead.
+     */
+    private void executeNewKeyInserts(String tableName, List<ProcessedRecord> records,
+                                      List<String> pkColumns, boolean lww) throws SQLException {
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            executeInserts(tableName, records, pkColumns, lww);
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            if (!isDuplicateKey(e)) {
+                throw e;
+            }
+            connection.rollback(savepoint);
+            log.fine("Key filter missed an existing key of " + tableName + ", upserting " +
+                    records.size() + " rows");
+            metrics.add(KEY_FILTER_FALLBACKS, records.size());
+            executeUpserts(tableName, records, pkColumns, lww);
+        }
+    }
+
+    /**
+     * Whether a failure, or an exception chained to it, is a duplicate key violation.
+     */
+    private boolean isDuplicateKey(SQLException e) {
+        for (Throwable t = e; t != null; ) {
+            if (t instanceof SQLException && dialect.isDuplicateKey((SQLException) t)) {
+                return true;
+            }
+            Throwable next = t instanceof SQLException ? ((SQLException) t).getNextException() : null;
+            t = next != null && next != t ? next : t.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * Drop the rows for which the batch holds a newer change of the same key: with
+     * last-writer-wins they would be skipped by the target anyway.
+     */
+    private List<ProcessedRecord> dropStale(List<ProcessedRecord> records, List<String> pkColumns) {
+        if (records.size() < 2) {
+            return records;
+        }
+        long[] times = new long[records.size()];
+        List<List<Object>> keys = new ArrayList<>(records.size());
+        Map<List<Object>, Long> newest = new HashMap<>();
+        for (int i = 0; i < times.length; i++) {
+            ProcessedRecord record = records.get(i);
+            Object[] key = new Object[pkColumns.size()];
+            for (int k = 0; k < key.length; k++) {
+                key[k] = primaryKeyValue(record, pkColumns.get(k));
+            }
+            keys.add(Arrays.asList(key));
+            times[i] = record.getChangeTimeMicros();
+            if (times[i] != ProcessedRecord.NO_CHANGE_TIME) {
+                newest.merge(keys.get(i), times[i], Math::max);
+            }
+        }
+        List<ProcessedRecord> current = new ArrayList<>(records.size());
+        for (int i = 0; i < times.length; i++) {
+            if (times[i] == ProcessedRecord.NO_CHANGE_TIME || times[i] >= newest.get(keys.get(i))) {
+                current.add(records.get(i));
+            }
+        }
+        if (current.size() < records.size()) {
+            metrics.add(STALE_WRITES_SKIPPED, records.size() - current.size());
+        }
+        return current;
+    }
+
+    /**
+     * Count the rows of a conditional upsert batch that the target did not change because it
+     * held a newer version. Drivers that do not report per-row counts are not counted. MySQL
+     * reports found rows unless useAffectedRows=true, and then also reports 0 for a row
+     * rewritten with equal values, so its count is only an estimate.
+     */
+    private void countStaleWrites(int[] counts) {
+        int stale = 0;
+        for (int count : counts) {
+            if (count == 0) {
+                stale++;
+            }
+        }
+        if (stale > 0) {
+            metrics.add(STALE_WRITES_SKIPPED, stale);
+        }
+    }
+
+    /**
+     * Upsert SQL, conditional on the change time for last-writer-wins where the dialect
+     * supports it.
+     */
+    private String upsertSql(String tableName, List<String> columns, List<String> pkColumns, boolean lww) {
+        String sql = lww ? dialect.buildConditionalUpsertSql(tableName, columns, pkColumns, lwwColumn) : null;
+        return sql != null ? sql : dialect.buildUpsertSql(tableName, columns, pkColumns);
+    }
 
-        String sql = dialect.buildUpsertSql(tableName, columns, pkColumns);
-        log.fine("UPSERT SQL: " + sql);
+    /**
+     * Column signature with the last-writer-wins column added.
+     */
+    private List<String> withChangeTime(List<String> columns) {
+        if (columns.contains(lwwColumn)) {
+            return columns;
+        }
+        List<String> stamped = new ArrayList<>(columns.size() + 1);
+        stamped.addAll(columns);
+        stamped.add(lwwColumn);
+        return stamped;
+    }
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            for (ProcessedRecord record : records) {
-                setParameters(ps, record, columns, columnTypes);
-                ps.addBatch();
+    private void executeInserts(String tableName, List<ProcessedRecord> records,
+                                List<String> pkColumns, boolean lww)
+            throws SQLException {
+        for (Map<List<String>, List<ProcessedRecord>> wave : groupByColumns(records)) {
+            for (Map.Entry<List<String>, List<ProcessedRecord>> group : wave.entrySet()) {
+                List<String> columns = lww ? withChangeTime(group.getKey()) : group.getKey();
+                CachedStatement stmt = prepare(CdcOperation.INSERT, tableName, columns, pkColumns,
+                        () -> dialect.buildInsertSql(tableName, columns), columns, lww);
+                for (ProcessedRecord record : lockOrder(group.getValue(), pkColumns)) {
+                    setParameters(stmt, record);
+                    addBatch(stmt);
+                }
+                executeBatch(stmt);
             }
-            ps.executeBatch();
         }
     }
 
-    private void executeDeletes(String tableName, List<ProcessedRecord> records)
+    private void executeUpdates(String tableName, List<ProcessedRecord> records,
+                                List<String> pkColumns, boolean lww)
             throws SQLException {
-        List<String> pkColumns = config.getPkFields();
         if (pkColumns.isEmpty()) {
-            log.warning("No primary key fields configured, cannot execute DELETE operations");
+            log.warning("No primary key known for table " + tableName +
+                    ", falling back to upsert for UPDATE operations");
+            executeUpserts(tableName, records, pkColumns, lww);
+            return;
+        }
+        // The conditional upsert binds its parameters in column order
+        if (lww) {
+            executeUpserts(tableName, records, pkColumns, true);
             return;
         }
 
-        Map<String, Integer> columnTypes = getColumnTypes(tableName);
-        String sql = dialect.buildDeleteSql(tableName, pkColumns);
-        log.fine("DELETE SQL: " + sql);
+        for (Map<List<String>, List<ProcessedRecord>> wave : groupByColumns(records)) {
+            for (Map.Entry<List<String>, List<ProcessedRecord>> group : wave.entrySet()) {
+                List<String> columns = group.getKey();
+
+                // Parameter order: non-PK columns for the SET clause, then PK columns for WHERE
+                List<String> parameterColumns = new ArrayList<>(columns);
+                parameterColumns.removeAll(pkColumns);
+                parameterColumns.addAll(pkColumns);
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            for (ProcessedRecord record : records) {
-                setDeleteParameters(ps, record, pkColumns, columnTypes);
-                ps.addBatch();
+                CachedStatement stmt = prepare(CdcOperation.UPDATE, tableName, columns, pkColumns,
+                        () -> dialect.buildUpsertSql(tableName, columns, pkColumns), parameterColumns, false);
+                int pkStart = parameterColumns.size() - pkColumns.size();
+                for (ProcessedRecord record : lockOrder(group.getValue(), pkColumns)) {
+                    setUpdateParameters(stmt, record, pkStart);
+                    addBatch(stmt);
+                }
+                executeBatch(stmt);
             }
-            ps.executeBatch();
         }
     }
 
-    // Parameter Setting Methods
+    private void executeUpserts(String tableName, List<ProcessedRecord> records,
+                                List<String> pkColumns, boolean lww)
+            throws SQLException {
+        for (Map<List<String>, List<ProcessedRecord>> wave : groupByColumns(records)) {
+            for (Map.Entry<List<String>, List<ProcessedRecord>> group : wave.entrySet()) {
+                List<String> columns = lww ? withChangeTime(group.getKey()) : group.getKey();
+                CachedStatement stmt = prepare(CdcOperation.UPSERT, tableName, columns, pkColumns,
+                        () -> upsertSql(tableName, columns, pkColumns, lww), columns, lww);
+                for (ProcessedRecord record : lockOrder(group.getValue(), pkColumns)) {
+                    setParameters(stmt, record);
+                    addBatch(stmt);
+                }
+                executeBatch(stmt);
+            }
+        }
+    }
+
+    private void executeDeletes(String tableName, List<ProcessedRecord> records,
+                                List<String> pkColumns, boolean lww)
+            throws SQLException {
+        if (pkColumns.isEmpty()) {
+            log.warning("No primary key known for table " + tableName + ", cannot execute DELETE operations");
+            return;
+        }
 
-    private void setParameters(PreparedStatement ps, ProcessedRecord record,
-                               List<String> columns, Map<String, Integer> columnTypes) throws SQLException {
-        Map<String, Object> values = extractValueMap(record);
-        int idx = 1;
-        for (String col : columns) {
-            setParameterWithType(ps, idx++, col, values.get(col), columnTypes);
+        List<String> columns = lww ? withChangeTime(pkColumns) : pkColumns;
+        CachedStatement stmt = prepare(CdcOperation.DELETE, tableName, columns, pkColumns,
+                () -> lww ? dialect.buildConditionalDeleteSql(tableName, pkColumns, lwwColumn)
+                        : dialect.buildDeleteSql(tableName, pkColumns), columns, lww);
+        for (ProcessedRecord record : lockOrder(records, pkColumns)) {
+            setDeleteParameters(stmt, record);
+            addBatch(stmt);
         }
+        executeBatch(stmt);
     }
 
-    private void setUpdateParameters(PreparedStatement ps, ProcessedRecord record,
-                                     List<String> columns, List<String> pkColumns,
-                                     Map<String, Integer> columnTypes) throws SQLException {
-        Map<String, Object> values = extractValueMap(record);
-        Map<String, Object> keyValues = extractKeyMap(record);
+    // Statement Cache Methods
 
-        // First set non-PK columns for SET clause
-        List<String> nonPkColumns = new ArrayList<>(columns);
-        nonPkColumns.removeAll(pkColumns);
+    /**
+     * Get the cached statement for (operation, table, column signature, primary key),
+     * preparing it and resolving its binder on first use.
+     */
+    private CachedStatement prepare(CdcOperation operation, String tableName, List<String> columns,
+                                    List<String> pkColumns, Supplier<String> sqlBuilder,
+                                    List<String> parameterColumns, boolean lww) throws SQLException {
+        StatementKey key = new StatementKey(operation, tableName, columns, pkColumns);
+        CachedStatement cached = statementCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        String sql = sqlBuilder.get();
+        log.fine(operation + " SQL: " + sql);
+        ColumnBinder binder = new ColumnBinder(parameterColumns, getColumnTypes(tableName),
+                lobStreamThreshold, metrics);
+        cached = new CachedStatement(connection.prepareStatement(sql), binder,
+                lww ? parameterColumns.indexOf(lwwColumn) : -1, lww && operation == CdcOperation.UPSERT);
+        statementCache.put(key, cached);
+        evictStatements(cached);
+        return cached;
+    }
 
-        int idx = 1;
-        for (String col : nonPkColumns) {
-            setParameterWithType(ps, idx++, col, values.get(col), columnTypes);
+    /**
+     * Close the least recently used statements beyond statement.cache.size. Statements with
+     * batched rows are kept until they are executed.
+     */
+    private void evictStatements(CachedStatement keep) {
+        Iterator<CachedStatement> it = statementCache.values().iterator();
+        while (statementCache.size() > maxStatements && it.hasNext()) {
+            CachedStatement stmt = it.next();
+            if (stmt != keep && stmt.pending == 0) {
+                closeQuietly(stmt.ps);
+                it.remove();
+                metrics.increment(STATEMENTS_EVICTED);
+            }
         }
+    }
 
-        // Then set PK columns for WHERE clause
-        for (String col : pkColumns) {
-            setParameterWithType(ps, idx++, col, keyValues.getOrDefault(col, values.get(col)), columnTypes);
+    private void addBatch(CachedStatement stmt) throws SQLException {
+        stmt.ps.addBatch();
+        if (++stmt.pending >= config.getBatchSize()) {
+            executeBatch(stmt);
         }
     }
 
-    private void setDeleteParameters(PreparedStatement ps, ProcessedRecord record,
-                                     List<String> pkColumns, Map<String, Integer> columnTypes) throws SQLException {
-        Map<String, Object> keyValues = extractKeyMap(record);
-        Map<String, Object> values = extractValueMap(record);
+    private void executeBatch(CachedStatement stmt) throws SQLException {
+        if (stmt.pending == 0) {
+            return;
+        }
+        try {
+            int[] counts = stmt.ps.executeBatch();
+            if (stmt.conditionalUpsert) {
+                countStaleWrites(counts);
+            }
+        } catch (SQLException e) {
+            stmt.ps.clearBatch();
+            countLockFailure(e);
+            throw e;
+        } finally {
+            stmt.pending = 0;
+        }
+    }
 
-        int idx = 1;
-        for (String col : pkColumns) {
-            Object value = keyValues.get(col);
-            if (value == null) {
-                value = values.get(col);
+    /**
+     * Count deadlocks and lock wait timeouts, which batch exceptions may report as a
+     * chained (next) exception or cause.
+     */
+    private void countLockFailure(SQLException e) {
+        for (Throwable t = e; t != null; ) {
+            if (t instanceof SQLException) {
+                SQLException sqlException = (SQLException) t;
+                if (dialect.isDeadlock(sqlException)) {
+                    metrics.increment(DEADLOCKS);
+                    return;
+                }
+                if (dialect.isLockWaitTimeout(sqlException)) {
+                    metrics.increment(LOCK_WAIT_TIMEOUTS);
+                    return;
+                }
+                Throwable next = sqlException.getNextException();
+                t = next != null && next != t ? next : t.getCause();
+            } else {
+                t = t.getCause();
             }
-            setParameterWithType(ps, idx++, col, value, columnTypes);
         }
     }
 
-    // Column Type Methods
+    /**
+     * The rows of one statement batch in the order they are bound: sorted by primary key
+     * tuple with write.sort.by.pk, so concurrent tasks lock rows in the same order. The
+     * sort is stable, keeping the changes of one key in their original order.
+     */
+    private List<ProcessedRecord> lockOrder(List<ProcessedRecord> records, List<String> pkColumns) {
+        if (!sortByPk || pkColumns.isEmpty() || records.size() < 2) {
+            return records;
+        }
+        int n = records.size();
+        Object[][] keys = new Object[n][];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            ProcessedRecord record = records.get(i);
+            Object[] key = new Object[pkColumns.size()];
+            for (int c = 0; c < key.length; c++) {
+                key[c] = primaryKeyValue(record, pkColumns.get(c));
+            }
+            keys[i] = key;
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compareKeys(keys[a], keys[b]));
+        List<ProcessedRecord> sorted = new ArrayList<>(n);
+        for (Integer i : order) {
+            sorted.add(records.get(i));
+        }
+        return sorted;
+    }
 
-    private Map<String, Integer> getColumnTypes(String tableName) throws SQLException {
-        Map<String, Integer> cached = columnTypeCache.get(tableName);
-        if (cached != null) {
-            return cached;
+    private static int compareKeys(Object[] a, Object[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int cmp = compareValues(a[i], b[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
         }
-        Map<String, Integer> types = new HashMap<>();
-        DatabaseMetaData meta = connection.getMetaData();
-        String normalizedTableName = dialect.normalizeIdentifierForMetadata(tableName);
-        try (ResultSet rs = meta.getColumns(null, null, normalizedTableName, null)) {
-            while (rs.next()) {
-                types.put(rs.getString("COLUMN_NAME").toUpperCase(), rs.getInt("DATA_TYPE"));
+        return 0;
+    }
+
+    /**
+     * Total order over key values. Values are ranked by type first (null, number, boolean,
+     * string, date, bytes, others by class name), then ordered within their type: numbers
+     * by exact value across Java types, dates by instant, bytes unsigned, other same-class
+     * comparables naturally. It only has to be the same in every task, but must be transitive
+     * for the sort.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compareValues(Object a, Object b) {
+        if (a == b) {
+            return 0;
+        }
+        int rank = typeRank(a);
+        int otherRank = typeRank(b);
+        if (rank != otherRank) {
+            return Integer.compare(rank, otherRank);
+        }
+        switch (rank) {
+            case 1:
+                return compareNumbers((Number) a, (Number) b);
+            case 2:
+                return Boolean.compare((Boolean) a, (Boolean) b);
+            case 3:
+                return a.toString().compareTo(b.toString());
+            case 4:
+                return Long.compare(((java.util.Date) a).getTime(), ((java.util.Date) b).getTime());
+            case 5:
+                return Arrays.compareUnsigned((byte[]) a, (byte[]) b);
+            default:
+                if (a.getClass() != b.getClass()) {
+                    return a.getClass().getName().compareTo(b.getClass().getName());
+                }
+                if (a instanceof Comparable) {
+                    return ((Comparable) a).compareTo(b);
+                }
+                return a.toString().compareTo(b.toString());
+        }
+    }
+
+    private static int typeRank(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number) {
+            return 1;
+        }
+        if (value instanceof Boolean) {
+            return 2;
+        }
+        if (value instanceof CharSequence) {
+            return 3;
+        }
+        if (value instanceof java.util.Date) {
+            return 4;
+        }
+        if (value instanceof byte[]) {
+            return 5;
+        }
+        return 6;
+    }
+
+    /**
+     * Compare numbers of any Java type by exact value. NaN sorts above positive infinity,
+     * as in Double.compare.
+     */
+    private static int compareNumbers(Number a, Number b) {
+        if (isIntegral(a) && isIntegral(b)) {
+            return Long.compare(a.longValue(), b.longValue());
+        }
+        boolean finite = isFinite(a);
+        boolean otherFinite = isFinite(b);
+        if (!finite || !otherFinite) {
+            if (!finite && !otherFinite) {
+                return Double.compare(a.doubleValue(), b.doubleValue());
             }
+            // A non-finite value is above or below every finite one
+            double special = finite ? b.doubleValue() : a.doubleValue();
+            int sign = special == Double.NEGATIVE_INFINITY ? -1 : 1;
+            return finite ? -sign : sign;
         }
-        columnTypeCache.put(tableName, types);
-        return types;
+        return toBigDecimal(a).compareTo(toBigDecimal(b));
     }
 
-    private void setParameterWithType(PreparedStatement ps, int index, String columnName,
-                                      Object value, Map<String, Integer> columnTypes) throws SQLException {
-        if (value instanceof String) {
-            Integer sqlType = columnTypes.get(columnName.toUpperCase());
-            if (sqlType != null) {
-                String strVal = (String) value;
-                try {
-                    switch (sqlType) {
-                        case Types.TIMESTAMP:
-                        case Types.TIMESTAMP_WITH_TIMEZONE:
-                            ps.setTimestamp(index, Timestamp.valueOf(strVal.replace('T', ' ')));
-                            return;
-                        case Types.DATE:
-                            ps.setDate(index, java.sql.Date.valueOf(strVal.length() > 10 ? strVal.substring(0, 10) : strVal));
-                            return;
-                        case Types.TIME:
-                        case Types.TIME_WITH_TIMEZONE:
-                            ps.setTime(index, Time.valueOf(strVal));
-                            return;
-                    }
-                } catch (IllegalArgumentException e) {
-                    // fall through to setObject
+    private static boolean isFinite(Number n) {
+        return !(n instanceof Double || n instanceof Float) || Double.isFinite(n.doubleValue());
+    }
+
+    private static BigDecimal toBigDecimal(Number n) {
+        if (n instanceof BigDecimal) {
+            return (BigDecimal) n;
+        }
+        if (n instanceof BigInteger) {
+            return new BigDecimal((BigInteger) n);
+        }
+        if (isIntegral(n)) {
+            return BigDecimal.valueOf(n.longValue());
+        }
+        if (n instanceof Double || n instanceof Float) {
+            return new BigDecimal(n.doubleValue());
+        }
+        return new BigDecimal(n.toString());
+    }
+
+    private static boolean isIntegral(Object n) {
+        return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+    }
+
+    /**
+     * Drop cached statements for a table whose structure has changed.
+     */
+    private void invalidateStatements(String tableName) {
+        Iterator<Map.Entry<StatementKey, CachedStatement>> it = statementCache.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<StatementKey, CachedStatement> entry = it.next();
+            if (entry.getKey().tableName.equals(tableName)) {
+                closeQuietly(entry.getValue().ps);
+                it.remove();
+            }
+        }
+    }
+
+    private void closeStatements() {
+        for (CachedStatement stmt : statementCache.values()) {
+            closeQuietly(stmt.ps);
+        }
+        statementCache.clear();
+    }
+
+    private void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            log.fine("Failed to close cached statement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Split records into column-signature groups.
+     *
+     * Records of one table may carry different column sets when a poll mixes schema
+     * versions or schemaless maps with different keys. Each signature gets its own
+     * statement, so the rows are grouped by signature while keeping the order of the
+     * first appearance. If a key changes signature within the batch, a new wave is
+     * started so that the writes for that key are still applied in order.
+     */
+    private List<Map<List<String>, List<ProcessedRecord>>> groupByColumns(List<ProcessedRecord> records) {
+        List<Map<List<String>, List<ProcessedRecord>>> waves = new ArrayList<>();
+        Map<List<String>, List<ProcessedRecord>> current = new LinkedHashMap<>();
+        Map<Schema, List<String>> schemaColumns = new IdentityHashMap<>();
+        Map<Object, List<String>> keySignatures = new HashMap<>();
+
+        for (ProcessedRecord record : records) {
+            List<String> columns;
+            if (record.getValue() instanceof RowValue) {
+                columns = ((RowValue) record.getValue()).getLayout().getColumns();
+            } else if (record.getValue() instanceof Struct) {
+                Schema schema = ((Struct) record.getValue()).schema();
+                columns = schemaColumns.computeIfAbsent(schema, s -> extractColumnNames(record));
+            } else {
+                columns = extractColumnNames(record);
+            }
+
+            Object key = record.getKey();
+            if (key != null) {
+                List<String> previous = keySignatures.put(key, columns);
+                if (previous != null && previous != columns && !previous.equals(columns)) {
+                    waves.add(current);
+                    current = new LinkedHashMap<>();
+                    keySignatures.clear();
+                    keySignatures.put(key, columns);
                 }
             }
+            current.computeIfAbsent(columns, k -> new ArrayList<>()).add(record);
+        }
+
+        if (!current.isEmpty()) {
+            waves.add(current);
+        }
+        return waves;
+    }
+
+    // Parameter Setting Methods
+
+    private void setParameters(CachedStatement stmt, ProcessedRecord record) throws SQLException {
+        Object value = record.getValue();
+        ColumnBinder binder = stmt.binder;
+        if (value instanceof RowValue) {
+            RowValue row = (RowValue) value;
+            int[] slots = binder.slotsFor(row.getLayout());
+            for (int i = 0; i < slots.length; i++) {
+                binder.bind(stmt.ps, i, slots[i] >= 0 ? row.getValue(slots[i]) : null);
+            }
+        } else {
+            for (int i = 0; i < binder.size(); i++) {
+                binder.bind(stmt.ps, i, fieldValue(value, binder.getColumn(i)));
+            }
+        }
+        bindChangeTime(stmt, record);
+    }
+
+    private void setUpdateParameters(CachedStatement stmt, ProcessedRecord record, int pkStart)
+            throws SQLException {
+        Object value = record.getValue();
+        Object key = record.getKey();
+        ColumnBinder binder = stmt.binder;
+
+        for (int i = 0; i < binder.size(); i++) {
+            String col = binder.getColumn(i);
+            Object param = i < pkStart || !hasField(key, col) ? fieldValue(value, col) : fieldValue(key, col);
+            binder.bind(stmt.ps, i, param);
+        }
+        bindChangeTime(stmt, record);
+    }
+
+    private void setDeleteParameters(CachedStatement stmt, ProcessedRecord record) throws SQLException {
+        Object value = record.getValue();
+        Object key = record.getKey();
+        ColumnBinder binder = stmt.binder;
+
+        for (int i = 0; i < binder.size(); i++) {
+            String col = binder.getColumn(i);
+            Object param = fieldValue(key, col);
+            if (param == null) {
+                param = fieldValue(value, col);
+            }
+            binder.bind(stmt.ps, i, param);
+        }
+        bindChangeTime(stmt, record);
+    }
+
+    /**
+     * Bind the record's change time to the last-writer-wins column, replacing any value
+     * the record has for it. A record without one binds NULL, which the conditional upserts
+     * do not store over an existing change time.
+     */
+    private void bindChangeTime(CachedStatement stmt, ProcessedRecord record) throws SQLException {
+        if (stmt.changeTimeIndex >= 0) {
+            long micros = record.getChangeTimeMicros();
+            stmt.binder.bind(stmt.ps, stmt.changeTimeIndex, micros == ProcessedRecord.NO_CHANGE_TIME ? null
+                    : LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                            (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC));
+        }
+    }
+
+    // Column Type Methods
+
+    private Map<String, Integer> getColumnTypes(String tableName) throws SQLException {
+        return metadataCache.getColumnTypes(connection, tableName);
+    }
+
+    // Primary Key Methods
+
+    /**
+     * Resolve the primary key columns of a table.
+     *
+     * An explicit pk.fields list takes precedence. Otherwise the key is discovered from
+     * the target catalog and cached per table, falling back to the fields of the Kafka
+     * key when the table has no declared primary key (or does not exist yet). Catalog
+     * names are mapped onto the record's field spelling so that values can be looked up.
+     */
+    private List<String> resolvePrimaryKey(String tableName, ProcessedRecord sample) throws SQLException {
+        List<String> configured = config.getPkFields();
+        if (!configured.isEmpty() || "none".equalsIgnoreCase(config.getPkMode())) {
+            return configured;
+        }
+
+        List<String> discovered = metadataCache.getPrimaryKeyColumns(connection, tableName);
+        if (discovered.isEmpty()) {
+            return extractKeyColumnNames(sample);
+        }
+
+        List<String> recordColumns = new ArrayList<>(extractKeyColumnNames(sample));
+        recordColumns.addAll(extractColumnNames(sample));
+        List<String> pk = new ArrayList<>(discovered.size());
+        for (String column : discovered) {
+            pk.add(matchColumnName(column, recordColumns));
+        }
+        return pk;
+    }
+
+    private String matchColumnName(String column, List<String> recordColumns) {
+        for (String candidate : recordColumns) {
+            if (candidate.equalsIgnoreCase(column)) {
+                return candidate;
+            }
         }
-        ps.setObject(index, value);
+        return column;
     }
 
     // Helper Methods
@@ -287,60 +1279,82 @@ public class JdbcWriter implements AutoCloseable {
         return columns;
     }
 
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> extractValueMap(ProcessedRecord record) {
-        Object value = record.getValue();
+    private List<String> extractKeyColumnNames(ProcessedRecord record) {
+        List<String> columns = new ArrayList<>();
 
-        if (value instanceof Struct) {
-            Struct struct = (Struct) value;
-            Map<String, Object> map = new LinkedHashMap<>();
-            for (Field field : struct.schema().fields()) {
-                map.put(field.name(), struct.get(field));
+        Object key = record.getKey();
+        if (key instanceof Struct) {
+            for (Field field : ((Struct) key).schema().fields()) {
+                columns.add(field.name());
+            }
+        } else if (key instanceof Map) {
+            for (Object name : ((Map<?, ?>) key).keySet()) {
+                columns.add(String.valueOf(name));
             }
-            return map;
-        } else if (value instanceof Map) {
-            return new LinkedHashMap<>((Map<String, Object>) value);
         }
 
-        return Collections.emptyMap();
+        return columns;
     }
 
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> extractKeyMap(ProcessedRecord record) {
-        Object key = record.getKey();
-
-        if (key instanceof Struct) {
-            Struct struct = (Struct) key;
-            Map<String, Object> map = new LinkedHashMap<>();
-            for (Field field : struct.schema().fields()) {
-                map.put(field.name(), struct.get(field));
-            }
-            return map;
-        } else if (key instanceof Map) {
-            return new LinkedHashMap<>((Map<String, Object>) key);
+    /**
+     * Value of a field of a record key or value (Struct or Map), read in place without
+     * copying the record into an intermediate map. Missing fields read as null.
+     */
+    static Object fieldValue(Object container, String column) {
+        if (container instanceof Struct) {
+            Struct struct = (Struct) container;
+            Field field = struct.schema().field(column);
+            return field != null ? struct.get(field) : null;
+        } else if (container instanceof Map) {
+            return ((Map<?, ?>) container).get(column);
         }
+        return null;
+    }
 
-        return Collections.emptyMap();
+    /**
+     * Value of a primary key column of a record, read from the key or else the value.
+     */
+    static Object primaryKeyValue(ProcessedRecord record, String column) {
+        Object value = fieldValue(record.getKey(), column);
+        return value != null ? value : fieldValue(record.getValue(), column);
+    }
+
+    private static boolean hasField(Object container, String column) {
+        if (container instanceof Struct) {
+            return ((Struct) container).schema().field(column) != null;
+        } else if (container instanceof Map) {
+            return ((Map<?, ?>) container).containsKey(column);
+        }
+        return false;
     }
 
-    private void ensureTableExists(String tableName, ProcessedRecord sample) throws SQLException {
+    private void ensureTableExists(String tableName, ProcessedRecord sample, Route route) throws SQLException {
+        if (metadataCache.isKnownTable(tableName)) {
+            return;
+        }
         DatabaseMetaData meta = connection.getMetaData();
         String normalizedTableName = dialect.normalizeIdentifierForMetadata(tableName);
         try (ResultSet rs = meta.getTables(null, null, normalizedTableName, new String[]{"TABLE"})) {
             if (!rs.next()) {
                 log.info("Auto-creating table: " + tableName);
-                createTable(tableName, sample);
+                createTable(tableName, sample, route);
             }
         }
+        metadataCache.markKnownTable(tableName);
     }
 
-    private void createTable(String tableName, ProcessedRecord sample) throws SQLException {
-        List<String> pkColumns = config.getPkFields();
+    private void createTable(String tableName, ProcessedRecord sample, Route route) throws SQLException {
+        List<String> pkColumns = getPrimaryKeyColumns(tableName, sample, route);
         String ddl = dialect.buildCreateTableSql(tableName, sample, pkColumns);
         log.info("Creating table with DDL: " + ddl);
         try (Statement stmt = connection.createStatement()) {
             stmt.execute(ddl);
         }
+        metadataCache.invalidate(tableName);
+        invalidateStatements(tableName);
+        if (rowImageCache != null) {
+            rowImageCache.clear();
+        }
     }
 
     private void evolveTable(String tableName, ProcessedRecord sample) throws SQLException {
@@ -367,22 +1381,92 @@ public class JdbcWriter implements AutoCloseable {
             try (Statement stmt = connection.createStatement()) {
                 stmt.execute(ddl);
             }
-            columnTypeCache.remove(tableName);
+            metadataCache.invalidate(tableName);
+            invalidateStatements(tableName);
+            if (rowImageCache != null) {
+                rowImageCache.clear();
+            }
         }
     }
 
     @Override
     public void close() throws SQLException {
-        for (PreparedStatement ps : statementCache.values()) {
-            ps.close();
+        for (CachedStatement stmt : statementCache.values()) {
+            stmt.ps.close();
         }
         statementCache.clear();
     }
 
+    /**
+     * Cache key for a prepared statement: one per operation, table, column signature and
+     * primary key, which the upsert, update and delete SQL depend on.
+     */
+    private static final class StatementKey {
+        private final CdcOperation operation;
+        private final String tableName;
+        private final List<String> columns;
+        private final List<String> pkColumns;
+        private final int hash;
+
+        StatementKey(CdcOperation operation, String tableName, List<String> columns, List<String> pkColumns) {
+            this.operation = operation;
+            this.tableName = tableName;
+            this.columns = columns;
+            this.pkColumns = pkColumns;
+            this.hash = Objects.hash(operation, tableName, columns, pkColumns);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StatementKey)) {
+                return false;
+            }
+            StatementKey other = (StatementKey) o;
+            return operation == other.operation
+                    && tableName.equals(other.tableName)
+                    && columns.equals(other.columns)
+                    && pkColumns.equals(other.pkColumns);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A prepared statement together with its binder and the number of rows batched on it.
+     */
+    private static final class CachedStatement {
+        private final PreparedStatement ps;
+        private final ColumnBinder binder;
+        // Parameter bound to the change time for last-writer-wins, or -1
+        private final int changeTimeIndex;
+        // Whether an update count of 0 means the row held a newer change. Not so for deletes,
+        // where it also means the row was already gone
+        private final boolean conditionalUpsert;
+        private int pending;
+
+        CachedStatement(PreparedStatement ps, ColumnBinder binder, int changeTimeIndex,
+                        boolean conditionalUpsert) {
+            this.ps = ps;
+            this.binder = binder;
+            this.changeTimeIndex = changeTimeIndex;
+            this.conditionalUpsert = conditionalUpsert;
+        }
+    }
+
     /**
      * Represents a processed CDC record ready for database operations.
      */
     public static class ProcessedRecord {
+        /** Change time of a record without a parsable A_TIMSTAMP. */
+        public static final long NO_CHANGE_TIME = TimestampConverter.INVALID;
+        private static final long UNPARSED = Long.MAX_VALUE;
+
         private final String targetTable;
         private final CdcOperation operation;
         private final Object key;
@@ -390,9 +1474,33 @@ public class JdbcWriter implements AutoCloseable {
         private final Schema keySchema;
         private final Schema valueSchema;
         private final String isoTimestamp;
+        private final String topic;
+        private final int partition;
+        private final long offset;
+        private long changeTimeMicros;
 
         public ProcessedRecord(String targetTable, CdcOperation operation, Object key, Object value,
                                Schema keySchema, Schema valueSchema, String isoTimestamp) {
+            this(targetTable, operation, key, value, keySchema, valueSchema, isoTimestamp, null, -1, -1);
+        }
+
+        /**
+         * Create a record that knows the Kafka position it was consumed from.
+         */
+        public ProcessedRecord(String targetTable, CdcOperation operation, Object key, Object value,
+                               Schema keySchema, Schema valueSchema, String isoTimestamp,
+                               String topic, int partition, long offset) {
+            this(targetTable, operation, key, value, keySchema, valueSchema, isoTimestamp, topic, partition,
+                    offset, UNPARSED);
+        }
+
+        /**
+         * Create a record whose change time was already parsed from A_TIMSTAMP, in
+         * microseconds since the epoch or NO_CHANGE_TIME.
+         */
+        public ProcessedRecord(String targetTable, CdcOperation operation, Object key, Object value,
+                               Schema keySchema, Schema valueSchema, String isoTimestamp,
+                               String topic, int partition, long offset, long changeTimeMicros) {
             this.targetTable = targetTable;
             this.operation = operation;
             this.key = key;
@@ -400,6 +1508,10 @@ public class JdbcWriter implements AutoCloseable {
             this.keySchema = keySchema;
             this.valueSchema = valueSchema;
             this.isoTimestamp = isoTimestamp;
+            this.topic = topic;
+            this.partition = partition;
+            this.offset = offset;
+            this.changeTimeMicros = changeTimeMicros;
         }
 
         public String getTargetTable() {
@@ -429,5 +1541,46 @@ public class JdbcWriter implements AutoCloseable {
         public String getIsoTimestamp() {
             return isoTimestamp;
         }
+
+        /**
+         * Topic the record was consumed from, or null if unknown.
+         */
+        public String getTopic() {
+            return topic;
+        }
+
+        public int getPartition() {
+            return partition;
+        }
+
+        /**
+         * Kafka offset of the record, or -1 if unknown.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Source change time in microseconds since the epoch, or NO_CHANGE_TIME. Records
+         * created without it (drained or compacted ones) parse their ISO timestamp once.
+         */
+        public long getChangeTimeMicros() {
+            if (changeTimeMicros == UNPARSED) {
+                changeTimeMicros = parseChangeTime(isoTimestamp);
+            }
+            return changeTimeMicros;
+        }
+
+        private static long parseChangeTime(String iso) {
+            if (iso == null) {
+                return NO_CHANGE_TIME;
+            }
+            try {
+                OffsetDateTime time = OffsetDateTime.parse(iso);
+                return time.toEpochSecond() * 1_000_000L + time.getNano() / 1000;
+            } catch (DateTimeParseException e) {
+                return NO_CHANGE_TIME;
+            }
+        }
     }
 }
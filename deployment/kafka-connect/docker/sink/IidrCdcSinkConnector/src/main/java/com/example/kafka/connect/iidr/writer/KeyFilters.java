@@ -0,0 +1,372 @@
+package com.example.kafka.connect.iidr.writer;
+
+import com.example.kafka.connect.iidr.IidrCdcSinkConfig;
+import com.example.kafka.connect.iidr.writer.JdbcWriter.ProcessedRecord;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Bloom filters of the primary keys known to exist in the target, one per table of
+ * key.filter.tables, shared by all tasks of a connector in the worker.
+ *
+ * A key the filter has never seen is definitely new, so its upsert can be written as a plain
+ * INSERT. Filters are warmed with the keys of the table on first use, in the background on a
+ * connection of their own, and learn every key written meanwhile and afterwards; keys are
+ * never removed, which only costs an upsert. Keys are hashed
+ * from the canonical text of their values, normalized by column type, so that record and
+ * catalog values of different Java types hash alike. Filters are reference counted per scope
+ * like the metadata caches.
+ */
+public final class KeyFilters {
+
+    private static final Logger log = Logger.getLogger(KeyFilters.class.getName());
+
+    private static final Map<String, KeyFilters> SCOPES = new HashMap<>();
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final int WARM_FETCH_SIZE = 10000;
+    private static final long WARM_RETRY_MS = 60_000;
+    // Larger scales would expand to huge plain strings
+    private static final int MAX_KEY_SCALE = 1000;
+
+    private final Set<String> tables;
+    private final int expectedKeys;
+    private final double falsePositiveRate;
+    private final boolean warm;
+    private final Map<String, Filter> filters = new ConcurrentHashMap<>();
+    private final ChangeLogCompactor.ConnectionSource connectionSource;
+    // Loads the keys of one table at a time, null without warm-up
+    private final ExecutorService warmer;
+    private int references;
+
+    private KeyFilters(IidrCdcSinkConfig config, ChangeLogCompactor.ConnectionSource connectionSource) {
+        this.tables = config.getKeyFilterTables();
+        this.expectedKeys = config.getKeyFilterExpectedKeys();
+        this.falsePositiveRate = config.getKeyFilterFpp();
+        this.warm = config.isKeyFilterWarm();
+        this.connectionSource = connectionSource;
+        this.warmer = warm ? Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "iidr-key-filter-warmer");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Acquire the filters of a scope, creating them if needed. Warm-ups open their
+     * connections from the given source. Every call must be paired with a
+     * {@link #release(String)}.
+     */
+    public static KeyFilters acquire(String scope, IidrCdcSinkConfig config,
+                                     ChangeLogCompactor.ConnectionSource connectionSource) {
+        synchronized (SCOPES) {
+            KeyFilters keyFilters = SCOPES.get(scope);
+            if (keyFilters == null) {
+                keyFilters = new KeyFilters(config, connectionSource);
+                SCOPES.put(scope, keyFilters);
+            }
+            keyFilters.references++;
+            return keyFilters;
+        }
+    }
+
+    /**
+     * Release a reference to the filters of a scope. The last one stops a running warm-up.
+     */
+    public static void release(String scope) {
+        synchronized (SCOPES) {
+            KeyFilters keyFilters = SCOPES.get(scope);
+            if (keyFilters != null && --keyFilters.references <= 0) {
+                SCOPES.remove(scope);
+                if (keyFilters.warmer != null) {
+                    keyFilters.warmer.shutdownNow();
+                }
+            }
+        }
+    }
+
+    /**
+     * The filter of a table, or null if the table does not use one.
+     */
+    public Filter get(String tableName) {
+        if (!tables.contains(tableName)) {
+            return null;
+        }
+        return filters.computeIfAbsent(tableName, t -> new Filter(expectedKeys, falsePositiveRate, warm));
+    }
+
+    /**
+     * Start loading the keys of a table into its filter in the background, unless the filter
+     * is warm, being warmed, or waiting to retry a failed warm-up.
+     *
+     * @param pkColumns primary key columns, as named in the target
+     * @param keyTypes  column types of the key columns, null where unknown
+     */
+    public void warm(Filter filter, String tableName, List<String> pkColumns, List<Integer> keyTypes) {
+        if (filter.isWarm() || !filter.startWarm(System.currentTimeMillis())) {
+            return;
+        }
+        warmer.execute(() -> load(filter, tableName, pkColumns, keyTypes));
+    }
+
+    /**
+     * Read the keys of a table into its filter, outside of any writer's transaction. Writers
+     * add the keys they write meanwhile, so keys committed after the read started are known.
+     */
+    private void load(Filter filter, String tableName, List<String> pkColumns, List<Integer> keyTypes) {
+        long start = System.currentTimeMillis();
+        long keys = 0;
+        String sql = "SELECT " + String.join(", ", pkColumns) + " FROM " + tableName;
+        try (Connection connection = connectionSource.open();
+             Statement stmt = connection.createStatement()) {
+            stmt.setFetchSize(WARM_FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        filter.warmFailed(Long.MAX_VALUE);
+                        return;
+                    }
+                    long hash = FNV_OFFSET;
+                    boolean complete = true;
+                    for (int i = 1; i <= pkColumns.size(); i++) {
+                        Object value = rs.getObject(i);
+                        if (value == null) {
+                            complete = false;
+                            break;
+                        }
+                        hash = hashValue(hash, keyText(value, keyTypes.get(i - 1)));
+                    }
+                    if (complete) {
+                        filter.add(mix(hash));
+                        keys++;
+                    }
+                }
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+        } catch (SQLException | RuntimeException e) {
+            filter.warmFailed(System.currentTimeMillis() + WARM_RETRY_MS);
+            log.warning("Failed to warm key filter of " + tableName + ", retrying in " +
+                    WARM_RETRY_MS + " ms: " + e.getMessage());
+            return;
+        }
+        filter.warmed();
+        log.info("Warmed key filter of " + tableName + " with " + keys + " keys in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Estimated false positive rate of a table's filter, 0 before its first use.
+     */
+    public double falsePositiveRate(String tableName) {
+        Filter filter = filters.get(tableName);
+        return filter != null ? filter.falsePositiveRate() : 0;
+    }
+
+    /**
+     * Hash of a record's primary key values, or 0 if a value is missing.
+     *
+     * @param keyTypes column types of the key columns from java.sql.Types, null where unknown
+     */
+    public static long keyHash(ProcessedRecord record, List<String> pkColumns, List<Integer> keyTypes) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < pkColumns.size(); i++) {
+            Object value = JdbcWriter.primaryKeyValue(record, pkColumns.get(i));
+            if (value == null) {
+                return 0;
+            }
+            hash = hashValue(hash, keyText(value, keyTypes.get(i)));
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Canonical text of a key value: numbers without trailing zeros, timestamps and dates in
+     * ISO form, CHAR values without their padding. So "5.00" in a record matches 5 read from
+     * a NUMERIC column, and "2024-01-01 10:00:00" matches the Timestamp "2024-01-01 10:00:00.0".
+     */
+    static String keyText(Object value, Integer sqlType) {
+        if (sqlType != null) {
+            switch (sqlType) {
+                case Types.TIMESTAMP:
+                    if (value instanceof Date) {
+                        Timestamp timestamp = value instanceof Timestamp
+                                ? (Timestamp) value : new Timestamp(((Date) value).getTime());
+                        return timestamp.toLocalDateTime().toString();
+                    }
+                    if (value instanceof String) {
+                        LocalDateTime ldt = ValueConverter.Parsers.parseDateTime((String) value);
+                        if (ldt != null) {
+                            return ldt.toString();
+                        }
+                    }
+                    break;
+                case Types.DATE:
+                    if (value instanceof java.sql.Date) {
+                        return ((java.sql.Date) value).toLocalDate().toString();
+                    }
+                    if (value instanceof String && ((String) value).length() == 10) {
+                        LocalDate date = ValueConverter.Parsers.parseDate((String) value);
+                        if (date != null) {
+                            return date.toString();
+                        }
+                    }
+                    break;
+                case Types.CHAR:
+                case Types.NCHAR:
+                    if (value instanceof String) {
+                        String str = (String) value;
+                        int end = str.length();
+                        while (end > 0 && str.charAt(end - 1) == ' ') {
+                            end--;
+                        }
+                        return str.substring(0, end);
+                    }
+                    break;
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    if (value instanceof String && ValueConverter.Parsers.isDecimal((String) value)) {
+                        try {
+                            BigDecimal decimal = new BigDecimal((String) value).stripTrailingZeros();
+                            if (Math.abs(decimal.scale()) <= MAX_KEY_SCALE) {
+                                return decimal.toPlainString();
+                            }
+                        } catch (NumberFormatException e) {
+                            // Keep the text as is
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).stripTrailingZeros().toPlainString();
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return BigDecimal.valueOf(((Number) value).doubleValue()).stripTrailingZeros().toPlainString();
+        }
+        if (value instanceof byte[]) {
+            return Base64.getEncoder().encodeToString((byte[]) value);
+        }
+        return value.toString();
+    }
+
+    private static long hashValue(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        // Separate the values of a composite key
+        return (hash ^ 0x1F) * FNV_PRIME;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return z == 0 ? 1 : z;
+    }
+
+    /**
+     * Bloom filter of one table's keys, sized for the expected keys and false positive rate.
+     */
+    public static final class Filter {
+        private final long[] bits;
+        private final long numBits;
+        private final int numHashes;
+        private long setBits;
+        private volatile boolean warmed;
+        private boolean warming;
+        // Earliest time to retry a failed warm-up
+        private long retryAtMs;
+
+        Filter(int expectedKeys, double falsePositiveRate, boolean warm) {
+            double ln2 = Math.log(2);
+            long m = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (ln2 * ln2));
+            this.bits = new long[(int) ((m + 63) / 64)];
+            this.numBits = bits.length * 64L;
+            this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedKeys * ln2));
+            this.warmed = !warm;
+        }
+
+        /**
+         * Add a key hash.
+         *
+         * @return true if the key was definitely not in the filter before
+         */
+        public synchronized boolean add(long hash) {
+            // Kirsch-Mitzenmacher: derive the k bit positions from two 32-bit halves
+            long h1 = hash & 0xffffffffL;
+            long h2 = hash >>> 32;
+            boolean added = false;
+            for (int i = 1; i <= numHashes; i++) {
+                long bit = (h1 + i * h2) % numBits;
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                if ((bits[word] & mask) == 0) {
+                    bits[word] |= mask;
+                    setBits++;
+                    added = true;
+                }
+            }
+            return added;
+        }
+
+        /**
+         * Current probability that a new key is reported as known, from the share of set bits.
+         */
+        public synchronized double falsePositiveRate() {
+            return Math.pow((double) setBits / numBits, numHashes);
+        }
+
+        /**
+         * Whether the filter holds the keys of the table, so that a key it has not seen is
+         * new. Until a warm-up succeeds every key may exist, and upserts stay upserts.
+         */
+        public boolean isWarm() {
+            return warmed;
+        }
+
+        synchronized boolean startWarm(long now) {
+            if (warmed || warming || now < retryAtMs) {
+                return false;
+            }
+            warming = true;
+            return true;
+        }
+
+        synchronized void warmed() {
+            warming = false;
+            warmed = true;
+        }
+
+        synchronized void warmFailed(long retryAtMs) {
+            warming = false;
+            this.retryAtMs = retryAtMs;
+        }
+    }
+}
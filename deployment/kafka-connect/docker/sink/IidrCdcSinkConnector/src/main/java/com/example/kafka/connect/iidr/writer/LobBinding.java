@@ -0,0 +1,91 @@
+package com.example.kafka.connect.iidr.writer;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Size-aware binding of large text and binary values.
+ *
+ * Values at or above the threshold are bound as a stream (or CLOB/BLOB for LOB columns)
+ * instead of setObject()/setString(), so drivers can send them without building extra
+ * copies of the whole value. Streams are only used when the target column type is known
+ * to be a character or binary type.
+ */
+final class LobBinding {
+
+    private LobBinding() {
+    }
+
+    /**
+     * Bind a large value as a stream if it qualifies.
+     *
+     * @param threshold minimum length in characters (text) or bytes (binary); 0 disables streaming
+     * @return true if the value was bound, false if the caller should bind it normally
+     */
+    static boolean bindIfLarge(PreparedStatement ps, int index, Object value, Integer sqlType, int threshold)
+            throws SQLException {
+        if (threshold <= 0 || value == null || sqlType == null) {
+            return false;
+        }
+
+        if (value instanceof String) {
+            String str = (String) value;
+            if (str.length() < threshold) {
+                return false;
+            }
+            switch (sqlType) {
+                case Types.CLOB:
+                    ps.setClob(index, new StringReader(str), str.length());
+                    return true;
+                case Types.NCLOB:
+                    ps.setNClob(index, new StringReader(str), str.length());
+                    return true;
+                case Types.CHAR:
+                case Types.VARCHAR:
+                case Types.LONGVARCHAR:
+                    ps.setCharacterStream(index, new StringReader(str), str.length());
+                    return true;
+                case Types.NCHAR:
+                case Types.NVARCHAR:
+                case Types.LONGNVARCHAR:
+                    ps.setNCharacterStream(index, new StringReader(str), str.length());
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        ByteArrayInputStream stream;
+        int length;
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            stream = new ByteArrayInputStream(bytes);
+            length = bytes.length;
+        } else if (value instanceof ByteBuffer && ((ByteBuffer) value).hasArray()) {
+            ByteBuffer buffer = (ByteBuffer) value;
+            length = buffer.remaining();
+            stream = new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        } else {
+            return false;
+        }
+        if (length < threshold) {
+            return false;
+        }
+        switch (sqlType) {
+            case Types.BLOB:
+                ps.setBlob(index, stream, length);
+                return true;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                ps.setBinaryStream(index, stream, length);
+                return true;
+            default:
+                return false;
+        }
+    }
+}
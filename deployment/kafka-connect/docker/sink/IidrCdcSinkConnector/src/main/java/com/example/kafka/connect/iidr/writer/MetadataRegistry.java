@@ -0,0 +1,66 @@
+package com.example.kafka.connect.iidr.writer;
+
+import com.example.kafka.connect.iidr.dialect.DialectFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * JVM-wide registry of table metadata caches, one per connector.
+ *
+ * All tasks of a connector running in the same worker share one {@link TableMetadataCache}
+ * and dialect, so catalog queries and the cached metadata are paid once per worker instead
+ * of once per task. Entries are reference counted: the first task to acquire a scope
+ * resolves the dialect and creates the cache, the last task to release it drops it.
+ */
+public final class MetadataRegistry {
+
+    private static final Logger log = Logger.getLogger(MetadataRegistry.class.getName());
+
+    private static final Map<String, Entry> ENTRIES = new HashMap<>();
+
+    private MetadataRegistry() {
+    }
+
+    /**
+     * Acquire the shared cache of a scope, creating it with the given connection if needed.
+     * Every call must be paired with a {@link #release(String)}.
+     */
+    public static TableMetadataCache acquire(String scope, Connection connection) throws SQLException {
+        synchronized (ENTRIES) {
+            Entry entry = ENTRIES.get(scope);
+            if (entry == null) {
+                entry = new Entry(new TableMetadataCache(DialectFactory.create(connection)));
+                ENTRIES.put(scope, entry);
+                log.info("Created shared metadata cache for " + scope);
+            }
+            entry.references++;
+            return entry.cache;
+        }
+    }
+
+    /**
+     * Release a reference to the shared cache of a scope.
+     */
+    public static void release(String scope) {
+        synchronized (ENTRIES) {
+            Entry entry = ENTRIES.get(scope);
+            if (entry != null && --entry.references <= 0) {
+                ENTRIES.remove(scope);
+                log.info("Released shared metadata cache for " + scope);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final TableMetadataCache cache;
+        private int references;
+
+        Entry(TableMetadataCache cache) {
+            this.cache = cache;
+        }
+    }
+}
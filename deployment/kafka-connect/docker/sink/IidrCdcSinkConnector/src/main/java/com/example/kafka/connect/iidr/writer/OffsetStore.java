@@ -0,0 +1,121 @@
+package com.example.kafka.connect.iidr.writer;
+
+import com.example.kafka.connect.iidr.dialect.Dialect;
+import org.apache.kafka.common.TopicPartition;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Kafka offsets kept in the target database, next to the data they describe.
+ *
+ * For each (connector, topic, partition) the table holds the offset of the next record to
+ * apply. The task writes it in the same transaction as the rows, so after a restart or
+ * rebalance the stored offset is exactly where the committed data ends, regardless of what
+ * was committed to Kafka.
+ */
+public class OffsetStore implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(OffsetStore.class.getName());
+
+    private static final List<String> COLUMNS =
+            Arrays.asList("connector_name", "topic", "kafka_partition", "kafka_offset");
+    private static final List<String> KEY_COLUMNS = COLUMNS.subList(0, 3);
+
+    private final Connection connection;
+    private final String tableName;
+    private final String connectorName;
+    private final String upsertSql;
+    private PreparedStatement upsert;
+
+    public OffsetStore(Connection connection, Dialect dialect, String tableName, String connectorName) {
+        this.connection = connection;
+        this.tableName = tableName;
+        this.connectorName = connectorName;
+        this.upsertSql = dialect.buildUpsertSql(tableName, COLUMNS, KEY_COLUMNS);
+    }
+
+    /**
+     * Create the offsets table if it does not exist, and commit.
+     */
+    public void createTableIfNotExists() throws SQLException {
+        String ddl = String.format("CREATE TABLE IF NOT EXISTS %s (connector_name VARCHAR(255) NOT NULL, " +
+                "topic VARCHAR(255) NOT NULL, kafka_partition INT NOT NULL, kafka_offset BIGINT NOT NULL, " +
+                "PRIMARY KEY (connector_name, topic, kafka_partition))", tableName);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(ddl);
+        }
+        connection.commit();
+    }
+
+    /**
+     * Read the stored offsets of the given partitions. Partitions without a row are omitted.
+     */
+    public Map<TopicPartition, Long> read(Collection<TopicPartition> partitions) throws SQLException {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        if (partitions.isEmpty()) {
+            return offsets;
+        }
+        String sql = "SELECT topic, kafka_partition, kafka_offset FROM " + tableName + " WHERE connector_name = ?";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, connectorName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    TopicPartition partition = new TopicPartition(rs.getString(1), rs.getInt(2));
+                    if (partitions.contains(partition)) {
+                        offsets.put(partition, rs.getLong(3));
+                    }
+                }
+            }
+        }
+        // Do not keep a read snapshot open until the first write
+        connection.commit();
+        return offsets;
+    }
+
+    /**
+     * Write the next offsets of the given partitions as part of the current transaction.
+     */
+    public void write(Map<TopicPartition, Long> nextOffsets) throws SQLException {
+        if (nextOffsets.isEmpty()) {
+            return;
+        }
+        if (upsert == null) {
+            upsert = connection.prepareStatement(upsertSql);
+        }
+        try {
+            for (Map.Entry<TopicPartition, Long> entry : nextOffsets.entrySet()) {
+                upsert.setString(1, connectorName);
+                upsert.setString(2, entry.getKey().topic());
+                upsert.setInt(3, entry.getKey().partition());
+                upsert.setLong(4, entry.getValue());
+                upsert.addBatch();
+            }
+            upsert.executeBatch();
+        } catch (SQLException e) {
+            upsert.clearBatch();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (upsert != null) {
+            try {
+                upsert.close();
+            } catch (SQLException e) {
+                log.fine("Failed to close offsets statement: " + e.getMessage());
+            }
+            upsert = null;
+        }
+    }
+}
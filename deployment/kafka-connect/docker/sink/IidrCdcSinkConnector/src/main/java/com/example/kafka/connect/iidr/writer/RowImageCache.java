@@ -0,0 +1,482 @@
+package com.example.kafka.connect.iidr.writer;
+
+import com.example.kafka.connect.iidr.converter.RowValue;
+import com.example.kafka.connect.iidr.writer.JdbcWriter.ProcessedRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Struct;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Bounded cache of the last row image applied per primary key, used to skip rows that are
+ * resent unchanged (refreshes, FI/FP entries).
+ *
+ * Each slot holds a 64-bit hash of (table, primary key values) and a 64-bit hash of the row
+ * image. Slots live outside the heap, in a direct buffer or a memory-mapped file, and are
+ * addressed by open addressing over a window of {@value #PROBE_SLOTS} slots; a full window
+ * evicts with a clock over the slots' reference bits.
+ *
+ * Images only become visible once their transaction is committed. A row that is written is
+ * removed from the cache at once and staged; {@link #publish()} applies the staged images
+ * after a commit and {@link #discard()} drops them after a rollback. Deletes stage a removal.
+ *
+ * The cache is only valid for the keys of the partitions it covers, and only while the
+ * connector is the sole writer of its rows. It is cleared when a partition it does not
+ * cover is assigned, and on DDL. A mapped file is marked dirty while open, so it is only
+ * reused after a clean close. It is saved with the committed offset of each covered
+ * partition, and after a restart no row is skipped until every reassigned partition has
+ * resumed at exactly that offset: the cache is cleared if any resumes elsewhere, since
+ * another task then consumed the records in between.
+ */
+public class RowImageCache implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(RowImageCache.class.getName());
+
+    /**
+     * Largest number of entries, so the slots fit in one buffer.
+     */
+    public static final int MAX_ENTRIES = 1 << 26;
+
+    private static final int MAGIC = 0x52494332;
+    // Magic, capacity, clean flag, reserved
+    private static final int HEADER_BYTES = 16;
+    private static final int PROBE_SLOTS = 8;
+    private static final long NULL_HASH = 0x9E3779B97F4A7C15L;
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private final int capacity;
+    private final int mask;
+    private final ByteBuffer buffer;
+    private final LongBuffer slots;
+    private final byte[] referenced;
+    private final Path file;
+    private final FileChannel channel;
+    // Covered partitions and their last committed offset, -1 if unknown
+    private final Map<TopicPartition, Long> covered = new HashMap<>();
+    // Partitions saved with the file and not assigned since the restart
+    private final Map<TopicPartition, Long> restored = new HashMap<>();
+    // Reassigned partitions whose resume offset is not known yet
+    private final Map<TopicPartition, Long> resuming = new HashMap<>();
+    private long[] staged = new long[64];
+    private int stagedCount;
+    private int size;
+
+    /**
+     * Create a cache of at least the given number of entries, kept in a memory-mapped file
+     * that outlives the task, or off-heap memory if file is null.
+     */
+    public RowImageCache(int entries, Path file) throws IOException {
+        if (entries > MAX_ENTRIES) {
+            throw new IllegalArgumentException("Row image cache entries " + entries + " exceed " + MAX_ENTRIES);
+        }
+        this.capacity = Math.max(PROBE_SLOTS, Integer.highestOneBit(Math.max(1, entries - 1)) << 1);
+        this.mask = capacity - 1;
+        this.referenced = new byte[capacity];
+        this.file = file;
+        long bytes = HEADER_BYTES + 16L * capacity;
+        if (file == null) {
+            this.channel = null;
+            this.buffer = ByteBuffer.allocateDirect((int) bytes);
+        } else {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+        buffer.position(HEADER_BYTES);
+        this.slots = buffer.slice().asLongBuffer();
+        buffer.position(0);
+
+        boolean reusable = file != null && buffer.getInt(0) == MAGIC && buffer.getInt(4) == capacity
+                && buffer.getInt(8) == 1 && readRestored();
+        if (reusable) {
+            for (int i = 0; i < capacity; i++) {
+                if (slots.get(2 * i) != 0) {
+                    size++;
+                }
+            }
+            log.info("Reusing row image cache " + file + " with " + size + " entries for " + restored);
+        } else {
+            clearSlots();
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, capacity);
+        buffer.putInt(8, 0);
+        force();
+    }
+
+    /**
+     * Hash of a record's table and primary key values, or 0 if a key value is missing.
+     */
+    public static long keyHash(String tableName, ProcessedRecord record, List<String> pkColumns) {
+        long hash = hashString(tableName);
+        for (String column : pkColumns) {
+            Object value = JdbcWriter.primaryKeyValue(record, column);
+            if (value == null) {
+                return 0;
+            }
+            hash = mix(hash * FNV_PRIME + hashValue(value));
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Hash of a row image: its column names and values, independent of column order.
+     * Returns 0 for a missing image.
+     */
+    public static long imageHash(Object value) {
+        long hash = 0;
+        if (value instanceof RowValue) {
+            RowValue row = (RowValue) value;
+            List<String> columns = row.getLayout().getColumns();
+            for (int i = 0; i < columns.size(); i++) {
+                hash += columnHash(columns.get(i), row.getValue(i));
+            }
+        } else if (value instanceof Struct) {
+            Struct struct = (Struct) value;
+            for (Field field : struct.schema().fields()) {
+                hash += columnHash(field.name(), struct.get(field));
+            }
+        } else if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                hash += columnHash(String.valueOf(entry.getKey()), entry.getValue());
+            }
+        } else {
+            return 0;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Decide whether a row must be written. A row whose image matches the committed image of
+     * its key is not; any other row is removed from the cache and staged. An image of 0
+     * (deletes, rows without an image) always stages a removal.
+     *
+     * @return false if the row is unchanged and can be skipped
+     */
+    public synchronized boolean admit(long key, long image) {
+        if (key == 0) {
+            return true;
+        }
+        int slot = find(key);
+        if (slot >= 0 && image != 0 && slots.get(2 * slot + 1) == image && resuming.isEmpty()) {
+            referenced[slot] = 1;
+            return false;
+        }
+        if (slot >= 0) {
+            remove(slot);
+        }
+        if (stagedCount * 2 == staged.length) {
+            long[] grown = new long[staged.length * 2];
+            System.arraycopy(staged, 0, grown, 0, staged.length);
+            staged = grown;
+        }
+        staged[2 * stagedCount] = key;
+        staged[2 * stagedCount + 1] = image;
+        stagedCount++;
+        return true;
+    }
+
+    /**
+     * The transaction that wrote the staged rows was committed: cache their images.
+     */
+    public synchronized void publish() {
+        for (int i = 0; i < stagedCount; i++) {
+            long key = staged[2 * i];
+            long image = staged[2 * i + 1];
+            int slot = find(key);
+            if (image == 0) {
+                if (slot >= 0) {
+                    remove(slot);
+                }
+            } else {
+                if (slot < 0) {
+                    slot = claim(key);
+                }
+                slots.put(2 * slot + 1, image);
+                referenced[slot] = 1;
+            }
+        }
+        stagedCount = 0;
+    }
+
+    /**
+     * The transaction that wrote the staged rows was rolled back: forget them.
+     */
+    public synchronized void discard() {
+        stagedCount = 0;
+    }
+
+    /**
+     * Drop all entries, e.g. after DDL.
+     */
+    public synchronized void clear() {
+        clearSlots();
+        stagedCount = 0;
+        restored.clear();
+        resuming.clear();
+    }
+
+    /**
+     * Cover newly assigned partitions. The cache is cleared unless it already covers them,
+     * since their rows may have been written by another task in the meantime. Partitions
+     * the file was saved with are covered pending {@link #resume}.
+     */
+    public synchronized void assign(Collection<TopicPartition> partitions) {
+        List<TopicPartition> uncovered = new ArrayList<>();
+        for (TopicPartition partition : partitions) {
+            Long offset = restored.remove(partition);
+            if (offset != null) {
+                covered.put(partition, offset);
+                resuming.put(partition, offset);
+            } else if (!covered.containsKey(partition)) {
+                uncovered.add(partition);
+            }
+        }
+        if (!uncovered.isEmpty()) {
+            if (size > 0) {
+                log.info("Clearing row image cache for newly assigned partitions " + uncovered);
+            }
+            clear();
+            for (TopicPartition partition : uncovered) {
+                covered.put(partition, -1L);
+            }
+        }
+    }
+
+    /**
+     * Report the offset a reassigned partition resumes from: the stored offset, or that of
+     * its first record. Until all reassigned partitions have resumed, no row is skipped; the
+     * cache is cleared if one resumes at another offset than it was saved with.
+     */
+    public synchronized void resume(TopicPartition partition, long offset) {
+        Long saved = resuming.remove(partition);
+        if (saved != null && saved != offset) {
+            log.info("Clearing row image cache: " + partition + " resumes at offset " + offset +
+                    ", the cache was saved at " + saved);
+            clear();
+        }
+    }
+
+    /**
+     * Whether a reassigned partition has not resumed yet.
+     */
+    public synchronized boolean isResuming() {
+        return !resuming.isEmpty();
+    }
+
+    /**
+     * Record the offsets up to which the published images are committed.
+     */
+    public synchronized void committed(Map<TopicPartition, Long> offsets) {
+        for (Map.Entry<TopicPartition, Long> entry : offsets.entrySet()) {
+            if (covered.containsKey(entry.getKey())) {
+                covered.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Stop covering revoked partitions.
+     */
+    public synchronized void revoke(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            covered.remove(partition);
+            resuming.remove(partition);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        stagedCount = 0;
+        if (channel == null) {
+            return;
+        }
+        try {
+            writeCovered();
+            force();
+            buffer.putInt(8, 1);
+            force();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private int find(long key) {
+        int start = (int) key & mask;
+        for (int i = 0; i < PROBE_SLOTS; i++) {
+            int slot = (start + i) & mask;
+            if (slots.get(2 * slot) == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Take a slot of the key's window: a free one, or else the first one not referenced
+     * since the clock last passed it.
+     */
+    private int claim(long key) {
+        int start = (int) key & mask;
+        for (int i = 0; i < PROBE_SLOTS; i++) {
+            int slot = (start + i) & mask;
+            if (slots.get(2 * slot) == 0) {
+                slots.put(2 * slot, key);
+                size++;
+                return slot;
+            }
+        }
+        // The window is full: the clock clears reference bits as it passes, so it finds an
+        // unreferenced slot within two passes over the window
+        for (int i = 0; ; i++) {
+            int slot = (start + (i % PROBE_SLOTS)) & mask;
+            if (referenced[slot] == 0) {
+                slots.put(2 * slot, key);
+                return slot;
+            }
+            referenced[slot] = 0;
+        }
+    }
+
+    private void remove(int slot) {
+        if (slots.get(2 * slot) != 0) {
+            size--;
+        }
+        slots.put(2 * slot, 0);
+        slots.put(2 * slot + 1, 0);
+        referenced[slot] = 0;
+    }
+
+    private void clearSlots() {
+        for (int i = 0; i < 2 * capacity; i++) {
+            slots.put(i, 0);
+        }
+        Arrays.fill(referenced, (byte) 0);
+        size = 0;
+    }
+
+    private void force() {
+        if (buffer instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) buffer).force();
+        }
+    }
+
+    private Path coveredFile() {
+        return file.resolveSibling(file.getFileName() + ".partitions");
+    }
+
+    private boolean readRestored() throws IOException {
+        Path path = coveredFile();
+        if (!Files.exists(path)) {
+            return false;
+        }
+        // topic:partition:offset
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            int offsetSeparator = line.lastIndexOf(':');
+            int separator = offsetSeparator > 0 ? line.lastIndexOf(':', offsetSeparator - 1) : -1;
+            if (separator > 0) {
+                restored.put(new TopicPartition(line.substring(0, separator),
+                                Integer.parseInt(line.substring(separator + 1, offsetSeparator))),
+                        Long.parseLong(line.substring(offsetSeparator + 1)));
+            }
+        }
+        return true;
+    }
+
+    private void writeCovered() throws IOException {
+        List<String> lines = new ArrayList<>(covered.size());
+        for (Map.Entry<TopicPartition, Long> entry : covered.entrySet()) {
+            TopicPartition partition = entry.getKey();
+            lines.add(partition.topic() + ":" + partition.partition() + ":" + entry.getValue());
+        }
+        Files.write(coveredFile(), lines, StandardCharsets.UTF_8);
+    }
+
+    private static long columnHash(String column, Object value) {
+        return mix(hashString(column) ^ Long.rotateLeft(hashValue(value), 29));
+    }
+
+    private static long hashValue(Object value) {
+        if (value == null) {
+            return NULL_HASH;
+        }
+        if (value instanceof String) {
+            return hashString((String) value);
+        }
+        if (value instanceof byte[]) {
+            return hashBytes(ByteBuffer.wrap((byte[]) value));
+        }
+        if (value instanceof ByteBuffer) {
+            return hashBytes(((ByteBuffer) value).duplicate());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return mix(Double.doubleToLongBits(((Number) value).doubleValue()));
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return mix(((Number) value).longValue());
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 2;
+        }
+        if (value instanceof Date) {
+            return mix(((Date) value).getTime());
+        }
+        if (value instanceof Struct || value instanceof Map) {
+            return imageHash(value);
+        }
+        if (value instanceof List) {
+            long hash = FNV_OFFSET;
+            for (Object element : (List<?>) value) {
+                hash = mix(hash * FNV_PRIME + hashValue(element));
+            }
+            return hash;
+        }
+        // BigDecimal and other values: by their canonical text
+        return hashString(value.toString());
+    }
+
+    private static long hashString(String value) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    private static long hashBytes(ByteBuffer bytes) {
+        long hash = FNV_OFFSET;
+        while (bytes.hasRemaining()) {
+            hash = (hash ^ (bytes.get() & 0xff)) * FNV_PRIME;
+        }
+        return mix(hash ^ 0x5bd1e995L);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
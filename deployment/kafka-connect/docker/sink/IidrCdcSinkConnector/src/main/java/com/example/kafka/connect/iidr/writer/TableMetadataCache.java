@@ -0,0 +1,239 @@
+package com.example.kafka.connect.iidr.writer;
+
+import com.example.kafka.connect.iidr.dialect.Dialect;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Caches catalog metadata of target tables: column SQL types and primary key columns.
+ *
+ * Entries are loaded lazily from DatabaseMetaData on first use, or in bulk up front
+ * with {@link #preload(Connection, String)}, and kept until the table is altered by the
+ * connector (auto.create / auto.evolve), which invalidates them. Entries are keyed by the
+ * identifier as normalized for metadata lookups by the dialect.
+ *
+ * The cache is thread-safe so that the tasks of a connector can share one instance
+ * (see {@link MetadataRegistry}). Lookups read without locking; a missing entry is loaded
+ * once, on the connection of the first caller, while concurrent callers wait for it. A load
+ * that overlaps an invalidation may have read the catalog before the DDL, so its result is
+ * handed to its callers but not kept.
+ */
+public class TableMetadataCache {
+
+    private static final Logger log = Logger.getLogger(TableMetadataCache.class.getName());
+
+    private final Dialect dialect;
+    private final Map<String, CompletableFuture<Map<String, Integer>>> columnTypes;
+    private final Map<String, CompletableFuture<List<String>>> primaryKeys;
+    private final Set<String> knownTables;
+    private final AtomicLong version;
+    private volatile boolean preloaded;
+
+    public TableMetadataCache(Dialect dialect) {
+        this.dialect = dialect;
+        this.columnTypes = new ConcurrentHashMap<>();
+        this.primaryKeys = new ConcurrentHashMap<>();
+        this.knownTables = ConcurrentHashMap.newKeySet();
+        this.version = new AtomicLong();
+    }
+
+    public Dialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * Get the SQL types of the table's columns, keyed by upper-case column name.
+     */
+    public Map<String, Integer> getColumnTypes(Connection connection, String tableName) throws SQLException {
+        String normalizedTableName = dialect.normalizeIdentifierForMetadata(tableName);
+        return load(columnTypes, normalizedTableName, () -> {
+            Map<String, Integer> types = new HashMap<>();
+            DatabaseMetaData meta = connection.getMetaData();
+            try (ResultSet rs = meta.getColumns(null, null, normalizedTableName, null)) {
+                while (rs.next()) {
+                    types.put(rs.getString("COLUMN_NAME").toUpperCase(), rs.getInt("DATA_TYPE"));
+                }
+            }
+            return Collections.unmodifiableMap(types);
+        });
+    }
+
+    /**
+     * Get the table's primary key columns in key sequence order, as stored in the catalog.
+     * Returns an empty list if the table has no primary key or does not exist yet.
+     */
+    public List<String> getPrimaryKeyColumns(Connection connection, String tableName) throws SQLException {
+        String normalizedTableName = dialect.normalizeIdentifierForMetadata(tableName);
+        return load(primaryKeys, normalizedTableName, () -> {
+            TreeMap<Short, String> bySequence = new TreeMap<>();
+            DatabaseMetaData meta = connection.getMetaData();
+            try (ResultSet rs = meta.getPrimaryKeys(null, null, normalizedTableName)) {
+                while (rs.next()) {
+                    bySequence.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+                }
+            }
+            List<String> pk = Collections.unmodifiableList(new ArrayList<>(bySequence.values()));
+            if (!pk.isEmpty()) {
+                log.info("Discovered primary key for table " + tableName + ": " + pk);
+            }
+            return pk;
+        });
+    }
+
+    /**
+     * Whether the table is known to exist in the target database.
+     */
+    public boolean isKnownTable(String tableName) {
+        return knownTables.contains(dialect.normalizeIdentifierForMetadata(tableName));
+    }
+
+    /**
+     * Record that the table exists, e.g. after it was found or created.
+     */
+    public void markKnownTable(String tableName) {
+        knownTables.add(dialect.normalizeIdentifierForMetadata(tableName));
+    }
+
+    /**
+     * Forget all cached metadata of a table, e.g. after DDL was executed against it.
+     * Bumps the cache version so that every user of the cache can drop state derived from it.
+     */
+    public void invalidate(String tableName) {
+        String normalizedTableName = dialect.normalizeIdentifierForMetadata(tableName);
+        columnTypes.remove(normalizedTableName);
+        primaryKeys.remove(normalizedTableName);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Version of the cache contents, incremented on every invalidation.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Load column types and primary keys of every table in a schema with bulk catalog queries.
+     *
+     * Columns are fetched with a single getColumns() call. Primary keys are fetched with a
+     * single getPrimaryKeys() call where the driver allows a null table name, otherwise
+     * one call per table. Only the first call on a shared cache queries the catalog.
+     *
+     * @param schema schema to load, or null/empty for the connection's current schema
+     * @return number of tables loaded, 0 if the cache was already preloaded
+     */
+    public synchronized int preload(Connection connection, String schema) throws SQLException {
+        if (preloaded) {
+            return 0;
+        }
+        long startVersion = version.get();
+        String catalog = connection.getCatalog();
+        String schemaPattern = schema == null || schema.trim().isEmpty() ? connection.getSchema() : schema.trim();
+        DatabaseMetaData meta = connection.getMetaData();
+
+        Map<String, Map<String, Integer>> loadedTypes = new HashMap<>();
+        try (ResultSet rs = meta.getColumns(catalog, schemaPattern, "%", null)) {
+            while (rs.next()) {
+                loadedTypes.computeIfAbsent(rs.getString("TABLE_NAME"), t -> new HashMap<>())
+                        .put(rs.getString("COLUMN_NAME").toUpperCase(), rs.getInt("DATA_TYPE"));
+            }
+        }
+
+        Map<String, TreeMap<Short, String>> loadedKeys = new HashMap<>();
+        try (ResultSet rs = meta.getPrimaryKeys(catalog, schemaPattern, null)) {
+            readPrimaryKeys(rs, loadedKeys);
+        } catch (SQLException e) {
+            log.fine("Bulk primary key lookup not supported (" + e.getMessage() + "), loading per table");
+            loadedKeys.clear();
+            for (String table : loadedTypes.keySet()) {
+                try (ResultSet rs = meta.getPrimaryKeys(catalog, schemaPattern, table)) {
+                    readPrimaryKeys(rs, loadedKeys);
+                }
+            }
+        }
+
+        if (version.get() != startVersion) {
+            // DDL ran meanwhile: the tables load lazily instead
+            log.fine("Metadata changed during preload, discarding " + loadedTypes.size() + " tables");
+            preloaded = true;
+            return 0;
+        }
+        for (Map.Entry<String, Map<String, Integer>> entry : loadedTypes.entrySet()) {
+            // Keyed like the lookups, by the identifier as the dialect normalizes it
+            String table = dialect.normalizeIdentifierForMetadata(entry.getKey());
+            TreeMap<Short, String> pk = loadedKeys.get(entry.getKey());
+            columnTypes.putIfAbsent(table,
+                    CompletableFuture.completedFuture(Collections.unmodifiableMap(entry.getValue())));
+            primaryKeys.putIfAbsent(table, CompletableFuture.completedFuture(pk == null
+                    ? Collections.emptyList()
+                    : Collections.unmodifiableList(new ArrayList<>(pk.values()))));
+            knownTables.add(table);
+        }
+        preloaded = true;
+        return loadedTypes.size();
+    }
+
+    private void readPrimaryKeys(ResultSet rs, Map<String, TreeMap<Short, String>> loadedKeys)
+            throws SQLException {
+        while (rs.next()) {
+            loadedKeys.computeIfAbsent(rs.getString("TABLE_NAME"), t -> new TreeMap<>())
+                    .put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+        }
+    }
+
+    /**
+     * Single-flight load: the first caller for a key runs the loader, others wait for its result.
+     * A failed load, or one that overlapped an invalidation, is removed so that the next caller
+     * loads again.
+     */
+    private <T> T load(Map<String, CompletableFuture<T>> cache, String key, MetadataLoader<T> loader)
+            throws SQLException {
+        CompletableFuture<T> future = cache.get(key);
+        if (future == null) {
+            long startVersion = version.get();
+            CompletableFuture<T> created = new CompletableFuture<>();
+            future = cache.putIfAbsent(key, created);
+            if (future == null) {
+                try {
+                    T value = loader.load();
+                    if (version.get() != startVersion) {
+                        cache.remove(key, created);
+                    }
+                    created.complete(value);
+                    return value;
+                } catch (SQLException | RuntimeException e) {
+                    cache.remove(key, created);
+                    created.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for metadata of " + key, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Failed to load metadata of " + key, cause);
+        }
+    }
+
+    @FunctionalInterface
+    private interface MetadataLoader<T> {
+        T load() throws SQLException;
+    }
+}
@@ -0,0 +1,382 @@
+package com.example.kafka.connect.iidr.writer;
+
+import com.example.kafka.connect.iidr.IidrCdcSinkConfig;
+import com.example.kafka.connect.iidr.metrics.SinkTaskMetrics;
+import com.example.kafka.connect.iidr.routing.TableRoutes.Route;
+import com.example.kafka.connect.iidr.writer.JdbcWriter.ProcessedRecord;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies the batches of several tables concurrently with weighted fair scheduling.
+ *
+ * Each table's batch is queued as slices of at most write.slice.size records, and a pool of
+ * worker connections (one {@link JdbcWriter} each) takes one slice at a time. A free worker
+ * picks the interactive tables (write.interactive.tables) first, then the table with the
+ * lowest virtual time, which advances by slice size / weight (write.table.weights). So a large
+ * refresh is interleaved with the other tables instead of holding a connection until done.
+ *
+ * A table sticks to the first worker that took it for the rest of the batch, so its slices
+ * are applied in order on one connection and never wait on their own row locks. Worker
+ * transactions are committed by {@link #commit()} after every write of the put() succeeded,
+ * like {@link WriteLanes}. DDL for the batches is run and committed before any slice is
+ * written, so it cannot commit earlier slices on MySQL.
+ *
+ * A table's queue holds at most its records of one put(), since put() waits for the run.
+ * Across puts, a table that falls behind is held back by flow control
+ * (flow.control.max.table.bytes), which pauses the partitions feeding it.
+ *
+ * Per table, the records waiting to be applied and the time slices waited are exported as
+ * the metrics table-queue-depth.&lt;table&gt; and table-queue-wait-ms.&lt;table&gt;, with the
+ * number of slices in table-queue-slices.&lt;table&gt;. A slice waits from the moment it
+ * could be applied: the start of the run for a table's first slice, the end of the
+ * previous slice for the others.
+ */
+public class TableScheduler implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(TableScheduler.class.getName());
+
+    public static final String QUEUE_DEPTH = "table-queue-depth.";
+    public static final String QUEUE_WAIT_MS = "table-queue-wait-ms.";
+    public static final String QUEUE_SLICES = "table-queue-slices.";
+
+    private final List<Connection> connections;
+    private final List<JdbcWriter> workers;
+    private final ExecutorService executor;
+    private final int sliceSize;
+    private final Map<String, Integer> weights;
+    private final Set<String> interactiveTables;
+    private final SinkTaskMetrics metrics;
+    private final Map<String, AtomicLong> queueDepths = new ConcurrentHashMap<>();
+
+    /**
+     * Create one worker per connection. The scheduler owns the connections and closes them.
+     */
+    public TableScheduler(List<Connection> connections, IidrCdcSinkConfig config,
+                          TableMetadataCache metadataCache, SinkTaskMetrics metrics) {
+        this.connections = connections;
+        this.workers = new ArrayList<>(connections.size());
+        for (Connection connection : connections) {
+            workers.add(new JdbcWriter(connection, config, metadataCache, metrics));
+        }
+        this.executor = Executors.newFixedThreadPool(connections.size());
+        this.sliceSize = config.getWriteSliceSize();
+        this.weights = config.getWriteTableWeights();
+        this.interactiveTables = config.getWriteInteractiveTables();
+        this.metrics = metrics;
+    }
+
+    /**
+     * Start applying the table batches on the workers, after running their DDL.
+     *
+     * @return handle to wait for (or abort) the writes
+     */
+    public Run submit(Map<String, List<ProcessedRecord>> batches, Map<String, Route> routes)
+            throws SQLException {
+        // The task normally ran the DDL already. If a table still needs some, run it once on
+        // the first worker and commit it alone, before any worker writes a slice
+        JdbcWriter first = workers.get(0);
+        for (Map.Entry<String, List<ProcessedRecord>> entry : batches.entrySet()) {
+            Route route = routes.get(entry.getKey());
+            if (first.needsDdl(entry.getKey(), entry.getValue(), route)) {
+                first.prepare(entry.getKey(), entry.getValue(), route);
+                first.commit();
+            }
+        }
+
+        List<TableQueue> queues = new ArrayList<>(batches.size());
+        for (Map.Entry<String, List<ProcessedRecord>> entry : batches.entrySet()) {
+            String table = entry.getKey();
+            queues.add(new TableQueue(table, entry.getValue(), routes.get(table),
+                    weights.getOrDefault(table, 1), interactiveTables.contains(table), queueDepth(table)));
+        }
+        Run run = new Run(queues);
+        int threads = Math.min(workers.size(), queues.size());
+        run.started(threads);
+        for (int i = 0; i < threads; i++) {
+            JdbcWriter worker = workers.get(i);
+            executor.execute(() -> run.work(worker));
+        }
+        return run;
+    }
+
+    /**
+     * Let every worker skip rows whose image is unchanged.
+     */
+    public void setRowImageCache(RowImageCache cache) {
+        for (JdbcWriter worker : workers) {
+            worker.setRowImageCache(cache);
+        }
+    }
+
+    /**
+     * Let every worker write upserts of new keys as INSERTs.
+     */
+    public void setKeyFilters(KeyFilters keyFilters) {
+        for (JdbcWriter worker : workers) {
+            worker.setKeyFilters(keyFilters);
+        }
+    }
+
+    /**
+     * Commit every worker connection.
+     */
+    public void commit() throws SQLException {
+        for (JdbcWriter worker : workers) {
+            worker.commit();
+        }
+    }
+
+    /**
+     * Roll back every worker connection, logging failures.
+     */
+    public void rollback() {
+        for (JdbcWriter worker : workers) {
+            try {
+                worker.rollback();
+            } catch (SQLException e) {
+                log.log(Level.SEVERE, "Failed to rollback scheduler worker", e);
+            }
+        }
+    }
+
+    private AtomicLong queueDepth(String table) {
+        AtomicLong depth = queueDepths.get(table);
+        if (depth == null) {
+            depth = queueDepths.computeIfAbsent(table, t -> {
+                AtomicLong d = new AtomicLong();
+                metrics.gauge(QUEUE_DEPTH + t, d::get);
+                return d;
+            });
+        }
+        return depth;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        executor.shutdownNow();
+        for (String table : queueDepths.keySet()) {
+            metrics.removeGauge(QUEUE_DEPTH + table);
+            metrics.removeCounter(QUEUE_WAIT_MS + table);
+            metrics.removeCounter(QUEUE_SLICES + table);
+        }
+        SQLException failure = null;
+        for (JdbcWriter worker : workers) {
+            try {
+                worker.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Pending slices of one table.
+     */
+    private static final class TableQueue {
+        private final String table;
+        private final List<ProcessedRecord> records;
+        private final Route route;
+        private final int weight;
+        private final boolean interactive;
+        private final AtomicLong depth;
+        private int next;
+        private int sliceFrom;
+        private int sliceTo;
+        private double virtualTime;
+        private JdbcWriter owner;
+        private boolean inFlight;
+        private long writeNanos;
+        // When the next slice could first be applied
+        private long readyNanos = System.nanoTime();
+
+        TableQueue(String table, List<ProcessedRecord> records, Route route, int weight, boolean interactive,
+                   AtomicLong depth) {
+            this.table = table;
+            this.records = records;
+            this.route = route;
+            this.weight = Math.max(1, weight);
+            this.interactive = interactive;
+            this.depth = depth;
+            depth.addAndGet(records.size());
+        }
+
+        boolean hasMore() {
+            return next < records.size();
+        }
+    }
+
+    /**
+     * One scheduled batch of tables.
+     */
+    public final class Run {
+        private final List<TableQueue> queues;
+        private int running;
+        private boolean aborted;
+        private SQLException failure;
+
+        private Run(List<TableQueue> queues) {
+            this.queues = queues;
+        }
+
+        /**
+         * Total time the workers spent applying a table's slices. Valid after {@link #await()}.
+         */
+        public synchronized long getWriteNanos(String table) {
+            for (TableQueue queue : queues) {
+                if (queue.table.equals(table)) {
+                    return queue.writeNanos;
+                }
+            }
+            return 0;
+        }
+
+        private synchronized void started(int threads) {
+            running += threads;
+        }
+
+        /**
+         * Wait until all slices are applied.
+         *
+         * @throws SQLException the first failure of any worker
+         */
+        public synchronized void await() throws SQLException {
+            waitForWorkers();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        /**
+         * Stop handing out slices and wait for the workers to finish their current one.
+         * Failures are ignored; the caller rolls back.
+         */
+        public synchronized void abort() {
+            aborted = true;
+            notifyAll();
+            waitForWorkers();
+        }
+
+        private void waitForWorkers() {
+            boolean interrupted = false;
+            while (running > 0) {
+                try {
+                    wait(TimeUnit.SECONDS.toMillis(1));
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    aborted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = new SQLException("Interrupted while waiting for table writes");
+                }
+            }
+        }
+
+        private void work(JdbcWriter worker) {
+            try {
+                TableQueue queue;
+                while ((queue = take(worker)) != null) {
+                    int from = queue.sliceFrom;
+                    int to = queue.sliceTo;
+                    long start = System.nanoTime();
+                    metrics.add(QUEUE_WAIT_MS + queue.table,
+                            TimeUnit.NANOSECONDS.toMillis(start - queue.readyNanos));
+                    metrics.increment(QUEUE_SLICES + queue.table);
+                    try {
+                        worker.write(queue.table, queue.records.subList(from, to), queue.route);
+                    } catch (SQLException | RuntimeException e) {
+                        fail(e, queue.table);
+                    } finally {
+                        queue.writeNanos += System.nanoTime() - start;
+                        queue.depth.addAndGet(from - to);
+                        release(queue);
+                    }
+                }
+            } finally {
+                finished();
+            }
+        }
+
+        /**
+         * Pick the next slice for a worker: interactive tables before bulk ones, then the
+         * lowest virtual time, among idle tables that are not owned by another worker.
+         */
+        private synchronized TableQueue take(JdbcWriter worker) {
+            if (aborted || failure != null) {
+                return null;
+            }
+            TableQueue best = null;
+            for (TableQueue queue : queues) {
+                if (queue.hasMore() && !queue.inFlight && (queue.owner == null || queue.owner == worker)
+                        && (best == null || before(queue, best))) {
+                    best = queue;
+                }
+            }
+            if (best != null) {
+                best.owner = worker;
+                best.inFlight = true;
+                best.sliceFrom = best.next;
+                best.sliceTo = Math.min(best.records.size(), best.next + sliceSize);
+                best.next = best.sliceTo;
+                best.virtualTime += (double) (best.sliceTo - best.sliceFrom) / best.weight;
+            }
+            return best;
+        }
+
+        private boolean before(TableQueue a, TableQueue b) {
+            if (a.interactive != b.interactive) {
+                return a.interactive;
+            }
+            return a.virtualTime < b.virtualTime;
+        }
+
+        private synchronized void release(TableQueue queue) {
+            queue.inFlight = false;
+            queue.readyNanos = System.nanoTime();
+        }
+
+        private synchronized void fail(Exception e, String table) {
+            if (failure == null) {
+                failure = e instanceof SQLException
+                        ? (SQLException) e
+                        : new SQLException("Failed to write table " + table, e);
+            }
+            // Skip the rest of every queue
+            for (TableQueue queue : queues) {
+                queue.depth.addAndGet(queue.next - queue.records.size());
+                queue.next = queue.records.size();
+            }
+            notifyAll();
+        }
+
+        private synchronized void finished() {
+            running--;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.kafka.connect.iidr.writer;
+
+import com.example.kafka.connect.iidr.metrics.SinkTaskMetrics;
+import com.example.kafka.connect.iidr.util.CalendarFields;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Binds a record value to a statement parameter of a known column type.
+ *
+ * One converter is resolved per column from the cached column metadata when a statement's
+ * {@link ColumnBinder} is built, so binding a row needs no per-value type dispatch. String
+ * values bound to temporal, numeric and boolean columns are parsed without throwing on the
+ * hot path; values that do not match the expected shape go through the lenient JDBC parsers
+ * and, failing that, setObject(), and are counted as conversion failures.
+ */
+@FunctionalInterface
+interface ValueConverter {
+
+    String CONVERSION_FAILURES = "conversion-failures";
+
+    void bind(PreparedStatement ps, int index, Object value) throws SQLException;
+
+    /**
+     * Resolve the converter for a column.
+     *
+     * @param sqlType column type from java.sql.Types, or null if the column is unknown to the catalog
+     */
+    static ValueConverter forSqlType(Integer sqlType, int lobStreamThreshold, SinkTaskMetrics metrics) {
+        ValueConverter generic = (ps, index, value) -> {
+            if (!LobBinding.bindIfLarge(ps, index, value, sqlType, lobStreamThreshold)) {
+                ps.setObject(index, value);
+            }
+        };
+        if (sqlType == null) {
+            return generic;
+        }
+
+        switch (sqlType) {
+            case Types.TIMESTAMP:
+                return strings(generic, metrics, ValueConverter::bindTimestamp);
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return strings(generic, metrics, (ps, index, str) -> {
+                    OffsetDateTime odt = Parsers.parseOffsetDateTime(str);
+                    if (odt != null) {
+                        ps.setObject(index, odt);
+                        return true;
+                    }
+                    return bindTimestamp(ps, index, str);
+                });
+            case Types.DATE:
+                return strings(generic, metrics, (ps, index, str) -> {
+                    LocalDate date = Parsers.parseDate(str);
+                    if (date != null) {
+                        ps.setDate(index, java.sql.Date.valueOf(date));
+                        return true;
+                    }
+                    try {
+                        ps.setDate(index, java.sql.Date.valueOf(str.length() > 10 ? str.substring(0, 10) : str));
+                        return true;
+                    } catch (IllegalArgumentException e) {
+                        return false;
+                    }
+                });
+            case Types.TIME:
+            case Types.TIME_WITH_TIMEZONE:
+                return strings(generic, metrics, (ps, index, str) -> {
+                    LocalTime time = Parsers.parseTime(str);
+                    if (time != null) {
+                        ps.setTime(index, Time.valueOf(time));
+                        return true;
+                    }
+                    try {
+                        ps.setTime(index, Time.valueOf(str));
+                        return true;
+                    } catch (IllegalArgumentException e) {
+                        return false;
+                    }
+                });
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return strings(generic, metrics, (ps, index, str) -> {
+                    if (!Parsers.isDecimal(str)) {
+                        return false;
+                    }
+                    BigDecimal decimal;
+                    try {
+                        decimal = new BigDecimal(str);
+                    } catch (NumberFormatException e) {
+                        // Scale out of range despite the bounded exponent, e.g. a very long fraction
+                        return false;
+                    }
+                    ps.setBigDecimal(index, decimal);
+                    return true;
+                });
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return strings(generic, metrics, (ps, index, str) -> {
+                    long parsed = Parsers.parseLong(str);
+                    if (parsed == Parsers.NOT_A_NUMBER) {
+                        return false;
+                    }
+                    if (sqlType != Types.BIGINT && parsed >= Integer.MIN_VALUE && parsed <= Integer.MAX_VALUE) {
+                        ps.setInt(index, (int) parsed);
+                    } else {
+                        ps.setLong(index, parsed);
+                    }
+                    return true;
+                });
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return strings(generic, metrics, (ps, index, str) -> {
+                    if (!Parsers.isDecimal(str)) {
+                        return false;
+                    }
+                    ps.setDouble(index, Double.parseDouble(str));
+                    return true;
+                });
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return strings(generic, metrics, (ps, index, str) -> {
+                    if ("true".equalsIgnoreCase(str) || "1".equals(str)) {
+                        ps.setBoolean(index, true);
+                        return true;
+                    }
+                    if ("false".equalsIgnoreCase(str) || "0".equals(str)) {
+                        ps.setBoolean(index, false);
+                        return true;
+                    }
+                    return false;
+                });
+            default:
+                return generic;
+        }
+    }
+
+    private static boolean bindTimestamp(PreparedStatement ps, int index, String str) throws SQLException {
+        LocalDateTime ldt = Parsers.parseDateTime(str);
+        if (ldt != null) {
+            ps.setTimestamp(index, Timestamp.valueOf(ldt));
+            return true;
+        }
+        try {
+            ps.setTimestamp(index, Timestamp.valueOf(str.replace('T', ' ')));
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Converter that applies a string conversion to String values and binds everything else,
+     * including strings the conversion rejects, with the generic converter.
+     */
+    private static ValueConverter strings(ValueConverter generic, SinkTaskMetrics metrics, StringBinder binder) {
+        return (ps, index, value) -> {
+            if (value instanceof String) {
+                if (binder.bind(ps, index, (String) value)) {
+                    return;
+                }
+                metrics.increment(CONVERSION_FAILURES);
+            }
+            generic.bind(ps, index, value);
+        };
+    }
+
+    @FunctionalInterface
+    interface StringBinder {
+        /**
+         * @return true if the value was bound, false if it has an unexpected shape
+         */
+        boolean bind(PreparedStatement ps, int index, String value) throws SQLException;
+    }
+
+    /**
+     * Exception-free parsers for the canonical string forms of column values.
+     */
+    final class Parsers {
+
+        static final long NOT_A_NUMBER = Long.MIN_VALUE;
+        // Larger exponents overflow the int scale of BigDecimal
+        private static final int MAX_EXPONENT_DIGITS = 9;
+        private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+
+        private Parsers() {
+        }
+
+        /**
+         * Parse "yyyy-MM-dd HH:mm:ss[.fffffffff]" (or with 'T' separator), null if the shape differs.
+         */
+        static LocalDateTime parseDateTime(String str) {
+            int len = str.length();
+            if (len < 19 || (str.charAt(10) != ' ' && str.charAt(10) != 'T')) {
+                return null;
+            }
+            LocalDate date = parseDate(str);
+            LocalTime time = date != null ? parseClock(str, 11) : null;
+            if (time == null) {
+                return null;
+            }
+            int nanos = 0;
+            if (len > 19) {
+                if (str.charAt(19) != '.' || len > 29) {
+                    return null;
+                }
+                int scale = 100_000_000;
+                for (int i = 20; i < len; i++) {
+                    int d = str.charAt(i) - '0';
+                    if (d < 0 || d > 9) {
+                        return null;
+                    }
+                    nanos += d * scale;
+                    scale /= 10;
+                }
+            }
+            return LocalDateTime.of(date, time.withNano(nanos));
+        }
+
+        /**
+         * Parse a date-time as accepted by {@link #parseDateTime} followed by an ISO offset
+         * ("Z", "+HH:mm", "+HHmm" or "+HH"), null if the shape differs.
+         */
+        static OffsetDateTime parseOffsetDateTime(String str) {
+            int len = str.length();
+            if (len < 20) {
+                return null;
+            }
+            int offsetStart;
+            ZoneOffset offset;
+            if (str.charAt(len - 1) == 'Z') {
+                offsetStart = len - 1;
+                offset = ZoneOffset.UTC;
+            } else {
+                offsetStart = Math.max(str.lastIndexOf('+'), str.lastIndexOf('-'));
+                if (offsetStart < 19) {
+                    return null;
+                }
+                int offsetLength = len - offsetStart - 1;
+                int minutes;
+                if (offsetLength == 2) {
+                    minutes = 0;
+                } else if (offsetLength == 4) {
+                    minutes = CalendarFields.digits(str, offsetStart + 3, 2);
+                } else if (offsetLength == 5 && str.charAt(offsetStart + 3) == ':') {
+                    minutes = CalendarFields.digits(str, offsetStart + 4, 2);
+                } else {
+                    return null;
+                }
+                int hours = CalendarFields.digits(str, offsetStart + 1, 2);
+                int seconds = hours * 3600 + minutes * 60;
+                if (hours < 0 || minutes < 0 || minutes > 59 || seconds > MAX_OFFSET_SECONDS) {
+                    return null;
+                }
+                offset = ZoneOffset.ofTotalSeconds(str.charAt(offsetStart) == '-' ? -seconds : seconds);
+            }
+            LocalDateTime ldt = parseDateTime(str.substring(0, offsetStart));
+            return ldt != null ? OffsetDateTime.of(ldt, offset) : null;
+        }
+
+        /**
+         * Parse the leading "yyyy-MM-dd" of a string, null if the shape or date is invalid.
+         */
+        static LocalDate parseDate(String str) {
+            if (str.length() < 10 || (str.length() > 10 && str.charAt(10) != ' ' && str.charAt(10) != 'T')
+                    || str.charAt(4) != '-' || str.charAt(7) != '-') {
+                return null;
+            }
+            int year = CalendarFields.digits(str, 0, 4);
+            int month = CalendarFields.digits(str, 5, 2);
+            int day = CalendarFields.digits(str, 8, 2);
+            if (year < 1 || month < 1 || month > 12 || day < 1 || day > CalendarFields.lengthOfMonth(year, month)) {
+                return null;
+            }
+            return LocalDate.of(year, month, day);
+        }
+
+        /**
+         * Parse "HH:mm:ss", null if the shape or time is invalid.
+         */
+        static LocalTime parseTime(String str) {
+            return str.length() == 8 ? parseClock(str, 0) : null;
+        }
+
+        private static LocalTime parseClock(String str, int start) {
+            if (str.charAt(start + 2) != ':' || str.charAt(start + 5) != ':') {
+                return null;
+            }
+            int hour = CalendarFields.digits(str, start, 2);
+            int minute = CalendarFields.digits(str, start + 3, 2);
+            int second = CalendarFields.digits(str, start + 6, 2);
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+                return null;
+            }
+            return LocalTime.of(hour, minute, second);
+        }
+
+        /**
+         * Parse an optionally signed decimal integer, NOT_A_NUMBER on bad shape or overflow.
+         */
+        static long parseLong(String str) {
+            int len = str.length();
+            if (len == 0 || len > 20) {
+                return NOT_A_NUMBER;
+            }
+            int i = 0;
+            boolean negative = false;
+            char first = str.charAt(0);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                i = 1;
+                if (len == 1) {
+                    return NOT_A_NUMBER;
+                }
+            }
+            long value = 0;
+            for (; i < len; i++) {
+                int d = str.charAt(i) - '0';
+                if (d < 0 || d > 9 || value < (Long.MIN_VALUE + d) / 10) {
+                    return NOT_A_NUMBER;
+                }
+                value = value * 10 - d;
+            }
+            if (!negative) {
+                if (value == Long.MIN_VALUE) {
+                    return NOT_A_NUMBER;
+                }
+                value = -value;
+            }
+            return value;
+        }
+
+        /**
+         * Whether a string is a plain decimal number: [sign] digits [. digits] [e [sign] digits],
+         * with at most {@value #MAX_EXPONENT_DIGITS} exponent digits.
+         */
+        static boolean isDecimal(String str) {
+            int len = str.length();
+            int i = 0;
+            if (i < len && (str.charAt(i) == '-' || str.charAt(i) == '+')) {
+                i++;
+            }
+            int mantissaDigits = 0;
+            while (i < len && isDigit(str.charAt(i))) {
+                i++;
+                mantissaDigits++;
+            }
+            if (i < len && str.charAt(i) == '.') {
+                i++;
+                while (i < len && isDigit(str.charAt(i))) {
+                    i++;
+                    mantissaDigits++;
+                }
+            }
+            if (mantissaDigits == 0) {
+                return false;
+            }
+            if (i < len && (str.charAt(i) == 'e' || str.charAt(i) == 'E')) {
+                i++;
+                if (i < len && (str.charAt(i) == '-' || str.charAt(i) == '+')) {
+                    i++;
+                }
+                int exponentDigits = 0;
+                while (i < len && isDigit(str.charAt(i))) {
+                    i++;
+                    exponentDigits++;
+                }
+                if (exponentDigits == 0 || exponentDigits > MAX_EXPONENT_DIGITS) {
+                    return false;
+                }
+            }
+            return i == len;
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.kafka.connect.iidr.writer;
+
+import com.example.kafka.connect.iidr.IidrCdcSinkConfig;
+import com.example.kafka.connect.iidr.metrics.SinkTaskMetrics;
+import com.example.kafka.connect.iidr.routing.TableRoutes.Route;
+import com.example.kafka.connect.iidr.writer.JdbcWriter.ProcessedRecord;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies the rows of one hot table concurrently on several connections.
+ *
+ * A table's batch is split into lanes by a hash of each record's primary key tuple, so all
+ * changes of one key go to the same lane in their original order, and the lanes are written
+ * in parallel, each by its own {@link JdbcWriter} and connection.
+ *
+ * Commit behaviour: lane transactions are left open until {@link #commit()}, which the task
+ * calls after all writes of a put() succeeded and before committing its main connection. If
+ * any lane fails, the task rolls back every lane. Commits of separate connections are not
+ * atomic, so a failure between lane commits leaves some lanes applied; the batch is then
+ * replayed, which is idempotent for upserts and deletes. auto.create / auto.evolve DDL runs
+ * on the first lane and is committed before the lanes write.
+ */
+public class WriteLanes implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(WriteLanes.class.getName());
+
+    private final List<Connection> connections;
+    private final List<JdbcWriter> lanes;
+    private final ExecutorService executor;
+
+    /**
+     * Create one lane per connection. The lanes own the connections and close them.
+     */
+    public WriteLanes(List<Connection> connections, IidrCdcSinkConfig config, TableMetadataCache metadataCache,
+                      SinkTaskMetrics metrics) {
+        this.connections = connections;
+        this.lanes = new ArrayList<>(connections.size());
+        for (Connection connection : connections) {
+            lanes.add(new JdbcWriter(connection, config, metadataCache, metrics));
+        }
+        this.executor = Executors.newFixedThreadPool(connections.size());
+    }
+
+    public int size() {
+        return lanes.size();
+    }
+
+    /**
+     * Write a table's batch across the lanes and wait until every lane has written its part.
+     */
+    public void write(String tableName, List<ProcessedRecord> records, Route route) throws SQLException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        // The task runs a put's DDL before any lane writes. Should a table still need DDL, run
+        // it once on lane 0 and commit it alone, so lanes do not race on it or wait on each
+        // other's locks; lane 0 has no uncommitted rows of this put at this point
+        JdbcWriter first = lanes.get(0);
+        if (first.needsDdl(tableName, records, route)) {
+            first.prepare(tableName, records, route);
+            first.commit();
+        }
+
+        List<String> pkColumns = first.getPrimaryKeyColumns(tableName, records.get(0), route);
+        List<List<ProcessedRecord>> split = new ArrayList<>(lanes.size());
+        for (int i = 0; i < lanes.size(); i++) {
+            split.add(new ArrayList<>());
+        }
+        for (ProcessedRecord record : records) {
+            split.get(laneOf(record, pkColumns)).add(record);
+        }
+
+        List<Future<?>> futures = new ArrayList<>(lanes.size());
+        for (int i = 0; i < lanes.size(); i++) {
+            List<ProcessedRecord> part = split.get(i);
+            if (part.isEmpty()) {
+                continue;
+            }
+            JdbcWriter lane = lanes.get(i);
+            futures.add(executor.submit(() -> {
+                lane.write(tableName, part, route);
+                return null;
+            }));
+        }
+
+        SQLException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = failure != null ? failure : new SQLException("Interrupted while writing lanes", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                failure = failure != null ? failure : cause instanceof SQLException
+                        ? (SQLException) cause
+                        : new SQLException("Failed to write lane of " + tableName, cause);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Let every lane skip rows whose image is unchanged.
+     */
+    public void setRowImageCache(RowImageCache cache) {
+        for (JdbcWriter lane : lanes) {
+            lane.setRowImageCache(cache);
+        }
+    }
+
+    /**
+     * Let every lane write upserts of new keys as INSERTs.
+     */
+    public void setKeyFilters(KeyFilters keyFilters) {
+        for (JdbcWriter lane : lanes) {
+            lane.setKeyFilters(keyFilters);
+        }
+    }
+
+    /**
+     * Commit every lane connection.
+     */
+    public void commit() throws SQLException {
+        for (JdbcWriter lane : lanes) {
+            lane.commit();
+        }
+    }
+
+    /**
+     * Roll back every lane connection, logging failures.
+     */
+    public void rollback() {
+        for (JdbcWriter lane : lanes) {
+            try {
+                lane.rollback();
+            } catch (SQLException e) {
+                log.log(Level.SEVERE, "Failed to rollback write lane", e);
+            }
+        }
+    }
+
+    private int laneOf(ProcessedRecord record, List<String> pkColumns) {
+        int hash;
+        if (pkColumns.isEmpty()) {
+            hash = Objects.hashCode(record.getKey());
+        } else {
+            hash = 1;
+            for (String column : pkColumns) {
+                hash = 31 * hash + Objects.hashCode(JdbcWriter.primaryKeyValue(record, column));
+            }
+        }
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, lanes.size());
+    }
+
+    @Override
+    public void close() throws SQLException {
+        executor.shutdownNow();
+        SQLException failure = null;
+        for (JdbcWriter lane : lanes) {
+            try {
+                lane.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
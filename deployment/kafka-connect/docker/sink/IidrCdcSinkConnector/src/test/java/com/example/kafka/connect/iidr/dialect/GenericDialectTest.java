@@ -0,0 +1,73 @@
+package com.example.kafka.connect.iidr.dialect;
+
+import com.example.kafka.connect.iidr.operation.CdcOperation;
+import com.example.kafka.connect.iidr.writer.JdbcWriter.ProcessedRecord;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GenericDialectTest {
+
+    private final GenericDialect dialect = new GenericDialect();
+
+    @Test
+    void insertBindsEveryColumn() {
+        assertEquals("INSERT INTO T (ID, NAME) VALUES (?, ?)",
+                dialect.buildInsertSql("T", Arrays.asList("ID", "NAME")));
+    }
+
+    @Test
+    void updateSetsNonKeyColumnsByKey() {
+        assertEquals("UPDATE T SET NAME = ?, QTY = ? WHERE ID = ? AND SEQ = ?",
+                dialect.buildUpdateSql("T", Arrays.asList("ID", "NAME", "SEQ", "QTY"),
+                        Arrays.asList("ID", "SEQ")));
+    }
+
+    @Test
+    void upsertFallsBackToInsert() {
+        assertEquals("INSERT INTO T (ID, NAME) VALUES (?, ?)",
+                dialect.buildUpsertSql("T", Arrays.asList("ID", "NAME"), Collections.singletonList("ID")));
+    }
+
+    @Test
+    void deleteMatchesEveryKeyColumn() {
+        assertEquals("DELETE FROM T WHERE ID = ? AND SEQ = ?",
+                dialect.buildDeleteSql("T", Arrays.asList("ID", "SEQ")));
+    }
+
+    @Test
+    void conditionalDeleteKeepsNewerRows() {
+        assertEquals("DELETE FROM T WHERE ID = ? AND (TS IS NULL OR TS <= COALESCE(?, TS))",
+                dialect.buildConditionalDeleteSql("T", Collections.singletonList("ID"), "TS"));
+    }
+
+    @Test
+    void noConditionalUpsert() {
+        assertEquals(null, dialect.buildConditionalUpsertSql("T", Arrays.asList("ID", "TS"),
+                Collections.singletonList("ID"), "TS"));
+    }
+
+    @Test
+    void createTableFromStructSchema() {
+        Schema schema = SchemaBuilder.struct()
+                .field("ID", Schema.INT64_SCHEMA)
+                .field("NAME", Schema.OPTIONAL_STRING_SCHEMA)
+                .build();
+        Struct value = new Struct(schema).put("ID", 1L).put("NAME", "a");
+        ProcessedRecord sample = new ProcessedRecord("T", CdcOperation.INSERT, null, value,
+                null, schema, null);
+        List<String> pk = Collections.singletonList("ID");
+
+        assertEquals("CREATE TABLE T (ID " + dialect.getColumnType(Schema.INT64_SCHEMA) +
+                        ", NAME " + dialect.getColumnType(Schema.OPTIONAL_STRING_SCHEMA) +
+                        ", PRIMARY KEY (ID))",
+                dialect.buildCreateTableSql("T", sample, pk));
+    }
+}
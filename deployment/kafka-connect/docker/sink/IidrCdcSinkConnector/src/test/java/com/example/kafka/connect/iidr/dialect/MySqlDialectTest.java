@@ -0,0 +1,35 @@
+package com.example.kafka.connect.iidr.dialect;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MySqlDialectTest {
+
+    private final MySqlDialect dialect = new MySqlDialect();
+
+    @Test
+    void upsertUpdatesEveryColumnOnDuplicateKey() {
+        assertEquals("INSERT INTO T (ID, NAME) VALUES (?, ?) " +
+                        "ON DUPLICATE KEY UPDATE ID = VALUES(ID), NAME = VALUES(NAME)",
+                dialect.buildUpsertSql("T", Arrays.asList("ID", "NAME"), Collections.singletonList("ID")));
+    }
+
+    @Test
+    void conditionalUpsertAssignsChangeTimeLast() {
+        String current = "VALUES(TS) IS NULL OR TS IS NULL OR VALUES(TS) >= TS";
+        assertEquals("INSERT INTO T (ID, TS, NAME) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE " +
+                        "NAME = IF(" + current + ", VALUES(NAME), NAME), " +
+                        "TS = IF(VALUES(TS) IS NOT NULL AND (TS IS NULL OR VALUES(TS) >= TS), VALUES(TS), TS)",
+                dialect.buildConditionalUpsertSql("T", Arrays.asList("ID", "TS", "NAME"),
+                        Collections.singletonList("ID"), "TS"));
+    }
+
+    @Test
+    void changeTimesKeepMicroseconds() {
+        assertEquals("DATETIME(6)", dialect.getTimestampColumnType());
+    }
+}
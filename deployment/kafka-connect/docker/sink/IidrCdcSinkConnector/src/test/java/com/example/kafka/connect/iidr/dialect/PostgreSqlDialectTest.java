@@ -0,0 +1,39 @@
+package com.example.kafka.connect.iidr.dialect;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PostgreSqlDialectTest {
+
+    private final PostgreSqlDialect dialect = new PostgreSqlDialect();
+
+    @Test
+    void upsertUpdatesNonKeyColumnsOnConflict() {
+        assertEquals("INSERT INTO T (ID, NAME) VALUES (?, ?) ON CONFLICT (ID) DO UPDATE SET NAME = EXCLUDED.NAME",
+                dialect.buildUpsertSql("T", Arrays.asList("ID", "NAME"), Collections.singletonList("ID")));
+    }
+
+    @Test
+    void upsertOfKeyOnlyTableDoesNothingOnConflict() {
+        assertEquals("INSERT INTO T (A, B) VALUES (?, ?) ON CONFLICT (A, B) DO NOTHING",
+                dialect.buildUpsertSql("T", Arrays.asList("A", "B"), Arrays.asList("A", "B")));
+    }
+
+    @Test
+    void conditionalUpsertSkipsOlderChanges() {
+        assertEquals("INSERT INTO T AS cur (ID, NAME, TS) VALUES (?, ?, ?) ON CONFLICT (ID) " +
+                        "DO UPDATE SET NAME = EXCLUDED.NAME, TS = COALESCE(EXCLUDED.TS, cur.TS) " +
+                        "WHERE EXCLUDED.TS IS NULL OR cur.TS IS NULL OR EXCLUDED.TS >= cur.TS",
+                dialect.buildConditionalUpsertSql("T", Arrays.asList("ID", "NAME", "TS"),
+                        Collections.singletonList("ID"), "TS"));
+    }
+
+    @Test
+    void metadataIdentifiersAreLowerCase() {
+        assertEquals("orders", dialect.normalizeIdentifierForMetadata("ORDERS"));
+    }
+}
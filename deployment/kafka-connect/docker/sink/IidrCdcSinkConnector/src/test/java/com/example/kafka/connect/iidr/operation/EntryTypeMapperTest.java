@@ -0,0 +1,27 @@
+package com.example.kafka.connect.iidr.operation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EntryTypeMapperTest {
+
+    @Test
+    void characterLookupMatchesStringLookup() {
+        for (String code : EntryTypeMapper.getValidEntryTypes()) {
+            CdcOperation expected = EntryTypeMapper.mapEntryType(code);
+            assertEquals(expected, EntryTypeMapper.mapEntryType(code.charAt(0), code.charAt(1)), code);
+            assertEquals(expected, EntryTypeMapper.mapEntryType(
+                    Character.toLowerCase(code.charAt(0)), Character.toLowerCase(code.charAt(1))), code);
+        }
+    }
+
+    @Test
+    void unknownCodesMapToNull() {
+        assertNull(EntryTypeMapper.mapEntryType('Z', 'Z'));
+        assertNull(EntryTypeMapper.mapEntryType('P', ' '));
+        assertNull(EntryTypeMapper.mapEntryType('[', 'T'));
+        assertNull(EntryTypeMapper.mapEntryType('\u0130', 'T'));
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.kafka.connect.iidr.spill;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillLogTest {
+
+    private static final int SEGMENT_BYTES = 1024;
+    private static final long MAX_BYTES = 1 << 20;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void framesAreRecoveredInOrder() throws Exception {
+        try (SpillLog spill = new SpillLog(dir, SEGMENT_BYTES, MAX_BYTES)) {
+            assertTrue(spill.append(bytes("a")));
+            assertTrue(spill.append(bytes("b")));
+            assertTrue(spill.append(bytes("c")));
+        }
+
+        try (SpillLog spill = new SpillLog(dir, SEGMENT_BYTES, MAX_BYTES)) {
+            List<SpillLog.Frame> frames = spill.frames();
+            assertEquals(Arrays.asList("a", "b", "c"), payloads(frames));
+            assertEquals(0, frames.get(0).getSequence());
+            assertEquals(2, frames.get(2).getSequence());
+        }
+    }
+
+    @Test
+    void drainPositionSurvivesReopen() throws Exception {
+        try (SpillLog spill = new SpillLog(dir, SEGMENT_BYTES, MAX_BYTES)) {
+            spill.append(bytes("a"));
+            spill.append(bytes("b"));
+            spill.advance(spill.peek());
+        }
+
+        try (SpillLog spill = new SpillLog(dir, SEGMENT_BYTES, MAX_BYTES)) {
+            assertEquals(Collections.singletonList("b"), payloads(spill.frames()));
+            spill.append(bytes("c"));
+            assertEquals(2, spill.frames().get(1).getSequence());
+        }
+    }
+
+    @Test
+    void tornFrameEndsRecovery() throws Exception {
+        try (SpillLog spill = new SpillLog(dir, SEGMENT_BYTES, MAX_BYTES)) {
+            spill.append(bytes("first"));
+            spill.append(bytes("second"));
+        }
+        // Flip a payload byte of the second frame, after the first frame and its own header
+        try (FileChannel channel = FileChannel.open(segments().get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes("X")), 16 + 5 + 16);
+        }
+
+        try (SpillLog spill = new SpillLog(dir, SEGMENT_BYTES, MAX_BYTES)) {
+            assertEquals(Collections.singletonList("first"), payloads(spill.frames()));
+            assertEquals(16 + 5, spill.size());
+
+            spill.append(bytes("third"));
+            assertEquals(Arrays.asList("first", "third"), payloads(spill.frames()));
+        }
+    }
+
+    @Test
+    void drainedSegmentsAreDeleted() throws Exception {
+        try (SpillLog spill = new SpillLog(dir, 64, MAX_BYTES)) {
+            // Each 46-byte frame takes a segment of its own
+            for (int i = 0; i < 3; i++) {
+                spill.append(new byte[30]);
+            }
+            assertEquals(3, segments().size());
+
+            spill.advance(spill.peek());
+            assertEquals(2, segments().size());
+            spill.advance(spill.peek());
+            spill.advance(spill.peek());
+
+            assertTrue(spill.isEmpty());
+            assertNull(spill.peek());
+            assertEquals(0, segments().size());
+        }
+
+        try (SpillLog spill = new SpillLog(dir, 64, MAX_BYTES)) {
+            assertTrue(spill.isEmpty());
+        }
+    }
+
+    @Test
+    void appendBeyondCapIsRefused() throws Exception {
+        try (SpillLog spill = new SpillLog(dir, SEGMENT_BYTES, 40)) {
+            assertTrue(spill.append(new byte[20]));
+            assertFalse(spill.append(new byte[20]));
+            assertEquals(36, spill.size());
+        }
+    }
+
+    @Test
+    void fencesCoverEarlierFramesAndSurviveReopen() throws Exception {
+        TopicPartition partition = new TopicPartition("cdc", 0);
+        try (SpillLog spill = new SpillLog(dir, SEGMENT_BYTES, MAX_BYTES)) {
+            spill.append(bytes("a"));
+            spill.fence(Collections.singletonList(partition));
+            spill.append(bytes("b"));
+        }
+
+        try (SpillLog spill = new SpillLog(dir, SEGMENT_BYTES, MAX_BYTES)) {
+            List<SpillLog.Frame> frames = spill.frames();
+            assertTrue(spill.isFenced(partition, frames.get(0).getSequence()));
+            assertFalse(spill.isFenced(partition, frames.get(1).getSequence()));
+            assertFalse(spill.isFenced(new TopicPartition("cdc", 1), frames.get(0).getSequence()));
+        }
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> segments = new ArrayList<>();
+            files.filter(path -> path.getFileName().toString().startsWith("segment-"))
+                    .sorted()
+                    .forEach(segments::add);
+            return segments;
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> payloads(List<SpillLog.Frame> frames) {
+        List<String> payloads = new ArrayList<>();
+        for (SpillLog.Frame frame : frames) {
+            ByteBuffer payload = frame.getPayload();
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            payloads.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return payloads;
+    }
+}
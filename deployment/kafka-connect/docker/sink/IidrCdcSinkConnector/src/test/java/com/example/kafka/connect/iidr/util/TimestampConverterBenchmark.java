@@ -0,0 +1,74 @@
+package com.example.kafka.connect.iidr.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A_TIMSTAMP conversion: the fixed-layout fast path against the java.time path it replaced.
+ *
+ * Run with
+ * {@code mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt} and
+ * {@code java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.example.kafka.connect.iidr.util.TimestampConverterBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimestampConverterBenchmark {
+
+    @Param({"UTC", "Asia/Taipei", "America/New_York"})
+    public String zone;
+
+    private final String timestamp = "2025-01-22 11:17:14.123456000000";
+    private final byte[] timestampBytes = timestamp.getBytes(StandardCharsets.US_ASCII);
+    private TimestampConverter converter;
+
+    @Setup
+    public void setup() {
+        converter = new TimestampConverter(zone);
+    }
+
+    @Benchmark
+    public String javaTime() {
+        return converter.convert(timestamp).toString();
+    }
+
+    @Benchmark
+    public String isoFromString() {
+        return converter.convertToIso8601(timestamp);
+    }
+
+    @Benchmark
+    public String isoFromBytes() {
+        return converter.convertToIso8601(timestampBytes);
+    }
+
+    @Benchmark
+    public long epochMicrosFromBytes() {
+        return converter.toEpochMicros(timestampBytes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TimestampConverterBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
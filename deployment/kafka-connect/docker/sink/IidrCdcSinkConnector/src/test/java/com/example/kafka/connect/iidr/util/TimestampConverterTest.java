@@ -0,0 +1,123 @@
+package com.example.kafka.connect.iidr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TimestampConverterTest {
+
+    private static final List<String> ZONES = Arrays.asList(
+            "UTC", "+08:00", "-03:30", "Asia/Taipei", "America/New_York", "Europe/London",
+            "Australia/Lord_Howe", "Asia/Kathmandu", "America/Sao_Paulo");
+
+    private static final List<String> FRACTIONS = Arrays.asList(
+            "", ".0", ".5", ".000000000000", ".123", ".123456", ".123456789", ".123456789999",
+            ".000001000000", ".000000001");
+
+    /**
+     * Compare the fast path against java.time for one local time in every zone and with
+     * every fraction form.
+     */
+    private static void assertMatchesJavaTime(int year, int month, int day, int hour, int minute, int second) {
+        String local = String.format("%04d-%02d-%02d %02d:%02d:%02d", year, month, day, hour, minute, second);
+        for (String zone : ZONES) {
+            TimestampConverter converter = new TimestampConverter(zone);
+            ZoneId zoneId = ZoneId.of(zone);
+            for (String fraction : FRACTIONS) {
+                String timestamp = local + fraction;
+                String digits = fraction.isEmpty() ? "" : fraction.substring(1);
+                int nanos = digits.isEmpty() ? 0
+                        : Integer.parseInt((digits + "000000000").substring(0, 9));
+                OffsetDateTime expected = LocalDateTime.of(year, month, day, hour, minute, second, nanos)
+                        .atZone(zoneId).toOffsetDateTime();
+                String message = timestamp + " in " + zone;
+
+                assertEquals(expected.toString(), converter.convertToIso8601(timestamp), message);
+                assertEquals(expected.toString(),
+                        converter.convertToIso8601(timestamp.getBytes(StandardCharsets.US_ASCII)), message);
+                assertEquals(expected, converter.convert(timestamp), message);
+                long micros = expected.toEpochSecond() * 1_000_000L + expected.getNano() / 1000;
+                assertEquals(micros, converter.toEpochMicros(timestamp), message);
+                assertEquals(micros, converter.toEpochMicros(timestamp.getBytes(StandardCharsets.US_ASCII)), message);
+            }
+        }
+    }
+
+    @Test
+    void matchesJavaTimeAcrossDstTransitions() {
+        int[][] days = {
+                {2024, 3, 10}, {2024, 11, 3},   // America/New_York
+                {2024, 3, 31}, {2024, 10, 27},  // Europe/London
+                {2024, 4, 7}, {2024, 10, 6},    // Australia/Lord_Howe, 30 minute shift
+                {2018, 11, 4}, {2019, 2, 17},   // America/Sao_Paulo, midnight transitions
+        };
+        for (int[] day : days) {
+            for (int hour = 0; hour < 24; hour++) {
+                for (int minute = 0; minute < 60; minute += 15) {
+                    assertMatchesJavaTime(day[0], day[1], day[2], hour, minute, minute == 0 ? 0 : 59);
+                }
+            }
+        }
+    }
+
+    @Test
+    void matchesJavaTimeAroundLeapDaysAndYearEnds() {
+        int[][] days = {
+                {2024, 2, 28}, {2024, 2, 29}, {2024, 3, 1}, {2023, 2, 28}, {2023, 3, 1},
+                {2000, 2, 29}, {1900, 2, 28}, {1900, 3, 1}, {2100, 2, 28}, {2100, 3, 1},
+                {1999, 12, 31}, {2000, 1, 1}, {1970, 1, 1}, {1969, 12, 31}, {1800, 1, 1}, {2200, 12, 31},
+        };
+        for (int[] day : days) {
+            assertMatchesJavaTime(day[0], day[1], day[2], 0, 0, 0);
+            assertMatchesJavaTime(day[0], day[1], day[2], 23, 59, 59);
+        }
+    }
+
+    @Test
+    void matchesJavaTimeForRandomTimes() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            int year = 1700 + random.nextInt(560);
+            int month = 1 + random.nextInt(12);
+            int day = 1 + random.nextInt(CalendarFields.lengthOfMonth(year, month));
+            assertMatchesJavaTime(year, month, day, random.nextInt(24), random.nextInt(60), random.nextInt(60));
+        }
+    }
+
+    @Test
+    void timesOutsideTheFastPathRangeUseJavaTime() {
+        assertMatchesJavaTime(1600, 6, 15, 12, 0, 0);
+        assertMatchesJavaTime(9999, 12, 31, 23, 59, 59);
+    }
+
+    @Test
+    void acceptsSurroundingBlanks() {
+        TimestampConverter converter = new TimestampConverter("Asia/Taipei");
+        assertEquals("2025-01-22T11:17:14+08:00", converter.convertToIso8601(" 2025-01-22 11:17:14.000000000000 "));
+    }
+
+    @Test
+    void rejectsInvalidTimestamps() {
+        TimestampConverter converter = new TimestampConverter("UTC");
+        for (String invalid : Arrays.asList("2024-13-01 00:00:00", "2024-01-01 25:00:00",
+                "2024-01-01T00:00:00", "2024-01-01 00:00:00,5", "2024-01-01", "not a timestamp", "")) {
+            assertNull(converter.convertToIso8601(invalid), invalid);
+            assertNull(converter.convert(invalid), invalid);
+            assertEquals(TimestampConverter.INVALID, converter.toEpochMicros(invalid), invalid);
+        }
+        assertNull(converter.convertToIso8601((String) null));
+        // Resolved like DateTimeFormatter does by default
+        assertEquals("2023-02-28T00:00Z", converter.convertToIso8601("2023-02-29 00:00:00"));
+        assertEquals("2024-01-02T00:00Z", converter.convertToIso8601("2024-01-01 24:00:00"));
+        assertEquals(TimestampConverter.INVALID, converter.toEpochMicros((byte[]) null));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.kafka.connect.iidr.writer;
+
+import com.example.kafka.connect.iidr.operation.CdcOperation;
+import com.example.kafka.connect.iidr.writer.JdbcWriter.ProcessedRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChangeLogCompactorTest {
+
+    private static ProcessedRecord change(CdcOperation operation, long offset, Object... columns) {
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 0; i < columns.length; i += 2) {
+            row.put((String) columns[i], columns[i + 1]);
+        }
+        return new ProcessedRecord("ORDERS", operation, null, row, null, null, null, "cdc", 0, offset);
+    }
+
+    private static List<Long> offsets(List<ProcessedRecord> records) {
+        List<Long> offsets = new ArrayList<>();
+        for (ProcessedRecord record : records) {
+            offsets.add(record.getOffset());
+        }
+        return offsets;
+    }
+
+    @Test
+    void keepsLastChangeOfEachKeyInOrderOfLastChanges() {
+        List<ProcessedRecord> changes = Arrays.asList(
+                change(CdcOperation.UPSERT, 10, "ID", 1, "QTY", 1),
+                change(CdcOperation.UPSERT, 11, "ID", 2, "QTY", 1),
+                change(CdcOperation.DELETE, 12, "ID", 1),
+                change(CdcOperation.UPSERT, 13, "ID", 3, "QTY", 1),
+                change(CdcOperation.UPSERT, 14, "ID", 2, "QTY", 2));
+
+        List<ProcessedRecord> latest = ChangeLogCompactor.latestChanges(changes, Collections.singletonList("ID"));
+
+        assertEquals(Arrays.asList(12L, 13L, 14L), offsets(latest));
+        assertEquals(CdcOperation.DELETE, latest.get(0).getOperation());
+    }
+
+    @Test
+    void reinsertAfterDeleteWins() {
+        List<ProcessedRecord> changes = Arrays.asList(
+                change(CdcOperation.UPSERT, 1, "ID", 1, "QTY", 1),
+                change(CdcOperation.DELETE, 2, "ID", 1),
+                change(CdcOperation.UPSERT, 3, "ID", 1, "QTY", 3));
+
+        List<ProcessedRecord> latest = ChangeLogCompactor.latestChanges(changes, Collections.singletonList("ID"));
+
+        assertEquals(Collections.singletonList(3L), offsets(latest));
+        assertEquals(CdcOperation.UPSERT, latest.get(0).getOperation());
+    }
+
+    @Test
+    void compositeKeysMatchOnEveryColumn() {
+        List<ProcessedRecord> changes = Arrays.asList(
+                change(CdcOperation.UPSERT, 1, "A", 1, "B", 1),
+                change(CdcOperation.UPSERT, 2, "A", 1, "B", 2),
+                change(CdcOperation.UPSERT, 3, "A", 1, "B", 1));
+
+        List<ProcessedRecord> latest = ChangeLogCompactor.latestChanges(changes, Arrays.asList("A", "B"));
+
+        assertEquals(Arrays.asList(2L, 3L), offsets(latest));
+    }
+
+    @Test
+    void changesWithoutKeyAreAllKept() {
+        List<ProcessedRecord> changes = Arrays.asList(
+                change(CdcOperation.UPSERT, 1, "QTY", 1),
+                change(CdcOperation.UPSERT, 2, "QTY", 1),
+                change(CdcOperation.DELETE, 3, "QTY", 1));
+
+        List<ProcessedRecord> latest = ChangeLogCompactor.latestChanges(changes, Collections.emptyList());
+
+        assertEquals(Arrays.asList(1L, 2L, 3L), offsets(latest));
+    }
+}
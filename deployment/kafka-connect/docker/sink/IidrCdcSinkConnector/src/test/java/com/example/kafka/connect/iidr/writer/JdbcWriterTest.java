@@ -0,0 +1,96 @@
+package com.example.kafka.connect.iidr.writer;
+
+import com.example.kafka.connect.iidr.operation.CdcOperation;
+import com.example.kafka.connect.iidr.writer.JdbcWriter.ProcessedRecord;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JdbcWriterTest {
+
+    private static final List<Object> VALUES = Arrays.asList(
+            null, 1, 1L, 2L, (short) 3, new BigDecimal("1.0"), new BigDecimal("1.5"), 1.5f, 2.5d,
+            new BigInteger("99999999999999999999"), Double.NaN, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, true, false, "1", "a", "b", new StringBuilder("a"),
+            new java.util.Date(0), new Timestamp(1000), new byte[]{1}, new byte[]{(byte) 0xFF},
+            java.time.LocalDate.of(2024, 1, 1));
+
+    @Test
+    void keyValueOrderIsTotalAcrossTypes() {
+        for (Object a : VALUES) {
+            for (Object b : VALUES) {
+                assertEquals(Integer.signum(JdbcWriter.compareValues(a, b)),
+                        -Integer.signum(JdbcWriter.compareValues(b, a)), a + " vs " + b);
+                for (Object c : VALUES) {
+                    if (JdbcWriter.compareValues(a, b) <= 0 && JdbcWriter.compareValues(b, c) <= 0) {
+                        assertTrue(JdbcWriter.compareValues(a, c) <= 0, a + " <= " + b + " <= " + c);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void numbersCompareByExactValue() {
+        assertEquals(0, JdbcWriter.compareValues(1, new BigDecimal("1.00")));
+        assertEquals(0, JdbcWriter.compareValues(1L, 1.0d));
+        assertTrue(JdbcWriter.compareValues(Long.MAX_VALUE, (double) Long.MAX_VALUE) < 0);
+        assertTrue(JdbcWriter.compareValues(1.5f, 2L) < 0);
+        assertTrue(JdbcWriter.compareValues(new BigInteger("99999999999999999999"), Double.POSITIVE_INFINITY) < 0);
+        assertTrue(JdbcWriter.compareValues(Double.POSITIVE_INFINITY, Double.NaN) < 0);
+        assertTrue(JdbcWriter.compareValues(Double.NEGATIVE_INFINITY, Long.MIN_VALUE) < 0);
+    }
+
+    @Test
+    void typesAreRankedBeforeValues() {
+        assertTrue(JdbcWriter.compareValues(null, 0) < 0);
+        assertTrue(JdbcWriter.compareValues(Double.NaN, false) < 0);
+        assertTrue(JdbcWriter.compareValues(true, "0") < 0);
+        assertTrue(JdbcWriter.compareValues("z", new java.util.Date(0)) < 0);
+        assertTrue(JdbcWriter.compareValues(new Timestamp(0), new byte[0]) < 0);
+        assertTrue(JdbcWriter.compareValues(new byte[]{1}, new byte[]{(byte) 0xFF}) < 0);
+    }
+
+    @Test
+    void changeTimeIsParsedFromIsoTimestampWhenNotGiven() {
+        ProcessedRecord record = new ProcessedRecord("T", CdcOperation.UPSERT, null, null, null, null,
+                "2025-01-22T11:17:14.123456+08:00");
+        ProcessedRecord parsed = new ProcessedRecord("T", CdcOperation.UPSERT, null, null, null, null,
+                "2025-01-22T11:17:14.123456+08:00", "cdc", 0, 0, 42L);
+
+        assertEquals(1737515834123456L, record.getChangeTimeMicros());
+        assertEquals(42L, parsed.getChangeTimeMicros());
+        assertEquals(ProcessedRecord.NO_CHANGE_TIME, new ProcessedRecord("T", CdcOperation.UPSERT, null, null,
+                null, null, "not a time").getChangeTimeMicros());
+        assertEquals(ProcessedRecord.NO_CHANGE_TIME, new ProcessedRecord("T", CdcOperation.UPSERT, null, null,
+                null, null, null).getChangeTimeMicros());
+    }
+
+    @Test
+    void keyWithChangesOfDifferentOperationsSplitsTheBatch() {
+        ProcessedRecord delete = record(CdcOperation.DELETE, 1);
+        ProcessedRecord otherInsert = record(CdcOperation.INSERT, 2);
+        ProcessedRecord reinsert = record(CdcOperation.INSERT, 1);
+        ProcessedRecord update = record(CdcOperation.UPSERT, 1);
+        List<String> pk = Collections.singletonList("ID");
+
+        assertEquals(Arrays.asList(Arrays.asList(delete, otherInsert), Arrays.asList(reinsert),
+                        Arrays.asList(update)),
+                JdbcWriter.keyOrderSegments(Arrays.asList(delete, otherInsert, reinsert, update), pk));
+        // Repeated changes of one operation stay together
+        List<ProcessedRecord> upserts = Arrays.asList(update, record(CdcOperation.UPSERT, 1), otherInsert);
+        assertEquals(Collections.singletonList(upserts), JdbcWriter.keyOrderSegments(upserts, pk));
+    }
+
+    private static ProcessedRecord record(CdcOperation operation, long id) {
+        return new ProcessedRecord("T", operation, Collections.singletonMap("ID", id), null, null, null, null);
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.kafka.connect.iidr.writer;
+
+import com.example.kafka.connect.iidr.IidrCdcSinkConfig;
+import com.example.kafka.connect.iidr.operation.CdcOperation;
+import com.example.kafka.connect.iidr.writer.JdbcWriter.ProcessedRecord;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyFiltersTest {
+
+    private static final List<String> PK = Collections.singletonList("ID");
+
+    private static IidrCdcSinkConfig config() {
+        return config(false);
+    }
+
+    private static IidrCdcSinkConfig config(boolean warm) {
+        Map<String, String> props = new HashMap<>();
+        props.put(IidrCdcSinkConfig.CONNECTION_URL_CONFIG, "jdbc:test");
+        props.put(IidrCdcSinkConfig.CONNECTION_USER_CONFIG, "user");
+        props.put(IidrCdcSinkConfig.CONNECTION_PASSWORD_CONFIG, "password");
+        props.put(IidrCdcSinkConfig.KEY_FILTER_TABLES_CONFIG, "ORDERS");
+        props.put(IidrCdcSinkConfig.KEY_FILTER_WARM_CONFIG, String.valueOf(warm));
+        return new IidrCdcSinkConfig(props);
+    }
+
+    private static ProcessedRecord record(Map<String, Object> key) {
+        return new ProcessedRecord("ORDERS", CdcOperation.UPSERT, key, null, null, null, null);
+    }
+
+    private static Map<String, Object> key(String column, Object value) {
+        Map<String, Object> key = new HashMap<>();
+        key.put(column, value);
+        return key;
+    }
+
+    @Test
+    void filtersAreSharedPerScopeAndOnlyForConfiguredTables() {
+        IidrCdcSinkConfig config = config();
+        KeyFilters first = KeyFilters.acquire("test-scope", config, null);
+        KeyFilters second = KeyFilters.acquire("test-scope", config, null);
+        try {
+            assertSame(first, second);
+            assertNotNull(first.get("ORDERS"));
+            assertSame(first.get("ORDERS"), second.get("ORDERS"));
+            assertNull(first.get("CUSTOMERS"));
+        } finally {
+            KeyFilters.release("test-scope");
+            KeyFilters.release("test-scope");
+        }
+
+        KeyFilters fresh = KeyFilters.acquire("test-scope", config, null);
+        try {
+            assertNotSame(first, fresh);
+        } finally {
+            KeyFilters.release("test-scope");
+        }
+    }
+
+    @Test
+    void onlyUnseenKeysAreNew() {
+        KeyFilters keyFilters = KeyFilters.acquire("new-keys", config(), null);
+        try {
+            KeyFilters.Filter filter = keyFilters.get("ORDERS");
+            assertEquals(0, keyFilters.falsePositiveRate("ORDERS"));
+            long hash = KeyFilters.keyHash(record(key("ID", 1L)), PK, Collections.singletonList(null));
+
+            assertTrue(filter.add(hash));
+            assertFalse(filter.add(hash));
+            assertTrue(keyFilters.falsePositiveRate("ORDERS") > 0);
+        } finally {
+            KeyFilters.release("new-keys");
+        }
+    }
+
+    @Test
+    void keyTextNormalizesByColumnType() {
+        assertEquals(KeyFilters.keyText(new BigDecimal("5"), Types.NUMERIC),
+                KeyFilters.keyText("5.00", Types.NUMERIC));
+        assertEquals(KeyFilters.keyText(Timestamp.valueOf("2024-01-01 10:00:00"), Types.TIMESTAMP),
+                KeyFilters.keyText("2024-01-01 10:00:00", Types.TIMESTAMP));
+        assertEquals(KeyFilters.keyText(java.sql.Date.valueOf("2024-01-31"), Types.DATE),
+                KeyFilters.keyText("2024-01-31", Types.DATE));
+        assertEquals("AB", KeyFilters.keyText("AB  ", Types.CHAR));
+        // Kept as is rather than expanded to thousands of digits
+        assertEquals("1e5000", KeyFilters.keyText("1e5000", Types.NUMERIC));
+        // Without a column type the text is not reinterpreted
+        assertEquals("5.00", KeyFilters.keyText("5.00", null));
+    }
+
+    @Test
+    void recordAndCatalogValuesHashAlike() {
+        List<Integer> numeric = Collections.singletonList(Types.NUMERIC);
+        long fromText = KeyFilters.keyHash(record(key("ID", "5.00")), PK, numeric);
+        long fromNumber = KeyFilters.keyHash(record(key("ID", new BigDecimal("5"))), PK, numeric);
+
+        assertEquals(fromText, fromNumber);
+        assertNotEquals(fromText, KeyFilters.keyHash(record(key("ID", "6")), PK, numeric));
+    }
+
+    @Test
+    void compositeKeyValuesAreSeparated() {
+        List<String> pk = Arrays.asList("A", "B");
+        List<Integer> types = Arrays.asList(Types.VARCHAR, Types.VARCHAR);
+        Map<String, Object> first = key("A", "ab");
+        first.put("B", "c");
+        Map<String, Object> second = key("A", "a");
+        second.put("B", "bc");
+
+        assertNotEquals(KeyFilters.keyHash(record(first), pk, types),
+                KeyFilters.keyHash(record(second), pk, types));
+    }
+
+    @Test
+    void missingKeyValueHashesToZero() {
+        assertEquals(0, KeyFilters.keyHash(record(key("OTHER", 1L)), PK, Collections.singletonList(null)));
+    }
+
+    @Test
+    void warmUpRunsInTheBackgroundAndKeepsKeysLearnedMeanwhile() throws Exception {
+        CountDownLatch opened = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        ChangeLogCompactor.ConnectionSource source = () -> {
+            opened.countDown();
+            try {
+                resume.await();
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+            return connection(Arrays.asList(1L, 2L));
+        };
+        List<Integer> types = Collections.singletonList(Types.BIGINT);
+        KeyFilters keyFilters = KeyFilters.acquire("warm-up", config(true), source);
+        try {
+            KeyFilters.Filter filter = keyFilters.get("ORDERS");
+            keyFilters.warm(filter, "ORDERS", PK, types);
+            assertTrue(opened.await(5, TimeUnit.SECONDS));
+            assertFalse(filter.isWarm());
+            assertTrue(filter.add(KeyFilters.keyHash(record(key("ID", 3L)), PK, types)));
+
+            resume.countDown();
+            awaitWarm(filter);
+            assertFalse(filter.add(KeyFilters.keyHash(record(key("ID", 1L)), PK, types)));
+            assertFalse(filter.add(KeyFilters.keyHash(record(key("ID", 3L)), PK, types)));
+            assertTrue(filter.add(KeyFilters.keyHash(record(key("ID", 4L)), PK, types)));
+        } finally {
+            resume.countDown();
+            KeyFilters.release("warm-up");
+        }
+    }
+
+    @Test
+    void failedWarmUpIsNotRetriedAtOnce() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch failed = new CountDownLatch(1);
+        ChangeLogCompactor.ConnectionSource source = () -> {
+            attempts.incrementAndGet();
+            failed.countDown();
+            throw new SQLException("unreachable");
+        };
+        KeyFilters keyFilters = KeyFilters.acquire("warm-up-failure", config(true), source);
+        try {
+            KeyFilters.Filter filter = keyFilters.get("ORDERS");
+            keyFilters.warm(filter, "ORDERS", PK, Collections.singletonList(null));
+            assertTrue(failed.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 20; i++) {
+                Thread.sleep(10);
+                keyFilters.warm(filter, "ORDERS", PK, Collections.singletonList(null));
+            }
+            assertFalse(filter.isWarm());
+            assertEquals(1, attempts.get());
+        } finally {
+            KeyFilters.release("warm-up-failure");
+        }
+    }
+
+    private static void awaitWarm(KeyFilters.Filter filter) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!filter.isWarm() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(filter.isWarm());
+    }
+
+    /**
+     * A connection whose only query returns the given single-column rows.
+     */
+    private static Connection connection(List<Object> rows) {
+        Iterator<Object> iterator = rows.iterator();
+        Object[] current = new Object[1];
+        ResultSet resultSet = proxy(ResultSet.class, (method, args) -> {
+            switch (method) {
+                case "next":
+                    if (!iterator.hasNext()) {
+                        return false;
+                    }
+                    current[0] = iterator.next();
+                    return true;
+                case "getObject":
+                    return current[0];
+                default:
+                    return null;
+            }
+        });
+        Statement statement = proxy(Statement.class,
+                (method, args) -> method.equals("executeQuery") ? resultSet : null);
+        return proxy(Connection.class, (method, args) -> {
+            switch (method) {
+                case "createStatement":
+                    return statement;
+                case "getAutoCommit":
+                    return true;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, BiFunction<String, Object[], Object> handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.apply(method.getName(), args)));
+    }
+}
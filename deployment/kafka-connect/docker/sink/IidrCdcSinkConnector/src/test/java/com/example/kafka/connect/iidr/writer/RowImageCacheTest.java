@@ -0,0 +1,234 @@
+package com.example.kafka.connect.iidr.writer;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowImageCacheTest {
+
+    private static final List<TopicPartition> PARTITIONS =
+            Collections.singletonList(new TopicPartition("cdc", 0));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void unchangedRowIsSkippedOnceCommitted() throws Exception {
+        try (RowImageCache cache = new RowImageCache(16, null)) {
+            assertTrue(cache.admit(42, 7));
+            // Not visible before the commit
+            assertTrue(cache.admit(42, 7));
+            cache.publish();
+
+            assertFalse(cache.admit(42, 7));
+            assertTrue(cache.admit(42, 8));
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    void rolledBackRowsAreForgotten() throws Exception {
+        try (RowImageCache cache = new RowImageCache(16, null)) {
+            cache.admit(42, 7);
+            cache.discard();
+            cache.publish();
+
+            assertTrue(cache.admit(42, 7));
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    void deleteRemovesCommittedImage() throws Exception {
+        try (RowImageCache cache = new RowImageCache(16, null)) {
+            cache.admit(42, 7);
+            cache.publish();
+            assertEquals(1, cache.size());
+
+            assertTrue(cache.admit(42, 0));
+            cache.publish();
+
+            assertEquals(0, cache.size());
+            assertTrue(cache.admit(42, 7));
+        }
+    }
+
+    @Test
+    void rowsWithoutKeyAreAlwaysWritten() throws Exception {
+        try (RowImageCache cache = new RowImageCache(16, null)) {
+            cache.admit(0, 7);
+            cache.publish();
+
+            assertTrue(cache.admit(0, 7));
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    void fullWindowEvictsWithoutGrowing() throws Exception {
+        try (RowImageCache cache = new RowImageCache(8, null)) {
+            // Keys 1..8 fill all eight slots; key 9 probes from the slot of key 1
+            for (long key = 1; key <= 9; key++) {
+                cache.admit(key, 100 + key);
+                cache.publish();
+            }
+
+            assertEquals(8, cache.size());
+            assertFalse(cache.admit(9, 109));
+            assertFalse(cache.admit(2, 102));
+            assertTrue(cache.admit(1, 101));
+        }
+    }
+
+    @Test
+    void mappedFileIsReusedWhenPartitionResumesAtSavedOffset() throws Exception {
+        Path file = dir.resolve("images");
+        writeSavedCache(file, 100);
+
+        try (RowImageCache cache = new RowImageCache(16, file)) {
+            assertEquals(1, cache.size());
+            cache.assign(PARTITIONS);
+            // Nothing is skipped before the partition has resumed
+            assertTrue(cache.isResuming());
+            assertTrue(cache.admit(42, 7));
+            cache.publish();
+
+            cache.resume(PARTITIONS.get(0), 100);
+            assertFalse(cache.isResuming());
+            assertFalse(cache.admit(42, 7));
+        }
+    }
+
+    @Test
+    void mappedFileIsClearedWhenPartitionResumesElsewhere() throws Exception {
+        Path file = dir.resolve("images");
+        writeSavedCache(file, 100);
+
+        try (RowImageCache cache = new RowImageCache(16, file)) {
+            cache.assign(PARTITIONS);
+            cache.resume(PARTITIONS.get(0), 250);
+
+            assertEquals(0, cache.size());
+            assertFalse(cache.isResuming());
+            assertTrue(cache.admit(42, 7));
+        }
+    }
+
+    @Test
+    void savedPartitionsNotReassignedAtOnceAreNotTrustedLater() throws Exception {
+        Path file = dir.resolve("images");
+        TopicPartition other = new TopicPartition("cdc", 1);
+        try (RowImageCache cache = new RowImageCache(16, file)) {
+            cache.assign(Arrays.asList(PARTITIONS.get(0), other));
+            cache.admit(42, 7);
+            cache.publish();
+            Map<TopicPartition, Long> offsets = new HashMap<>();
+            offsets.put(PARTITIONS.get(0), 100L);
+            offsets.put(other, 50L);
+            cache.committed(offsets);
+        }
+
+        try (RowImageCache cache = new RowImageCache(16, file)) {
+            cache.assign(PARTITIONS);
+            cache.resume(PARTITIONS.get(0), 100);
+            assertEquals(1, cache.size());
+            // A DDL in between forgets the saved offsets
+            cache.clear();
+            cache.admit(42, 7);
+            cache.publish();
+
+            cache.assign(Collections.singletonList(other));
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    void partitionWithoutCommittedOffsetIsNeverTrusted() throws Exception {
+        Path file = dir.resolve("images");
+        try (RowImageCache cache = new RowImageCache(16, file)) {
+            cache.assign(PARTITIONS);
+            cache.admit(42, 7);
+            cache.publish();
+        }
+
+        try (RowImageCache cache = new RowImageCache(16, file)) {
+            cache.assign(PARTITIONS);
+            cache.resume(PARTITIONS.get(0), 0);
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    void entriesBeyondOneBufferAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new RowImageCache(RowImageCache.MAX_ENTRIES + 1, null));
+    }
+
+    @Test
+    void mappedFileIsClearedAfterUncleanClose() throws Exception {
+        Path file = dir.resolve("images");
+        RowImageCache crashed = new RowImageCache(16, file);
+        crashed.assign(PARTITIONS);
+        crashed.admit(42, 7);
+        crashed.publish();
+
+        try (RowImageCache cache = new RowImageCache(16, file)) {
+            assertEquals(0, cache.size());
+        } finally {
+            crashed.close();
+        }
+    }
+
+    @Test
+    void assigningUncoveredPartitionClears() throws Exception {
+        try (RowImageCache cache = new RowImageCache(16, null)) {
+            cache.assign(PARTITIONS);
+            cache.admit(42, 7);
+            cache.publish();
+
+            cache.assign(PARTITIONS);
+            assertEquals(1, cache.size());
+            cache.assign(Collections.singletonList(new TopicPartition("cdc", 1)));
+            assertEquals(0, cache.size());
+        }
+    }
+
+    private static void writeSavedCache(Path file, long offset) throws Exception {
+        try (RowImageCache cache = new RowImageCache(16, file)) {
+            cache.assign(PARTITIONS);
+            cache.admit(42, 7);
+            cache.publish();
+            cache.committed(Collections.singletonMap(PARTITIONS.get(0), offset));
+        }
+    }
+
+    @Test
+    void imageHashIgnoresColumnOrder() {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("ID", 1L);
+        first.put("NAME", "a");
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("NAME", "a");
+        second.put("ID", 1L);
+        Map<String, Object> changed = new LinkedHashMap<>(first);
+        changed.put("NAME", "b");
+
+        assertEquals(RowImageCache.imageHash(first), RowImageCache.imageHash(second));
+        assertNotEquals(RowImageCache.imageHash(first), RowImageCache.imageHash(changed));
+        assertEquals(0, RowImageCache.imageHash(null));
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.kafka.connect.iidr.writer;
+
+import com.example.kafka.connect.iidr.writer.ValueConverter.Parsers;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValueConverterTest {
+
+    @Test
+    void parsesDateTimesWithEitherSeparatorAndFraction() {
+        assertEquals(LocalDateTime.of(2024, 2, 29, 10, 5, 7),
+                Parsers.parseDateTime("2024-02-29 10:05:07"));
+        assertEquals(LocalDateTime.of(2024, 2, 29, 10, 5, 7, 120_000_000),
+                Parsers.parseDateTime("2024-02-29T10:05:07.12"));
+        assertEquals(LocalDateTime.of(2024, 2, 29, 10, 5, 7, 123_456_789),
+                Parsers.parseDateTime("2024-02-29 10:05:07.123456789"));
+    }
+
+    @Test
+    void rejectsMalformedDateTimes() {
+        assertNull(Parsers.parseDateTime("2023-02-29 10:05:07"));
+        assertNull(Parsers.parseDateTime("2024-02-29 24:00:00"));
+        assertNull(Parsers.parseDateTime("2024-02-29/10:05:07"));
+        assertNull(Parsers.parseDateTime("2024-02-29 10:05:07,1"));
+        assertNull(Parsers.parseDateTime("2024-02-29 10:05:07.1234567890"));
+        assertNull(Parsers.parseDateTime("2024-02-29"));
+    }
+
+    @Test
+    void parsesOffsetsInEveryIsoForm() {
+        LocalDateTime ldt = LocalDateTime.of(2024, 1, 1, 10, 0);
+        assertEquals(OffsetDateTime.of(ldt, ZoneOffset.UTC), Parsers.parseOffsetDateTime("2024-01-01T10:00:00Z"));
+        assertEquals(OffsetDateTime.of(ldt, ZoneOffset.ofHoursMinutes(5, 30)),
+                Parsers.parseOffsetDateTime("2024-01-01T10:00:00+05:30"));
+        assertEquals(OffsetDateTime.of(ldt, ZoneOffset.ofHoursMinutes(-5, -30)),
+                Parsers.parseOffsetDateTime("2024-01-01 10:00:00-0530"));
+        assertEquals(OffsetDateTime.of(ldt.withNano(500_000_000), ZoneOffset.ofHours(8)),
+                Parsers.parseOffsetDateTime("2024-01-01T10:00:00.5+08"));
+    }
+
+    @Test
+    void rejectsInvalidOffsets() {
+        assertNull(Parsers.parseOffsetDateTime("2024-01-01T10:00:00"));
+        assertNull(Parsers.parseOffsetDateTime("2024-01-01T10:00:00+19:00"));
+        assertNull(Parsers.parseOffsetDateTime("2024-01-01T10:00:00+05:60"));
+        assertNull(Parsers.parseOffsetDateTime("2024-01-01T10:00:00+5"));
+        assertNull(Parsers.parseOffsetDateTime("2024-01-01T10:00:00+05-30"));
+    }
+
+    @Test
+    void parsesDatesAndTimes() {
+        assertEquals(LocalDate.of(2024, 12, 31), Parsers.parseDate("2024-12-31"));
+        assertEquals(LocalDate.of(2024, 12, 31), Parsers.parseDate("2024-12-31 23:59:59"));
+        assertNull(Parsers.parseDate("2024-04-31"));
+        assertNull(Parsers.parseDate("2024/12/31"));
+        assertNull(Parsers.parseDate("2024-12-31X"));
+
+        assertEquals(LocalTime.of(23, 59, 59), Parsers.parseTime("23:59:59"));
+        assertNull(Parsers.parseTime("23:60:00"));
+        assertNull(Parsers.parseTime("23:59"));
+    }
+
+    @Test
+    void parsesLongsUpToTheirBounds() {
+        assertEquals(42, Parsers.parseLong("+42"));
+        assertEquals(-42, Parsers.parseLong("-42"));
+        assertEquals(Long.MAX_VALUE, Parsers.parseLong("9223372036854775807"));
+        assertEquals(Long.MIN_VALUE + 1, Parsers.parseLong("-9223372036854775807"));
+        assertEquals(Parsers.NOT_A_NUMBER, Parsers.parseLong("9223372036854775808"));
+        assertEquals(Parsers.NOT_A_NUMBER, Parsers.parseLong("-"));
+        assertEquals(Parsers.NOT_A_NUMBER, Parsers.parseLong(""));
+        assertEquals(Parsers.NOT_A_NUMBER, Parsers.parseLong("1.5"));
+    }
+
+    @Test
+    void recognizesPlainDecimals() {
+        assertTrue(Parsers.isDecimal("-12.50"));
+        assertTrue(Parsers.isDecimal(".5"));
+        assertTrue(Parsers.isDecimal("5."));
+        assertTrue(Parsers.isDecimal("1.5E-10"));
+        assertTrue(Parsers.isDecimal("1e999999999"));
+
+        assertFalse(Parsers.isDecimal(""));
+        assertFalse(Parsers.isDecimal("."));
+        assertFalse(Parsers.isDecimal("1e"));
+        assertFalse(Parsers.isDecimal("1.2.3"));
+        assertFalse(Parsers.isDecimal("NaN"));
+        // Would overflow the scale of a BigDecimal
+        assertFalse(Parsers.isDecimal("1e9999999999"));
+    }
+}